@@ -0,0 +1,148 @@
+package com.formentor.magnolia.rest.graphql.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.commons.cnd.CndImporter;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.xml.sax.InputSource;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory Jackrabbit repository with the workspaces "tours" and "website" seeded with tours and pages.
+ *
+ * The tours are "mgnl:content" nodes below /magnolia-travels with some "mgnl:contentNode" children, as the tours of
+ * the travel demo. The pages are "mgnl:page" nodes below /home, each one with an area of components.
+ * Every workspace is read with one session of the admin user.
+ */
+public class BenchmarkRepository implements AutoCloseable {
+    public static final String WORKSPACE_tours = "tours";
+    public static final String WORKSPACE_website = "website";
+    public static final String TOURS_ROOT = "/magnolia-travels";
+    public static final String PAGES_ROOT = "/home";
+
+    public static final String NODE_TYPE_content = "mgnl:content";
+    public static final String NODE_TYPE_contentNode = "mgnl:contentNode";
+    public static final String NODE_TYPE_page = "mgnl:page";
+    public static final String NODE_TYPE_area = "mgnl:area";
+    public static final String NODE_TYPE_component = "mgnl:component";
+
+    private static final String REPOSITORY_XML = "/benchmarks/repository.xml";
+    private static final String NODETYPES_CND = "/benchmarks/nodetypes.cnd";
+    private static final String DEFAULT_WORKSPACE = "default";
+    private static final int IMAGES_PER_TOUR = 3;
+    private static final int COMPONENTS_PER_PAGE = 3;
+    // Nodes added before each save, so the transient space stays small
+    private static final int SAVE_EVERY = 500;
+
+    private final File home;
+    private final RepositoryImpl repository;
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+
+    /**
+     * @param tours number of tours
+     * @param pages number of pages
+     * @throws Exception
+     */
+    public BenchmarkRepository(int tours, int pages) throws Exception {
+        home = Files.createTempDirectory("magnolia-rest-graphql-benchmarks").toFile();
+        try (InputStream config = BenchmarkRepository.class.getResourceAsStream(REPOSITORY_XML)) {
+            repository = RepositoryImpl.create(RepositoryConfig.create(new InputSource(config), home.getAbsolutePath()));
+        }
+
+        Session session = login(DEFAULT_WORKSPACE);
+        try (Reader cnd = new InputStreamReader(BenchmarkRepository.class.getResourceAsStream(NODETYPES_CND), StandardCharsets.UTF_8)) {
+            CndImporter.registerNodeTypes(cnd, session);
+        }
+        session.getWorkspace().createWorkspace(WORKSPACE_tours);
+        session.getWorkspace().createWorkspace(WORKSPACE_website);
+        session.logout();
+
+        sessions.put(WORKSPACE_tours, login(WORKSPACE_tours));
+        sessions.put(WORKSPACE_website, login(WORKSPACE_website));
+        seedTours(getSession(WORKSPACE_tours), tours);
+        seedPages(getSession(WORKSPACE_website), pages);
+    }
+
+    /**
+     * Session of the workspace, shared by the benchmarks
+     * @param workspace
+     * @return
+     */
+    public Session getSession(String workspace) {
+        return sessions.get(workspace);
+    }
+
+    /**
+     * Workspaces of the repository with their sessions
+     * @return
+     */
+    public Map<String, Session> getSessions() {
+        return sessions;
+    }
+
+    @Override
+    public void close() {
+        sessions.values().forEach(Session::logout);
+        sessions.clear();
+        repository.shutdown();
+        FileUtils.deleteQuietly(home);
+    }
+
+    private Session login(String workspace) throws Exception {
+        return repository.login(new SimpleCredentials("admin", "admin".toCharArray()), workspace);
+    }
+
+    private static void seedTours(Session session, int count) throws Exception {
+        Node root = session.getRootNode().addNode(TOURS_ROOT.substring(1), NODE_TYPE_content);
+        for (int i = 0; i < count; i++) {
+            Node tour = root.addNode("tour-" + i, NODE_TYPE_content);
+            tour.setProperty("name", "Tour " + i);
+            tour.setProperty("description", "Description of the tour " + i);
+            tour.setProperty("body", "<p>Body of the tour " + i + ", long enough to be close to the size of the tours of the travel demo. "
+                    + "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>");
+            tour.setProperty("duration", (long) (i % 14 + 1));
+            tour.setProperty("location", "Location " + (i % 20));
+            tour.setProperty("isFeatured", i % 5 == 0);
+            tour.setProperty("author", "Author " + (i % 10));
+            for (int j = 0; j < IMAGES_PER_TOUR; j++) {
+                Node image = tour.addNode("image-" + j, NODE_TYPE_contentNode);
+                image.setProperty("caption", "Image " + j + " of the tour " + i);
+                image.setProperty("image", "jcr:" + i + "-" + j);
+            }
+            if ((i + 1) % SAVE_EVERY == 0) {
+                session.save();
+            }
+        }
+        session.save();
+    }
+
+    private static void seedPages(Session session, int count) throws Exception {
+        Node home = session.getRootNode().addNode(PAGES_ROOT.substring(1), NODE_TYPE_page);
+        home.setProperty("title", "Home");
+        for (int i = 0; i < count; i++) {
+            Node page = home.addNode("page-" + i, NODE_TYPE_page);
+            page.setProperty("title", "Page " + i);
+            page.setProperty("navigationTitle", "Page " + i);
+            Node area = page.addNode("main", NODE_TYPE_area);
+            for (int j = 0; j < COMPONENTS_PER_PAGE; j++) {
+                Node component = area.addNode("component-" + j, NODE_TYPE_component);
+                component.setProperty("text", "Text " + j + " of the page " + i);
+            }
+            if ((i + 1) % SAVE_EVERY == 0) {
+                session.save();
+            }
+        }
+        session.save();
+    }
+}
@@ -0,0 +1,80 @@
+package com.formentor.magnolia.rest.graphql.benchmarks;
+
+import graphql.ExecutionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution of queries by GraphQLProvider, from the text of the query to the result.
+ *
+ * The parsed documents are taken from the cache. With resultCache=warm the identifiers of the results of the fields
+ * tagged with @definition or @delivery are taken from the cache too and the nodes are read again, with
+ * resultCache=cold the cached results are removed before every invocation so the JCR queries are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ResultCache {
+        /**
+         * "warm" reads the cached results, "cold" executes the JCR queries, i.e. -p resultCache=cold
+         */
+        @Param({"warm", "cold"})
+        public String resultCache;
+
+        @Setup(Level.Invocation)
+        public void setUp(GraphQLEnvironment environment) {
+            if ("cold".equals(resultCache)) {
+                environment.invalidateResultCache();
+            }
+        }
+    }
+
+    /**
+     * Field "nodes", a node and its children read by path
+     */
+    @Benchmark
+    public ExecutionResult nodes(GraphQLEnvironment environment) {
+        return environment.execute(GraphQLEnvironment.QUERY_nodes);
+    }
+
+    /**
+     * Field tagged with @definition, the tours as NodeMap
+     */
+    @Benchmark
+    public ExecutionResult definition(GraphQLEnvironment environment, ResultCache resultCache) {
+        return environment.execute(GraphQLEnvironment.QUERY_definition);
+    }
+
+    /**
+     * Field tagged with @definition with the children of every result, the pages as NodeMap
+     */
+    @Benchmark
+    public ExecutionResult definitionChildren(GraphQLEnvironment environment, ResultCache resultCache) {
+        return environment.execute(GraphQLEnvironment.QUERY_definition_children);
+    }
+
+    /**
+     * Field tagged with @delivery, the tours as Node
+     */
+    @Benchmark
+    public ExecutionResult delivery(GraphQLEnvironment environment, ResultCache resultCache) {
+        return environment.execute(GraphQLEnvironment.QUERY_delivery);
+    }
+}
@@ -0,0 +1,214 @@
+package com.formentor.magnolia.rest.graphql.benchmarks;
+
+import com.formentor.magnolia.rest.graphql.GraphQLDefinition;
+import com.formentor.magnolia.rest.graphql.RestGraphQL;
+import com.formentor.magnolia.rest.graphql.registry.GraphQLEndpointDefinitionRegistry;
+import com.formentor.magnolia.rest.graphql.registry.GraphQLEndpointDefinitionRegistryEvent;
+import com.formentor.magnolia.rest.graphql.service.GraphQLProvider;
+import com.formentor.magnolia.rest.graphql.service.RequestContext;
+import com.formentor.magnolia.rest.graphql.service.cache.QueryResultCache;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import graphql.ExecutionResult;
+import info.magnolia.cms.i18n.DefaultI18nContentSupport;
+import info.magnolia.cms.security.User;
+import info.magnolia.config.registry.DefinitionMetadata;
+import info.magnolia.config.registry.DefinitionProvider;
+import info.magnolia.context.MgnlContext;
+import info.magnolia.context.SystemContext;
+import info.magnolia.event.SimpleEventBus;
+import info.magnolia.rest.registry.EndpointDefinitionRegistry;
+import info.magnolia.test.ComponentsTestUtil;
+import info.magnolia.test.mock.MockContext;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static info.magnolia.rest.registry.EndpointDefinitionRegistryEventType.REREGISTERED;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * GraphQLProvider running over the in-memory repository, with the schema "schema-benchmarks.graphqls".
+ *
+ * The provider is built as the container does, with mocks of the registries and the default configuration of the
+ * module. The context of Magnolia is bound to the thread of the setup, so the benchmarks run with one thread.
+ * The queries are executed once in the setup, so a broken query fails the trial instead of measuring errors.
+ */
+@State(Scope.Benchmark)
+public class GraphQLEnvironment {
+    public static final String QUERY_nodes = "{ nodes(workspace: \"tours\", path: \"/magnolia-travels\") { name path nodeType children { name properties { name string } } } }";
+    public static final String QUERY_definition = "{ tours_ql { name description duration isFeatured location author } }";
+    public static final String QUERY_definition_children = "{ pages_ql { title navigationTitle children { title } } }";
+    public static final String QUERY_delivery = "{ tours_node { name path nodeType properties(names: [\"name\", \"description\"]) { name string } } }";
+
+    private static final String SCHEMA = "benchmarks/schema-benchmarks.graphqls";
+    private static final String REFERENCE_ID = "benchmarks";
+    private static final String ROOT_PATH = "/";
+
+    /**
+     * Size of the repository, i.e. -p tours=1000 -p pages=100
+     */
+    @Param("100")
+    public int tours;
+    @Param("20")
+    public int pages;
+
+    private BenchmarkRepository repository;
+    private GraphQLProvider provider;
+    private QueryResultCache resultCache;
+    private GraphQLEndpointDefinitionRegistryEvent schemaEvent;
+    private List<Node> tourNodes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        repository = new BenchmarkRepository(tours, pages);
+
+        ComponentsTestUtil.setInstance(SystemContext.class, newContext(new BenchmarkSystemContext()));
+        MgnlContext.setInstance(newContext(new MockContext()));
+
+        GraphQLDefinition definition = new GraphQLDefinition();
+        definition.setSdl(Resources.toString(Resources.getResource(SCHEMA), Charsets.UTF_8));
+        DefinitionProvider<GraphQLDefinition> definitionProvider = definitionProvider(definition);
+        schemaEvent = new GraphQLEndpointDefinitionRegistryEvent(REREGISTERED, definitionProvider);
+
+        GraphQLEndpointDefinitionRegistry graphQLRegistry = mock(GraphQLEndpointDefinitionRegistry.class);
+        doReturn(Collections.singletonList(definitionProvider)).when(graphQLRegistry).getAllProviders();
+        EndpointDefinitionRegistry endpointRegistry = mock(EndpointDefinitionRegistry.class);
+        doReturn(Collections.emptyList()).when(endpointRegistry).getAllProviders();
+        DefaultI18nContentSupport i18nContentSupport = new DefaultI18nContentSupport();
+        i18nContentSupport.setEnabled(false);
+        RestGraphQL module = new RestGraphQL(graphQLRegistry, null, null, null, null);
+
+        provider = new GraphQLProvider(endpointRegistry, graphQLRegistry, i18nContentSupport, new SimpleEventBus(), () -> module);
+        invoke(provider, PostConstruct.class);
+        resultCache = field(provider, "resultCache");
+
+        for (String query: new String[]{QUERY_nodes, QUERY_definition, QUERY_definition_children, QUERY_delivery}) {
+            ExecutionResult result = execute(query);
+            if (!result.getErrors().isEmpty() || result.getData() == null) {
+                throw new IllegalStateException("Query " + query + " failed: " + result.getErrors());
+            }
+        }
+
+        tourNodes = new ArrayList<>();
+        NodeIterator nodes = repository.getSession(BenchmarkRepository.WORKSPACE_tours).getNode(BenchmarkRepository.TOURS_ROOT).getNodes();
+        nodes.forEachRemaining(node -> tourNodes.add((Node) node));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (provider != null) {
+            invoke(provider, PreDestroy.class);
+        }
+        MgnlContext.setInstance(null);
+        ComponentsTestUtil.clear();
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    /**
+     * Executes the query as a request of the endpoint
+     * @param query
+     * @return
+     */
+    public ExecutionResult execute(String query) {
+        return provider.executeRequest(query, null, null, null, new RequestContext());
+    }
+
+    /**
+     * Removes the cached results of all the workspaces, so the next executions run the JCR queries
+     */
+    public void invalidateResultCache() {
+        for (String workspace: repository.getSessions().keySet()) {
+            resultCache.invalidatePath(workspace, ROOT_PATH);
+        }
+    }
+
+    public GraphQLProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Event of the schema of the benchmarks registered again, rebuilds the schema
+     * @return
+     */
+    public GraphQLEndpointDefinitionRegistryEvent getSchemaEvent() {
+        return schemaEvent;
+    }
+
+    /**
+     * JCR nodes of the tours, read with the session of the workspace
+     * @return
+     */
+    public List<Node> getTourNodes() {
+        return tourNodes;
+    }
+
+    private <T extends MockContext> T newContext(T context) {
+        User user = mock(User.class);
+        doReturn("superuser").when(user).getName();
+        context.setUser(user);
+        context.setLocale(Locale.ENGLISH);
+        for (Map.Entry<String, javax.jcr.Session> session: repository.getSessions().entrySet()) {
+            context.addSession(session.getKey(), session.getValue());
+        }
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DefinitionProvider<GraphQLDefinition> definitionProvider(GraphQLDefinition definition) {
+        DefinitionMetadata metadata = mock(DefinitionMetadata.class);
+        doReturn(REFERENCE_ID).when(metadata).getReferenceId();
+        DefinitionProvider<GraphQLDefinition> definitionProvider = mock(DefinitionProvider.class);
+        doReturn(metadata).when(definitionProvider).getMetadata();
+        doReturn(true).when(definitionProvider).isValid();
+        doReturn(definition).when(definitionProvider).get();
+        return definitionProvider;
+    }
+
+    /**
+     * Invokes the lifecycle methods of the component, as the container does
+     */
+    private static void invoke(Object component, Class<? extends Annotation> annotation) throws Exception {
+        for (Method method: component.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(annotation)) {
+                method.setAccessible(true);
+                method.invoke(component);
+            }
+        }
+    }
+
+    /**
+     * Private field of the component, the benchmarks reach the internals the endpoint does not expose
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T field(Object component, String name) throws Exception {
+        Field field = component.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return (T) field.get(component);
+    }
+
+    /**
+     * System context of the listeners of the caches, with the sessions of the repository
+     */
+    private static class BenchmarkSystemContext extends MockContext implements SystemContext {
+    }
+}
@@ -0,0 +1,30 @@
+package com.formentor.magnolia.rest.graphql.benchmarks;
+
+import com.formentor.magnolia.rest.graphql.service.GraphQLProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build of the schema when a GraphQL definition is registered again: the sdl of the definition is parsed, the
+ * fragments are merged, the generated types are added and the executable schema is published.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaBenchmark {
+
+    @Benchmark
+    public GraphQLProvider rebuildSchema(GraphQLEnvironment environment) {
+        environment.getProvider().onEndpointReregistered(environment.getSchemaEvent());
+        return environment.getProvider();
+    }
+}
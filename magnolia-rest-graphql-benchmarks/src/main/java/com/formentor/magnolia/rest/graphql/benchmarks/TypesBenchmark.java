@@ -0,0 +1,57 @@
+package com.formentor.magnolia.rest.graphql.benchmarks;
+
+import com.formentor.magnolia.rest.graphql.type.Node;
+import com.formentor.magnolia.rest.graphql.type.NodeMap;
+import com.formentor.magnolia.rest.graphql.type.NodeTypeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.RepositoryException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of the types returned by the fetchers over all the tours, without GraphQL.
+ *
+ * Run with "-prof gc" to get the allocation rate, i.e. "gc.alloc.rate.norm" is the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypesBenchmark {
+    // The children of the tours are mgnl:contentNode, so they pass the filter. Shared as the fetcher of a field does
+    private static final NodeTypeFilter CHILD_FILTER = NodeTypeFilter.of(Collections.singletonList(BenchmarkRepository.NODE_TYPE_contentNode));
+
+    /**
+     * NodeMap.get of the properties selected by a query of tours and of the children
+     */
+    @Benchmark
+    public void nodeMapGet(GraphQLEnvironment environment, Blackhole blackhole) {
+        for (javax.jcr.Node tour: environment.getTourNodes()) {
+            NodeMap nodeMap = new NodeMap(tour, CHILD_FILTER);
+            blackhole.consume(nodeMap.get("name"));
+            blackhole.consume(nodeMap.get("description"));
+            blackhole.consume(nodeMap.get("duration"));
+            blackhole.consume(nodeMap.get("isFeatured"));
+            blackhole.consume(nodeMap.get("children"));
+        }
+    }
+
+    /**
+     * Node.getChildren filtered by node type
+     */
+    @Benchmark
+    public void nodeGetChildren(GraphQLEnvironment environment, Blackhole blackhole) throws RepositoryException {
+        for (javax.jcr.Node tour: environment.getTourNodes()) {
+            blackhole.consume(new Node(tour, CHILD_FILTER).getChildren());
+        }
+    }
+}
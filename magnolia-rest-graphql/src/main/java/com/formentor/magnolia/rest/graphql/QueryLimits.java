@@ -0,0 +1,30 @@
+package com.formentor.magnolia.rest.graphql;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits of the queries, configured in <tt>config:/modules/magnolia-rest-graphql/config/limits</tt>.
+ *
+ * The complexity of a query is the number of fields it would resolve, being the fields of a list multiplied by the
+ * estimated size of the list. A limit lower or equal than 0 is not checked.
+ */
+@Data
+public class QueryLimits {
+    // Max number of nested fields
+    private int maxDepth = 15;
+    // Max number of aliased fields
+    private int maxAliases = 30;
+    // Max complexity of the query
+    private long maxComplexity = 10000;
+    // Estimated size of lists whose size is unknown
+    private int defaultListSize = 20;
+    // Estimated size of the lists of the fields of Query, by name of the field, i.e. "tours_ql: 50"
+    private Map<String, Integer> listSizes = new HashMap<>();
+    // Max number of queries of a batch
+    private int maxBatchSize = 20;
+    // Max number of changes of a bulk mutation, all of them are saved at once
+    private int maxBulkChanges = 1000;
+}
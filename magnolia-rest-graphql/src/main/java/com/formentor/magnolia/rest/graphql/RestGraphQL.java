@@ -2,6 +2,8 @@ package com.formentor.magnolia.rest.graphql;
 
 import com.formentor.magnolia.config.source.graphql.GraphQLConfigurationSourceBuilder;
 import com.formentor.magnolia.rest.graphql.registry.GraphQLEndpointDefinitionRegistry;
+import com.formentor.magnolia.rest.graphql.service.persisted.InMemoryPersistedQueryStore;
+import com.formentor.magnolia.rest.graphql.service.persisted.PersistedQueryStore;
 import info.magnolia.init.MagnoliaConfigurationProperties;
 import info.magnolia.map2bean.Map2BeanTransformer;
 import info.magnolia.module.ModuleLifecycle;
@@ -28,6 +30,63 @@ public class RestGraphQL implements ModuleLifecycle {
     private final ModuleRegistry moduleRegistry;
     private final MagnoliaConfigurationProperties magnoliaConfigurationProperties;
 
+    /**
+     * Executor of the data fetchers
+     * - fetcherThreads: max number of fetchers running at the same time
+     * - fetcherQueueSize: max number of fetchers waiting for a thread, the rest run in the thread of the request
+     * - virtualThreads: use virtual threads when the JVM supports them
+     */
+    private int fetcherThreads = 8;
+    private int fetcherQueueSize = 100;
+    private boolean virtualThreads = false;
+
+    /**
+     * Limits of depth, aliases and complexity of the queries
+     */
+    private QueryLimits limits = new QueryLimits();
+
+    /**
+     * Store of the automatic persisted queries, in memory by default
+     */
+    private PersistedQueryStore persistedQueryStore = new InMemoryPersistedQueryStore();
+
+    /**
+     * Seconds the responses of GET requests may be cached by browsers and CDNs
+     */
+    private int httpCacheMaxAge = 60;
+
+    /**
+     * Compress the responses with gzip when the client accepts it, disable it if a filter already compresses them
+     */
+    private boolean gzipResponses = false;
+
+    /**
+     * Subscriptions to the changes of the contents
+     * - maxSubscriptions: max number of subscriptions open at the same time, each one holds a request
+     * - subscriptionBufferSize: max number of changes waiting for a slow subscriber, the oldest ones are dropped
+     */
+    private int maxSubscriptions = 100;
+    private int subscriptionBufferSize = 100;
+
+    /**
+     * Slow query log
+     * - slowQueryThresholdMillis: JCR queries slower than it are logged with their plan, 0 disables the log
+     * - slowQueryLogSize: number of slowest queries of the last hour listed by the endpoint /graphql/slow
+     */
+    private int slowQueryThresholdMillis = 500;
+    private int slowQueryLogSize = 20;
+
+    /**
+     * Role of the users that read the statistics and the slow queries of the endpoints /graphql/stats and /graphql/slow,
+     * they show queries of other users. The MBean is not restricted by it.
+     */
+    private String adminRole = "superuser";
+
+    /**
+     * Time without changes of the GraphQL definitions and delivery endpoints before the schema is rebuilt, so a burst of changes rebuilds once
+     */
+    private int schemaRebuildDelayMillis = 500;
+
     @Inject
     public RestGraphQL(GraphQLEndpointDefinitionRegistry graphQLRegistry, ResourceOrigin origin, Map2BeanTransformer map2BeanTransformer, MagnoliaConfigurationProperties magnoliaConfigurationProperties, ModuleRegistry moduleRegistry) {
         this.graphQLRegistry = graphQLRegistry;
@@ -46,4 +105,108 @@ public class RestGraphQL implements ModuleLifecycle {
     public void stop(ModuleLifecycleContext moduleLifecycleContext) {
 
     }
+
+    public int getFetcherThreads() {
+        return fetcherThreads;
+    }
+
+    public void setFetcherThreads(int fetcherThreads) {
+        this.fetcherThreads = fetcherThreads;
+    }
+
+    public int getFetcherQueueSize() {
+        return fetcherQueueSize;
+    }
+
+    public void setFetcherQueueSize(int fetcherQueueSize) {
+        this.fetcherQueueSize = fetcherQueueSize;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public QueryLimits getLimits() {
+        return limits;
+    }
+
+    public void setLimits(QueryLimits limits) {
+        this.limits = limits;
+    }
+
+    public PersistedQueryStore getPersistedQueryStore() {
+        return persistedQueryStore;
+    }
+
+    public void setPersistedQueryStore(PersistedQueryStore persistedQueryStore) {
+        this.persistedQueryStore = persistedQueryStore;
+    }
+
+    public int getHttpCacheMaxAge() {
+        return httpCacheMaxAge;
+    }
+
+    public void setHttpCacheMaxAge(int httpCacheMaxAge) {
+        this.httpCacheMaxAge = httpCacheMaxAge;
+    }
+
+    public boolean isGzipResponses() {
+        return gzipResponses;
+    }
+
+    public void setGzipResponses(boolean gzipResponses) {
+        this.gzipResponses = gzipResponses;
+    }
+
+    public int getMaxSubscriptions() {
+        return maxSubscriptions;
+    }
+
+    public void setMaxSubscriptions(int maxSubscriptions) {
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    public int getSubscriptionBufferSize() {
+        return subscriptionBufferSize;
+    }
+
+    public void setSubscriptionBufferSize(int subscriptionBufferSize) {
+        this.subscriptionBufferSize = subscriptionBufferSize;
+    }
+
+    public int getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    public void setSlowQueryThresholdMillis(int slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    }
+
+    public int getSlowQueryLogSize() {
+        return slowQueryLogSize;
+    }
+
+    public void setSlowQueryLogSize(int slowQueryLogSize) {
+        this.slowQueryLogSize = slowQueryLogSize;
+    }
+
+    public int getSchemaRebuildDelayMillis() {
+        return schemaRebuildDelayMillis;
+    }
+
+    public void setSchemaRebuildDelayMillis(int schemaRebuildDelayMillis) {
+        this.schemaRebuildDelayMillis = schemaRebuildDelayMillis;
+    }
+
+    public String getAdminRole() {
+        return adminRole;
+    }
+
+    public void setAdminRole(String adminRole) {
+        this.adminRole = adminRole;
+    }
 }
@@ -0,0 +1,149 @@
+package com.formentor.magnolia.rest.graphql.endpoint;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.GraphQLError;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the results of the executions as JSON directly to the response.
+ *
+ * The data of the result is written while it is traversed, instead of building the map of toSpecification() and
+ * serializing it afterwards, so large results do not need another copy in memory.
+ * The JSON is the one of the specification: { "errors": [...], "data": {...}, "extensions": {...} }
+ */
+public class ExecutionResultWriter {
+    private static final String RESULT_errors = "errors";
+    private static final String RESULT_data = "data";
+    private static final String RESULT_extensions = "extensions";
+    // Fields of the parts of incremental delivery
+    private static final String RESULT_path = "path";
+    private static final String RESULT_hasNext = "hasNext";
+
+    private final JsonFactory jsonFactory;
+
+    public ExecutionResultWriter(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Writes the result, the stream is closed
+     * @param result
+     * @param output
+     * @throws IOException
+     */
+    public void write(ExecutionResult result, OutputStream output) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            writeResult(result, generator);
+        }
+    }
+
+    /**
+     * Writes the results of a batch as an array, the stream is closed
+     * @param results
+     * @param output
+     * @throws IOException
+     */
+    public void write(List<ExecutionResult> results, OutputStream output) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.writeStartArray();
+            for (ExecutionResult result: results) {
+                writeResult(result, generator);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes a part of the incremental delivery of a result, the stream is flushed but not closed
+     *
+     * @param result  initial result or deferred result
+     * @param path    path of the deferred result, null for the initial one
+     * @param hasNext false for the last part
+     * @param output
+     * @throws IOException
+     */
+    public void writePart(ExecutionResult result, List<Object> path, boolean hasNext, OutputStream output) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            if (result != null) {
+                writeFields(result, generator);
+            }
+            if (path != null) {
+                generator.writeFieldName(RESULT_path);
+                writeValue(path, generator);
+            }
+            generator.writeBooleanField(RESULT_hasNext, hasNext);
+            generator.writeEndObject();
+            generator.flush();
+        }
+    }
+
+    private void writeResult(ExecutionResult result, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeFields(result, generator);
+        generator.writeEndObject();
+    }
+
+    private void writeFields(ExecutionResult result, JsonGenerator generator) throws IOException {
+        if (!result.getErrors().isEmpty()) {
+            generator.writeArrayFieldStart(RESULT_errors);
+            for (GraphQLError error: result.getErrors()) {
+                writeValue(error.toSpecification(), generator);
+            }
+            generator.writeEndArray();
+        }
+        if (result.isDataPresent()) {
+            generator.writeFieldName(RESULT_data);
+            writeValue(result.getData(), generator);
+        }
+        if (result.getExtensions() != null && result.getExtensions().keySet().stream().anyMatch(key -> !GraphQL.DEFERRED_RESULTS.equals(key))) {
+            generator.writeObjectFieldStart(RESULT_extensions);
+            for (Map.Entry<Object, Object> entry: result.getExtensions().entrySet()) {
+                // The publisher of the deferred results is not part of the response
+                if (!GraphQL.DEFERRED_RESULTS.equals(entry.getKey())) {
+                    generator.writeFieldName(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue(), generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeValue(Object value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue(), generator);
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Iterable) {
+            generator.writeStartArray();
+            for (Object item: (Iterable<?>) value) {
+                writeValue(item, generator);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(value.toString());
+        } else {
+            // Scalars of other types and objects of the extensions
+            generator.writeObject(value);
+        }
+    }
+}
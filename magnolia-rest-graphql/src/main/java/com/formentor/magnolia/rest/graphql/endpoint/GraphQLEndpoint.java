@@ -1,6 +1,18 @@
 package com.formentor.magnolia.rest.graphql.endpoint;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.formentor.magnolia.rest.graphql.RestGraphQL;
 import com.formentor.magnolia.rest.graphql.service.GraphQLProvider;
+import com.formentor.magnolia.rest.graphql.service.RequestContext;
+import com.formentor.magnolia.rest.graphql.type.BinaryMetadata;
+import com.formentor.magnolia.rest.graphql.type.Property;
+import com.google.common.hash.Hashing;
+import graphql.ExecutionResult;
+import info.magnolia.cms.security.User;
+import info.magnolia.cms.security.UserManager;
+import info.magnolia.context.MgnlContext;
 import info.magnolia.rest.AbstractEndpoint;
 import info.magnolia.rest.EndpointDefinition;
 import info.magnolia.rest.delivery.jcr.i18n.I18n;
@@ -9,15 +21,38 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @Api(value = "/magnolia-rest-graphql")
 @Path("/magnolia-rest-graphql")
@@ -26,34 +61,407 @@ import javax.ws.rs.core.Response;
 public class GraphQLEndpoint<D extends EndpointDefinition> extends AbstractEndpoint<D> {
 
     private static final String STATUS_MESSAGE_OK = "OK";
+    private static final String STATUS_MESSAGE_NOT_MODIFIED = "Not Modified";
+    private static final String STATUS_MESSAGE_BAD_REQUEST = "Bad Request";
     private static final String STATUS_MESSAGE_METHOD_NOT_ALLOWED = "Method Not Allowed";
     private static final String STATUS_MESSAGE_NO_CONTENT = "No content and Not Found";
     private static final String STATUS_MESSAGE_NOT_FOUND = "Not Found";
+    private static final String STATUS_MESSAGE_FORBIDDEN = "Forbidden";
     private static final String STATUS_MESSAGE_INTERNAL_ERROR = "Internal Server Error";
 
+    private static final String ENCODING_GZIP = "gzip";
+    // Requests with this header get the tracing and the metrics of the execution in the extensions of the result
+    public static final String HEADER_TRACING = "X-GraphQL-Tracing";
+    // Disables the buffering of nginx
+    private static final String HEADER_ACCEL_BUFFERING = "X-Accel-Buffering";
+
     private final GraphQLProvider graphQLService;
+    private final Provider<RestGraphQL> moduleProvider;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutionResultWriter resultWriter = new ExecutionResultWriter(objectMapper.getFactory());
+    private final IncrementalDelivery incrementalDelivery = new IncrementalDelivery(resultWriter);
+    private final ServerSentEvents serverSentEvents = new ServerSentEvents(resultWriter);
+
     @Inject
-    public GraphQLEndpoint(D endpointDefinition, GraphQLProvider graphQLProvider) {
+    public GraphQLEndpoint(D endpointDefinition, GraphQLProvider graphQLProvider, Provider<RestGraphQL> moduleProvider) {
         super(endpointDefinition);
         this.graphQLService = graphQLProvider;
+        this.moduleProvider = moduleProvider;
     }
 
+    /**
+     * GraphQL service
+     *
+     * The body is a request or an array of requests, the requests of an array are executed at once, or one after
+     * another if any of them is a mutation, and their results are returned in the same order.
+     * Results are written to the response while they are serialized, compressed if the client accepts gzip.
+     * Fields tagged with @defer are sent as parts of a multipart response if the client accepts "multipart/mixed".
+     * Subscriptions are sent as Server-Sent Events if the client accepts "text/event-stream".
+     * With the header "X-GraphQL-Tracing: true" the result has the extensions "tracing" and "metrics".
+     */
     @Path("/graphql")
     @POST
-    @Produces({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON, IncrementalDelivery.MULTIPART_MIXED, ServerSentEvents.TEXT_EVENT_STREAM})
     @ApiOperation(value = "GraphQL service")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = STATUS_MESSAGE_OK),
+            @ApiResponse(code = 400, message = STATUS_MESSAGE_BAD_REQUEST),
             @ApiResponse(code = 405, message = STATUS_MESSAGE_METHOD_NOT_ALLOWED),
             @ApiResponse(code = 204, message = STATUS_MESSAGE_NO_CONTENT),
             @ApiResponse(code = 404, message = STATUS_MESSAGE_NOT_FOUND),
             @ApiResponse(code = 500, message = STATUS_MESSAGE_INTERNAL_ERROR)
     })
-    public Response graphql(@HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType, GraphQLRequestBody request) {
-        if (request.getQuery() == null) {
-            request.setQuery("");
+    public Response graphql(@HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType, @HeaderParam(HttpHeaders.ACCEPT) String accept,
+                            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @HeaderParam(HEADER_TRACING) String tracing,
+                            JsonNode body) {
+        if (body == null || !(body.isObject() || body.isArray())) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        if (body.isArray()) {
+            return graphqlBatch(body, acceptEncoding, requestContext(false, tracing));
+        }
+
+        GraphQLRequestBody request = toRequest(body);
+        if (request == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        ExecutionResult result = graphQLService.executeRequest(request.getQuery(), request.getOperationName(), request.getVariables(), request.getExtensions(), requestContext(false, tracing));
+        if (ServerSentEvents.isSubscription(result)) {
+            return ServerSentEvents.accepts(accept)? eventStreamResponse(result): Response.status(Response.Status.NOT_ACCEPTABLE).build();
+        }
+        if (IncrementalDelivery.hasDeferredResults(result) && IncrementalDelivery.accepts(accept)) {
+            // Parts are flushed as soon as they are ready, so they are not compressed
+            return Response.ok(incrementalDelivery.multipart(result), IncrementalDelivery.CONTENT_TYPE).build();
+        }
+        return streamingResponse(output -> resultWriter.write(incrementalDelivery.complete(result), output), acceptEncoding);
+    }
+
+    private Response graphqlBatch(JsonNode body, String acceptEncoding, RequestContext context) {
+        int maxBatchSize = moduleProvider.get().getLimits().getMaxBatchSize();
+        if (body.size() == 0 || (maxBatchSize > 0 && body.size() > maxBatchSize)) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        List<GraphQLRequestBody> requests = new ArrayList<>();
+        for (JsonNode item: body) {
+            GraphQLRequestBody request = toRequest(item);
+            if (request == null) {
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            }
+            requests.add(request);
+        }
+
+        List<ExecutionResult> results = graphQLService.executeBatch(requests, context);
+        if (results.stream().anyMatch(ServerSentEvents::isSubscription)) {
+            // Subscriptions can not be part of a batch
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        return streamingResponse(output -> {
+            List<ExecutionResult> completeResults = new ArrayList<>();
+            for (ExecutionResult result: results) {
+                completeResults.add(incrementalDelivery.complete(result));
+            }
+            resultWriter.write(completeResults, output);
+        }, acceptEncoding);
+    }
+
+    /**
+     * GraphQL service for GET requests, so the responses can be cached by browsers and CDNs.
+     *
+     * The parameters are the ones of the POST body, "variables" and "extensions" as JSON:
+     *      /graphql?variables={"duration":7}&extensions={"persistedQuery":{"version":1,"sha256Hash":"ecf4edb4..."}}
+     * The response has the ETag of its content and the Last-Modified of the workspaces read, and 304 is returned if
+     * the client already has it.
+     */
+    @Path("/graphql")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @ApiOperation(value = "GraphQL service for cacheable queries")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = STATUS_MESSAGE_OK),
+            @ApiResponse(code = 304, message = STATUS_MESSAGE_NOT_MODIFIED),
+            @ApiResponse(code = 400, message = STATUS_MESSAGE_BAD_REQUEST),
+            @ApiResponse(code = 500, message = STATUS_MESSAGE_INTERNAL_ERROR)
+    })
+    public Response graphql(@QueryParam("query") String query, @QueryParam("operationName") String operationName,
+                            @QueryParam("variables") String variables, @QueryParam("extensions") String extensions,
+                            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @HeaderParam(HEADER_TRACING) String tracing,
+                            @Context Request request) {
+        Map<String, Object> parsedVariables;
+        Map<String, Object> parsedExtensions;
+        try {
+            parsedVariables = parseJson(variables);
+            parsedExtensions = parseJson(extensions);
+        } catch (IOException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        // GET requests may be repeated and cached, they can not change contents
+        RequestContext context = requestContext(true, tracing);
+        ExecutionResult result = graphQLService.executeRequest(query, operationName, parsedVariables, parsedExtensions, context);
+        if (ServerSentEvents.isSubscription(result)) {
+            // Subscriptions are not cacheable, they have their own resource
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        return cacheableResponse(result, context, request, acceptEncoding);
+    }
+
+    /**
+     * Subscriptions to the changes of the contents as Server-Sent Events, so they can be opened with EventSource.
+     *
+     * The parameters are the ones of GET /graphql:
+     *      /graphql/subscriptions?query=subscription { tours_ql { type path node { name } } }
+     * Every change is an event "next" with the result of the subscription for the node changed.
+     */
+    @Path("/graphql/subscriptions")
+    @GET
+    @Produces({ServerSentEvents.TEXT_EVENT_STREAM})
+    @ApiOperation(value = "GraphQL subscriptions as Server-Sent Events")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = STATUS_MESSAGE_OK),
+            @ApiResponse(code = 400, message = STATUS_MESSAGE_BAD_REQUEST),
+            @ApiResponse(code = 500, message = STATUS_MESSAGE_INTERNAL_ERROR)
+    })
+    public Response subscriptions(@QueryParam("query") String query, @QueryParam("operationName") String operationName,
+                                  @QueryParam("variables") String variables, @QueryParam("extensions") String extensions) {
+        Map<String, Object> parsedVariables;
+        Map<String, Object> parsedExtensions;
+        try {
+            parsedVariables = parseJson(variables);
+            parsedExtensions = parseJson(extensions);
+        } catch (IOException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        ExecutionResult result = graphQLService.executeRequest(query, operationName, parsedVariables, parsedExtensions, new RequestContext(true));
+        return eventStreamResponse(result);
+    }
+
+    @Path("/graphql/stats")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @ApiOperation(value = "Statistics of the GraphQL service")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = STATUS_MESSAGE_OK),
+            @ApiResponse(code = 403, message = STATUS_MESSAGE_FORBIDDEN),
+            @ApiResponse(code = 500, message = STATUS_MESSAGE_INTERNAL_ERROR)
+    })
+    public Response statistics() {
+        if (!isAdmin()) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        return Response.ok(graphQLService.getStatistics()).build();
+    }
+
+    @Path("/graphql/slow")
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @ApiOperation(value = "Slowest JCR queries of the last hour with their GraphQL operation and plan")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = STATUS_MESSAGE_OK),
+            @ApiResponse(code = 403, message = STATUS_MESSAGE_FORBIDDEN),
+            @ApiResponse(code = 500, message = STATUS_MESSAGE_INTERNAL_ERROR)
+    })
+    public Response slowQueries() {
+        if (!isAdmin()) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        return Response.ok(graphQLService.getSlowQueries()).build();
+    }
+
+    /**
+     * Checks if the user has the admin role of the module, the statistics and the slow queries show the queries and
+     * values of other users
+     */
+    private boolean isAdmin() {
+        String adminRole = moduleProvider.get().getAdminRole();
+        User user = MgnlContext.getUser();
+        return StringUtils.isNotEmpty(adminRole) && user != null && !UserManager.ANONYMOUS_USER.equals(user.getName())
+                && user.hasRole(adminRole);
+    }
+
+    /**
+     * Value of a binary property, the url is the field "url" of the binary of a Property
+     *
+     * The value is copied from the repository to the response, so it is never loaded into memory. It is read with the
+     * session of the user, so the permissions of the user are checked.
+     */
+    @Path("/graphql/binary/{workspace}/{path: .+}")
+    @GET
+    @ApiOperation(value = "Value of a binary property")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = STATUS_MESSAGE_OK),
+            @ApiResponse(code = 404, message = STATUS_MESSAGE_NOT_FOUND),
+            @ApiResponse(code = 500, message = STATUS_MESSAGE_INTERNAL_ERROR)
+    })
+    public Response binary(@PathParam("workspace") String workspace, @PathParam("path") String path) {
+        final javax.jcr.Property property;
+        final BinaryMetadata metadata;
+        try {
+            Session session = MgnlContext.getJCRSession(workspace);
+            String absPath = "/" + path;
+            if (!session.propertyExists(absPath)) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            property = session.getProperty(absPath);
+            metadata = new Property(property).getBinary();
+            if (metadata == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+        } catch (RepositoryException e) {
+            log.debug("Binary {} of workspace {} can not be read", path, workspace, e);
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        StreamingOutput output = outputStream -> {
+            Binary binary = null;
+            try {
+                binary = property.getBinary();
+                try (InputStream inputStream = binary.getStream()) {
+                    IOUtils.copy(inputStream, outputStream);
+                }
+            } catch (RepositoryException e) {
+                throw new IOException("Errors reading binary " + path + " of workspace " + workspace, e);
+            } finally {
+                if (binary != null) {
+                    binary.dispose();
+                }
+            }
+        };
+
+        try {
+            CacheControl cacheControl = new CacheControl();
+            cacheControl.setMaxAge(moduleProvider.get().getHttpCacheMaxAge());
+            cacheControl.setPrivate(!UserManager.ANONYMOUS_USER.equals(MgnlContext.getUser().getName()));
+            String mimeType = metadata.getMimeType();
+            Response.ResponseBuilder builder = Response.ok(output, (mimeType == null)? MediaType.APPLICATION_OCTET_STREAM: mimeType)
+                    .cacheControl(cacheControl);
+            long size = metadata.getSize();
+            if (size >= 0) {
+                builder.header(HttpHeaders.CONTENT_LENGTH, size);
+            }
+            return builder.build();
+        } catch (RepositoryException e) {
+            log.error("Errors reading metadata of binary {} of workspace {}", path, workspace, e);
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * Response with the events of the subscription, it is not compressed nor buffered by proxies so every event is
+     * received as soon as it is written
+     */
+    private Response eventStreamResponse(ExecutionResult result) {
+        CacheControl noCache = new CacheControl();
+        noCache.setNoCache(true);
+        return Response.ok(serverSentEvents.stream(result), ServerSentEvents.TEXT_EVENT_STREAM)
+                .cacheControl(noCache)
+                .header(HEADER_ACCEL_BUFFERING, "no")
+                .build();
+    }
+
+    /**
+     * Response whose entity is written by the writer, compressed if the client accepts gzip
+     */
+    private Response streamingResponse(StreamingOutput writer, String acceptEncoding) {
+        if (!acceptsGzip(acceptEncoding)) {
+            return Response.ok(writer, MediaType.APPLICATION_JSON_TYPE).build();
+        }
+
+        StreamingOutput gzipWriter = output -> writer.write(new GZIPOutputStream(output));
+        return Response.ok(gzipWriter, MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.CONTENT_ENCODING, ENCODING_GZIP)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+
+    /**
+     * Response with the caching headers derived from the result and the workspaces read by the query.
+     *
+     * The result is serialized in memory to compute its ETag. Results with errors or traces are not cached.
+     */
+    private Response cacheableResponse(ExecutionResult result, RequestContext context, Request request, String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        byte[] body;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            OutputStream output = gzip? new GZIPOutputStream(buffer): buffer;
+            resultWriter.write(incrementalDelivery.complete(result), output);
+            body = buffer.toByteArray();
+        } catch (IOException e) {
+            log.error("Errors serializing GraphQL result", e);
+            return Response.serverError().build();
+        }
+        // Traces are different for every request
+        if (!result.getErrors().isEmpty() || context.isTracing()) {
+            CacheControl noStore = new CacheControl();
+            noStore.setNoStore(true);
+            return encoded(Response.ok(body, MediaType.APPLICATION_JSON_TYPE).cacheControl(noStore), gzip).build();
+        }
+
+        // Compressed and uncompressed representations must have different tags
+        EntityTag entityTag = new EntityTag(Hashing.sha256().hashBytes(body).toString() + (gzip? "-" + ENCODING_GZIP: ""));
+        long lastModified = graphQLService.getLastModified(context);
+        Date lastModifiedDate = (lastModified > 0)? new Date(lastModified): null;
+
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(moduleProvider.get().getHttpCacheMaxAge());
+        // Responses depend on the permissions of the user, just the ones of anonymous can be shared
+        cacheControl.setPrivate(!UserManager.ANONYMOUS_USER.equals(MgnlContext.getUser().getName()));
+
+        Response.ResponseBuilder builder = (lastModifiedDate == null)
+                ? request.evaluatePreconditions(entityTag)
+                : request.evaluatePreconditions(lastModifiedDate, entityTag);
+        // 304 has no content to encode
+        boolean modified = (builder == null);
+        if (modified) {
+            builder = Response.ok(body, MediaType.APPLICATION_JSON_TYPE);
+        }
+        builder.tag(entityTag).cacheControl(cacheControl);
+        if (lastModifiedDate != null) {
+            builder.lastModified(lastModifiedDate);
+        }
+
+        return encoded(builder, gzip && modified).build();
+    }
+
+    private Response.ResponseBuilder encoded(Response.ResponseBuilder builder, boolean gzip) {
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, ENCODING_GZIP);
+        }
+        return builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        return moduleProvider.get().isGzipResponses() && acceptEncoding != null && acceptEncoding.contains(ENCODING_GZIP);
+    }
+
+    private RequestContext requestContext(boolean readOnly, String tracing) {
+        RequestContext context = new RequestContext(readOnly);
+        context.setTracing(Boolean.parseBoolean(tracing));
+        return context;
+    }
+
+    /**
+     * Request of the body, null if it is not a valid request
+     */
+    private GraphQLRequestBody toRequest(JsonNode json) {
+        if (!json.isObject()) {
+            return null;
+        }
+        try {
+            return objectMapper.convertValue(json, GraphQLRequestBody.class);
+        } catch (IllegalArgumentException e) {
+            log.debug("Invalid GraphQL request {}", json, e);
+            return null;
+        }
+    }
+
+    private Map<String, Object> parseJson(String json) throws IOException {
+        if (StringUtils.isBlank(json)) {
+            return null;
         }
-        Object result = graphQLService.execute(request.getQuery());
-        return (result != null)? Response.ok(result).build(): Response.status(Response.Status.NO_CONTENT).build();
+        return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
     }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ public class GraphQLRequestBody {
     private String query;
     private String operationName;
     private Map<String, Object> variables;
+    private Map<String, Object> extensions;
 
     public String getQuery() {
         return query;
@@ -30,4 +31,12 @@ public class GraphQLRequestBody {
     public void setVariables(Map<String, Object> variables) {
         this.variables = variables;
     }
+
+    public Map<String, Object> getExtensions() {
+        return extensions;
+    }
+
+    public void setExtensions(Map<String, Object> extensions) {
+        this.extensions = extensions;
+    }
 }
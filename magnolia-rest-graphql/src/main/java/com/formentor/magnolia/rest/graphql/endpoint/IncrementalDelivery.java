@@ -0,0 +1,222 @@
+package com.formentor.magnolia.rest.graphql.endpoint;
+
+import graphql.DeferredExecutionResult;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQL;
+import graphql.GraphQLError;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivery of the fields tagged with @defer.
+ *
+ * Clients that accept "multipart/mixed" receive the initial result as soon as it is ready and then a part for each
+ * deferred field, while the rest of the fields are still being resolved:
+ *
+ *      ---
+ *      Content-Type: application/json; charset=utf-8
+ *
+ *      {"data":{"tours_ql":[...]},"hasNext":true}
+ *      ---
+ *      Content-Type: application/json; charset=utf-8
+ *
+ *      {"data":[...],"path":["tours_ql",0,"children"],"hasNext":true}
+ *      ---
+ *      Content-Type: application/json; charset=utf-8
+ *
+ *      {"hasNext":false}
+ *      -----
+ *
+ * For the rest of the clients the deferred results are merged into the initial result before writing it.
+ */
+public class IncrementalDelivery {
+    public static final String MULTIPART_MIXED = "multipart/mixed";
+    public static final String CONTENT_TYPE = MULTIPART_MIXED + "; boundary=\"-\"";
+
+    private static final byte[] PART_DELIMITER = "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_DELIMITER = "\r\n-----\r\n".getBytes(StandardCharsets.UTF_8);
+    // Max time waiting for a deferred result, so a fetcher that never completes does not block the response forever
+    private static final long DEFERRED_TIMEOUT_SECONDS = 60;
+    private static final Object COMPLETE = new Object();
+
+    private final ExecutionResultWriter writer;
+
+    public IncrementalDelivery(ExecutionResultWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Checks if the result has fields tagged with @defer pending
+     * @param result
+     * @return
+     */
+    public static boolean hasDeferredResults(ExecutionResult result) {
+        return result.getExtensions() != null && result.getExtensions().get(GraphQL.DEFERRED_RESULTS) instanceof Publisher;
+    }
+
+    /**
+     * Checks if the client accepts the incremental delivery
+     * @param accept header Accept of the request
+     * @return
+     */
+    public static boolean accepts(String accept) {
+        return accept != null && accept.contains(MULTIPART_MIXED);
+    }
+
+    /**
+     * Writes the initial result and the deferred results as parts of a multipart response
+     * @param result
+     * @return
+     */
+    public StreamingOutput multipart(ExecutionResult result) {
+        return output -> {
+            try {
+                output.write(PART_DELIMITER);
+                writer.writePart(result, null, true, output);
+                forEachDeferred(result, deferred -> {
+                    output.write(PART_DELIMITER);
+                    writer.writePart(deferred, deferred.getPath(), true, output);
+                });
+                output.write(PART_DELIMITER);
+                writer.writePart(null, null, false, output);
+                output.write(END_DELIMITER);
+            } finally {
+                output.close();
+            }
+        };
+    }
+
+    /**
+     * Waits for the deferred results and merges them into the data of the initial result
+     * @param result
+     * @return result with the data of all the fields
+     * @throws IOException if a deferred result is not received
+     */
+    public ExecutionResult complete(ExecutionResult result) throws IOException {
+        if (!hasDeferredResults(result)) {
+            return result;
+        }
+
+        List<GraphQLError> errors = new ArrayList<>(result.getErrors());
+        Object data = result.getData();
+        forEachDeferred(result, deferred -> {
+            errors.addAll(deferred.getErrors());
+            setValue(data, deferred.getPath(), deferred.getData());
+        });
+
+        Map<Object, Object> extensions = (result.getExtensions().size() > 1)? new LinkedHashMap<>(result.getExtensions()): null;
+        if (extensions != null) {
+            extensions.remove(GraphQL.DEFERRED_RESULTS);
+        }
+        return ExecutionResultImpl.newExecutionResult()
+                .data(data)
+                .errors(errors)
+                .extensions(extensions)
+                .build();
+    }
+
+    /**
+     * Sets the value at the path of the data, the path is the list of names of fields and indexes of lists
+     */
+    @SuppressWarnings("unchecked")
+    private static void setValue(Object data, List<Object> path, Object value) {
+        Object parent = data;
+        for (int i = 0; i < path.size() - 1 && parent != null; i++) {
+            Object segment = path.get(i);
+            parent = (segment instanceof Integer)? ((List<Object>) parent).get((Integer) segment): ((Map<String, Object>) parent).get(String.valueOf(segment));
+        }
+        if (parent == null || path.isEmpty()) {
+            return;
+        }
+        Object last = path.get(path.size() - 1);
+        if (last instanceof Integer) {
+            ((List<Object>) parent).set((Integer) last, value);
+        } else {
+            ((Map<String, Object>) parent).put(String.valueOf(last), value);
+        }
+    }
+
+    /**
+     * Consumes the deferred results one by one, requesting the next one once the previous is written
+     */
+    @SuppressWarnings("unchecked")
+    private static void forEachDeferred(ExecutionResult result, DeferredConsumer consumer) throws IOException {
+        Publisher<DeferredExecutionResult> publisher = (Publisher<DeferredExecutionResult>) result.getExtensions().get(GraphQL.DEFERRED_RESULTS);
+        if (publisher == null) {
+            return;
+        }
+
+        BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        AtomicReference<Subscription> subscription = new AtomicReference<>();
+        publisher.subscribe(new Subscriber<DeferredExecutionResult>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription.set(s);
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(DeferredExecutionResult deferred) {
+                signals.add(deferred);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                signals.add(t);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add(COMPLETE);
+            }
+        });
+
+        while (true) {
+            Object signal;
+            try {
+                signal = signals.poll(DEFERRED_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel(subscription);
+                throw new IOException("Interrupted waiting for deferred results", e);
+            }
+            if (signal == null) {
+                cancel(subscription);
+                throw new IOException("Timeout waiting for deferred results");
+            }
+            if (signal == COMPLETE) {
+                return;
+            }
+            if (signal instanceof Throwable) {
+                throw new IOException("Errors resolving deferred results", (Throwable) signal);
+            }
+
+            consumer.accept((DeferredExecutionResult) signal);
+            subscription.get().request(1);
+        }
+    }
+
+    private static void cancel(AtomicReference<Subscription> subscription) {
+        if (subscription.get() != null) {
+            subscription.get().cancel();
+        }
+    }
+
+    private interface DeferredConsumer {
+        void accept(DeferredExecutionResult deferred) throws IOException;
+    }
+}
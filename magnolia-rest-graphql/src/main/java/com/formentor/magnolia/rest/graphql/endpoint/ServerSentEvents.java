@@ -0,0 +1,180 @@
+package com.formentor.magnolia.rest.graphql.endpoint;
+
+import com.formentor.magnolia.rest.graphql.service.subscription.NodeChangePublisher;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivery of the results of a subscription as Server-Sent Events.
+ *
+ * Every result pushed by the subscription is an event "next" and the end of the subscription is an event "complete":
+ *
+ *      event: next
+ *      data: {"data":{"tours_ql":{"type":"CHANGED","path":"/magnolia-travels/Kyoto","node":{...}}}}
+ *
+ *      event: complete
+ *      data:
+ *
+ * The next result is requested once the previous one is written, so a slow client slows down the subscription
+ * instead of filling the memory. The changes are resolved in the thread of the request, the observation thread just
+ * queues them. A comment is sent when there are no results for a while, so proxies keep the
+ * connection open and a client that left is detected.
+ */
+@Slf4j
+public class ServerSentEvents {
+    public static final String TEXT_EVENT_STREAM = "text/event-stream";
+
+    private static final String EVENT_next = "next";
+    private static final String EVENT_complete = "complete";
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final Object COMPLETE = new Object();
+
+    private final ExecutionResultWriter writer;
+
+    public ServerSentEvents(ExecutionResultWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Checks if the result is the one of a subscription, its data is the publisher of the results
+     * @param result
+     * @return
+     */
+    public static boolean isSubscription(ExecutionResult result) {
+        return result.getData() instanceof Publisher;
+    }
+
+    /**
+     * Checks if the client accepts Server-Sent Events
+     * @param accept header Accept of the request
+     * @return
+     */
+    public static boolean accepts(String accept) {
+        return accept != null && accept.contains(TEXT_EVENT_STREAM);
+    }
+
+    /**
+     * Writes the results of the subscription until it completes or the client leaves
+     *
+     * A result that is not a subscription, i.e. errors of validation, is written as the only event.
+     * @param result
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public StreamingOutput stream(ExecutionResult result) {
+        return output -> {
+            if (!isSubscription(result)) {
+                writeEvent(EVENT_next, result, output);
+                writeEvent(EVENT_complete, null, output);
+                return;
+            }
+
+            BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+            AtomicReference<Subscription> subscription = new AtomicReference<>();
+            // The deliveries of the changes are queued as signals, so this thread resolves them
+            NodeChangePublisher.bindDelivery(signals::add);
+            try {
+                subscribe((Publisher<ExecutionResult>) result.getData(), signals, subscription);
+            } finally {
+                NodeChangePublisher.unbindDelivery();
+            }
+
+            try {
+                while (true) {
+                    Object signal = signals.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                    if (signal == null) {
+                        // Fails if the client left
+                        output.write(HEARTBEAT);
+                        output.flush();
+                        continue;
+                    }
+                    if (signal instanceof Runnable) {
+                        // Delivery of changes, its results are queued as signals
+                        ((Runnable) signal).run();
+                        continue;
+                    }
+                    if (signal == COMPLETE) {
+                        writeEvent(EVENT_complete, null, output);
+                        return;
+                    }
+                    if (signal instanceof Throwable) {
+                        log.warn("Errors in GraphQL subscription", (Throwable) signal);
+                        writeEvent(EVENT_next, ExecutionResultImpl.newExecutionResult()
+                                .addError(GraphqlErrorBuilder.newError().message(((Throwable) signal).getMessage()).build())
+                                .build(), output);
+                        writeEvent(EVENT_complete, null, output);
+                        return;
+                    }
+
+                    writeEvent(EVENT_next, (ExecutionResult) signal, output);
+                    subscription.get().request(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // The client left or the subscription ended, the listener of the changes is released
+                if (subscription.get() != null) {
+                    subscription.get().cancel();
+                }
+            }
+        };
+    }
+
+    /**
+     * Subscribes to the results, the signals of the subscriber are queued
+     */
+    private static void subscribe(Publisher<ExecutionResult> publisher, BlockingQueue<Object> signals, AtomicReference<Subscription> subscription) {
+        publisher.subscribe(new Subscriber<ExecutionResult>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription.set(s);
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(ExecutionResult next) {
+                signals.add(next);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                signals.add(t);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add(COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * Writes an event whose data is the JSON of the result in a single line, the stream is flushed but not closed
+     */
+    private void writeEvent(String event, ExecutionResult result, OutputStream output) throws IOException {
+        output.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+        if (result != null) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            writer.write(result, data);
+            data.writeTo(output);
+        }
+        output.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+}
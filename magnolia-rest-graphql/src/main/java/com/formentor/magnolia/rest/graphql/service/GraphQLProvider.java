@@ -1,28 +1,73 @@
 package com.formentor.magnolia.rest.graphql.service;
 
 import com.formentor.magnolia.rest.graphql.GraphQLDefinition;
+import com.formentor.magnolia.rest.graphql.RestGraphQL;
+import com.formentor.magnolia.rest.graphql.endpoint.GraphQLRequestBody;
 import com.formentor.magnolia.rest.graphql.registry.GraphQLEndpointDefinitionRegistry;
 import com.formentor.magnolia.rest.graphql.registry.GraphQLEndpointDefinitionRegistryEvent;
 import com.formentor.magnolia.rest.graphql.registry.GraphQLEndpointDefinitionRegistryEventHandler;
+import com.formentor.magnolia.rest.graphql.service.analysis.QueryCostInstrumentation;
+import com.formentor.magnolia.rest.graphql.service.async.FetcherExecutor;
+import com.formentor.magnolia.rest.graphql.service.cache.PreparsedDocumentCache;
+import com.formentor.magnolia.rest.graphql.service.cache.QueryResultCache;
+import com.formentor.magnolia.rest.graphql.service.cache.WorkspaceChanges;
+import com.formentor.magnolia.rest.graphql.service.loader.NodeBatchLoader;
+import com.formentor.magnolia.rest.graphql.service.loader.NodeReference;
+import com.formentor.magnolia.rest.graphql.service.metrics.GraphQLMetrics;
+import com.formentor.magnolia.rest.graphql.service.metrics.MetricsInstrumentation;
+import com.formentor.magnolia.rest.graphql.service.metrics.QueryOrigin;
+import com.formentor.magnolia.rest.graphql.service.metrics.RequestTracingInstrumentation;
+import com.formentor.magnolia.rest.graphql.service.metrics.SlowQueryLog;
+import com.formentor.magnolia.rest.graphql.service.mutation.ContentMutations;
+import com.formentor.magnolia.rest.graphql.service.mutation.MutationException;
+import com.formentor.magnolia.rest.graphql.service.persisted.PersistedQueries;
+import com.formentor.magnolia.rest.graphql.service.persisted.PersistedQueryException;
+import com.formentor.magnolia.rest.graphql.service.query.NodeQueryBuilder;
+import com.formentor.magnolia.rest.graphql.service.query.PageRequest;
+import com.formentor.magnolia.rest.graphql.service.query.Projection;
+import com.formentor.magnolia.rest.graphql.service.query.QueryFilters;
+import com.formentor.magnolia.rest.graphql.service.schema.ConnectionTypes;
+import com.formentor.magnolia.rest.graphql.service.schema.ContentFieldResolvers;
+import com.formentor.magnolia.rest.graphql.service.schema.FilterTypes;
+import com.formentor.magnolia.rest.graphql.service.schema.MutationTypes;
+import com.formentor.magnolia.rest.graphql.service.schema.SchemaFragments;
+import com.formentor.magnolia.rest.graphql.service.schema.SchemaRebuildScheduler;
+import com.formentor.magnolia.rest.graphql.service.schema.SchemaSnapshot;
+import com.formentor.magnolia.rest.graphql.service.schema.SubscriptionTypes;
+import com.formentor.magnolia.rest.graphql.service.subscription.NodeChangeHub;
+import com.formentor.magnolia.rest.graphql.service.subscription.NodeChangePublisher;
+import com.formentor.magnolia.rest.graphql.type.Asset;
 import com.formentor.magnolia.rest.graphql.type.Node;
+import com.formentor.magnolia.rest.graphql.type.NodeChange;
 import com.formentor.magnolia.rest.graphql.type.NodeMap;
+import com.formentor.magnolia.rest.graphql.type.NodeTypeFilter;
+import com.formentor.magnolia.rest.graphql.type.Property;
+import com.formentor.magnolia.rest.graphql.type.Subtree;
 import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
+import graphql.Scalars;
+import graphql.ErrorType;
+import graphql.ExecutionResultImpl;
 import graphql.GraphQL;
+import graphql.GraphqlErrorBuilder;
 import graphql.language.Argument;
 import graphql.language.ArrayValue;
 import graphql.language.Directive;
 import graphql.language.FieldDefinition;
 import graphql.language.ObjectTypeDefinition;
+import graphql.language.OperationDefinition;
 import graphql.language.StringValue;
 import graphql.language.TypeDefinition;
+import graphql.execution.DataFetcherResult;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
 import graphql.schema.DataFetcher;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.idl.RuntimeWiring;
 import graphql.schema.idl.SchemaGenerator;
-import graphql.schema.idl.SchemaParser;
 import graphql.schema.idl.TypeDefinitionRegistry;
 import graphql.schema.idl.TypeRuntimeWiring;
 import info.magnolia.cms.i18n.I18nContentSupport;
@@ -32,17 +77,27 @@ import info.magnolia.event.EventBus;
 import info.magnolia.event.HandlerRegistration;
 import info.magnolia.event.SystemEventBus;
 import info.magnolia.rest.EndpointDefinition;
-import info.magnolia.rest.delivery.jcr.QueryBuilder;
 import info.magnolia.rest.delivery.jcr.filter.FilteringContentDecoratorBuilder;
 import info.magnolia.rest.delivery.jcr.v2.JcrDeliveryEndpointDefinition;
 import info.magnolia.rest.registry.EndpointDefinitionRegistry;
+import info.magnolia.rest.registry.EndpointDefinitionRegistryEvent;
+import info.magnolia.rest.registry.EndpointDefinitionRegistryEventHandler;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.commons.iterator.NodeIteratorAdapter;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
@@ -50,9 +105,18 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static graphql.schema.idl.TypeRuntimeWiring.newTypeWiring;
@@ -70,65 +134,181 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
 
     // Query Type name
     private static final String QUERY = "Query";
+    private static final String MUTATION = "Mutation";
+    private static final String SUBSCRIPTION = "Subscription";
+    // Keyword of the operations that change contents
+    private static final String MUTATION_KEYWORD = "mutation";
 
     // Query.nodes field
     private static final String QUERY_nodes           = "nodes";
     private static final String QUERY_nodes_workspace = "workspace";
     private static final String QUERY_nodes_path      = "path";
     private static final String NODE_type             = "Node";
+    private static final String NODE_properties       = "properties";
+    private static final String NODE_descendants           = "descendants";
+    private static final String NODE_descendants_depth     = "depth";
+    private static final String NODE_descendants_nodeTypes = "nodeTypes";
+    // Levels of the subtree read by "descendants"
+    private static final int DESCENDANTS_DEFAULT_DEPTH = 3;
+    private static final int DESCENDANTS_MAX_DEPTH     = 10;
+    // Nodes up to the depth kept from the query of a subtree, beyond it the children are read level by level
+    private static final int DESCENDANTS_MAX_NODES     = 1000;
+    // Results of the query of a subtree read at most, the query is not bounded by depth so it finds deeper nodes too
+    private static final int DESCENDANTS_MAX_SCANNED   = 5000;
+
+    // Property type and its fields resolved with DataLoaders
+    private static final String PROPERTY_type                = "Property";
+    private static final String PROPERTY_reference           = "reference";
+    private static final String PROPERTY_reference_workspace = "workspace";
+    private static final String PROPERTY_asset               = "asset";
+
+    // Assets are referenced as "jcr:<identifier>" of the dam workspace
+    private static final String DAM_WORKSPACE     = "dam";
+    private static final String ASSET_REFERENCE_PREFIX = "jcr:";
+
+    // Name of the DataLoader of nodes by identifier
+    private static final String LOADER_nodes = "nodes";
+
+    // Max number of characters of query text kept in the cache of parsed documents
+    private static final long DOCUMENT_CACHE_MAX_WEIGHT = 4 * 1024 * 1024;
+    // Max number of node identifiers kept in the cache of query results and time to live of the results
+    private static final long RESULT_CACHE_MAX_IDENTIFIERS = 100000;
+    private static final long RESULT_CACHE_TTL_SECONDS = 10 * 60;
 
     private final EndpointDefinitionRegistry endpointRegistry;
     private final GraphQLEndpointDefinitionRegistry graphQLRegistry;
     private final I18nContentSupport i18nContentSupport;
     private final EventBus systemEventBus;
+    private final Provider<RestGraphQL> moduleProvider;
 
-    private GraphQL graphQL;
-    private TypeDefinitionRegistry typeRegistry;
+    // Prefix of the fragments generated for delivery endpoints, so they do not collide with graphql definitions
+    private static final String DELIVERY_FRAGMENT_PREFIX = "delivery:";
+
+    // Current schema, requests pin the snapshot and rebuilds publish a new one
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<SchemaSnapshot> snapshot = new AtomicReference<>();
+    // Fragments are modified and the schema rebuilt holding this lock, so concurrent events are applied one after the other
+    @Getter(AccessLevel.NONE)
+    private final Object schemaLock = new Object();
+    private SchemaFragments schemaFragments;
+    // Generates the arguments where/orderBy and the connections of the fields tagged with @definition or @delivery
+    private final FilterTypes filterTypes = new FilterTypes(GraphQLProvider::isContentField);
+    private final ConnectionTypes connectionTypes = new ConnectionTypes(GraphQLProvider::isContentField);
+    private final SubscriptionTypes subscriptionTypes = new SubscriptionTypes(GraphQLProvider::isContentField);
+    private final MutationTypes mutationTypes = new MutationTypes(GraphQLProvider::isDefinitionField);
+    // Resolvers of the scalar fields of the types of the fields tagged with @definition
+    private final ContentFieldResolvers contentFieldResolvers = new ContentFieldResolvers(GraphQLProvider::isDefinitionField);
     private HandlerRegistration registerHandler;
+    private HandlerRegistration deliveryHandler;
+    // Changes of definitions and delivery endpoints come in bursts, they are applied to the fragments at once and
+    // rebuilt debounced
+    private SchemaRebuildScheduler schemaRebuild;
+
+    private final PreparsedDocumentCache documentCache = new PreparsedDocumentCache(DOCUMENT_CACHE_MAX_WEIGHT);
+    private final AtomicLong schemaVersion = new AtomicLong();
+    private final QueryResultCache resultCache = new QueryResultCache(RESULT_CACHE_MAX_IDENTIFIERS, RESULT_CACHE_TTL_SECONDS);
+    // Runs the fetchers of the root fields so they are resolved in parallel
+    private FetcherExecutor fetcherExecutor;
+    private PersistedQueries persistedQueries;
+    // Last modification of the workspaces read by the queries
+    private final WorkspaceChanges workspaceChanges = new WorkspaceChanges();
+    // Timings of the executions and reads of the repository, published by JMX
+    private final GraphQLMetrics metrics;
+    // JCR queries slower than the threshold of the module
+    private final SlowQueryLog slowQueryLog;
+    // Changes of the workspaces pushed to the subscriptions
+    private NodeChangeHub nodeChangeHub;
 
     @Inject
-    public GraphQLProvider(EndpointDefinitionRegistry endpointRegistry, GraphQLEndpointDefinitionRegistry graphQLRegistry, I18nContentSupport i18nContentSupport, @Named(SystemEventBus.NAME) EventBus systemEventBus) {
+    public GraphQLProvider(EndpointDefinitionRegistry endpointRegistry, GraphQLEndpointDefinitionRegistry graphQLRegistry, I18nContentSupport i18nContentSupport, @Named(SystemEventBus.NAME) EventBus systemEventBus, Provider<RestGraphQL> moduleProvider) {
         this.endpointRegistry = endpointRegistry;
         this.graphQLRegistry = graphQLRegistry;
         this.i18nContentSupport = i18nContentSupport;
         this.systemEventBus = systemEventBus;
+        this.moduleProvider = moduleProvider;
+        this.slowQueryLog = new SlowQueryLog(() -> moduleProvider.get().getSlowQueryThresholdMillis(), () -> moduleProvider.get().getSlowQueryLogSize());
+        this.metrics = new GraphQLMetrics(slowQueryLog);
     }
 
     @PostConstruct
     private void init() {
-        try {
-            // Initialize graphQL
-            typeRegistry = initTypeRegistry();
-            RuntimeWiring runtimeWiring = buildWiring(typeRegistry);
+        RestGraphQL module = moduleProvider.get();
+        fetcherExecutor = new FetcherExecutor(module.getFetcherThreads(), module.getFetcherQueueSize(), module.isVirtualThreads());
+        persistedQueries = new PersistedQueries(module.getPersistedQueryStore());
+        nodeChangeHub = new NodeChangeHub(module.getMaxSubscriptions());
+        metrics.register();
 
-            SchemaGenerator schemaGenerator = new SchemaGenerator();
-            GraphQLSchema graphQLSchema = schemaGenerator.makeExecutableSchema(typeRegistry, runtimeWiring);
-            graphQL = GraphQL.newGraphQL(graphQLSchema).build();
+        synchronized (schemaLock) {
+            initSchema();
+        }
 
-            // Register all currently registered graphQL schemas
-            for (DefinitionProvider<GraphQLDefinition> provider : graphQLRegistry.getAllProviders()) {
-                try {
-                    registerGraphQL(provider);
-                } catch (Exception e) {
-                    log.error("Failed to register endpoint [{}]", provider.getMetadata().getReferenceId(), e);
-                    // Others should continue to be registered.
-                }
+        schemaRebuild = new SchemaRebuildScheduler(() -> {
+            synchronized (schemaLock) {
+                rebuildSchema();
             }
+        }, () -> moduleProvider.get().getSchemaRebuildDelayMillis());
+        // Listen for changes to the registry to observe graphQL being added or removed
+        registerHandler = systemEventBus.addHandler(GraphQLEndpointDefinitionRegistryEvent.class, this);
+        // Listen for changes to the delivery endpoints, each one is the fragment of a field @delivery
+        deliveryHandler = systemEventBus.addHandler(EndpointDefinitionRegistryEvent.class, new DeliveryEndpointHandler());
+    }
 
-            // Register all currently registered "delivery endpoints"
-            for (DefinitionProvider<EndpointDefinition> provider : endpointRegistry.getAllProviders()) {
-                if (provider.get() instanceof JcrDeliveryEndpointDefinition) {
-                    String sdl = buildGraphQLSDLForDeliveryEndpoint(provider);
-                    addSchema(sdl);
-                }
-            }
+    @PreDestroy
+    private void destroy() {
+        if (registerHandler != null) {
+            registerHandler.removeHandler();
+        }
+        if (deliveryHandler != null) {
+            deliveryHandler.removeHandler();
+        }
+        if (schemaRebuild != null) {
+            schemaRebuild.shutdown();
+        }
+        // Unregisters the observation listeners of the cached results
+        resultCache.close();
+        workspaceChanges.close();
+        if (nodeChangeHub != null) {
+            nodeChangeHub.close();
+        }
+        metrics.unregister();
+        if (fetcherExecutor != null) {
+            fetcherExecutor.shutdown();
+        }
+    }
 
-            // Listen for changes to the registry to observe graphQL being added or removed
-            // NOTE: It does not listen to delivery endpoints changes
-            registerHandler = systemEventBus.addHandler(GraphQLEndpointDefinitionRegistryEvent.class, this);
+    /**
+     * Registers the fragments of all the definitions and builds the first schema
+     */
+    private void initSchema() {
+        try {
+            // Initialize graphQL
+            schemaFragments = new SchemaFragments(loadCoreSdl());
         } catch (IOException e) {
-            log.error("ERRORS during initialization of GraphQL");
+            log.error("ERRORS during initialization of GraphQL", e);
+            return;
+        }
+
+        // Register all currently registered graphQL schemas
+        for (DefinitionProvider<GraphQLDefinition> provider : graphQLRegistry.getAllProviders()) {
+            try {
+                registerGraphQL(provider);
+            } catch (Exception e) {
+                log.error("Failed to register endpoint [{}]", provider.getMetadata().getReferenceId(), e);
+                // Others should continue to be registered.
+            }
+        }
+
+        // Register all currently registered "delivery endpoints"
+        for (DefinitionProvider<EndpointDefinition> provider : endpointRegistry.getAllProviders()) {
+            try {
+                registerDeliveryEndpoint(provider);
+            } catch (Exception e) {
+                log.error("Failed to register delivery endpoint [{}]", provider.getMetadata().getReferenceId(), e);
+            }
         }
+
+        // The executable schema is built once for all the definitions
+        rebuildSchema();
     }
 
     /**
@@ -138,62 +318,437 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
      * @return
      */
     public Object execute(String query) {
+        return execute(query, null, null, null, new RequestContext());
+    }
+
+    /**
+     * Executes query
+     *
+     * The variables are coerced against the types of the schema, so the same parameterised query text is shared by
+     * all the requests and its parsed document is taken from the cache.
+     *
+     * @param query         graphql query, may be null if the extensions send the hash of a persisted query
+     * @param operationName operation to execute, required if the document has more than one
+     * @param variables     values of the variables of the operation
+     * @param extensions    extensions of the request, i.e. "persistedQuery"
+     * @param context       context of the request, collects the workspaces read
+     * @return
+     */
+    public Object execute(String query, String operationName, Map<String, Object> variables, Map<String, Object> extensions, RequestContext context) {
+        return executeRequest(query, operationName, variables, extensions, context).toSpecification();
+    }
+
+    /**
+     * Executes query and returns the result of the execution, so it can be written without building the map of
+     * the specification
+     *
+     * @see #execute(String, String, Map, Map, RequestContext)
+     */
+    public ExecutionResult executeRequest(String query, String operationName, Map<String, Object> variables, Map<String, Object> extensions, RequestContext context) {
+        // The whole execution uses the same schema even if a new one is published meanwhile
+        SchemaSnapshot currentSnapshot = getSnapshot();
+        if (currentSnapshot == null) {
+            return schemaNotAvailable();
+        }
+
+        return executeInScope(currentSnapshot, query, operationName, variables, extensions, context);
+    }
+
+    /**
+     * Executes a batch of queries
+     *
+     * The queries share the schema and the JCR sessions of the request. Without mutations the queries are executed
+     * at once, sharing the DataLoaders and the fetchers of the request, so a node read by several queries is loaded
+     * once and their root fields are fetched in parallel.
+     * A batch with mutations is executed one query after another, each one with its own DataLoaders, so a mutation
+     * of a query is seen by the next ones. The errors of a query do not affect the rest.
+     *
+     * @param requests queries of the batch
+     * @param context  context of the request
+     * @return results in the same order as the queries
+     */
+    public List<ExecutionResult> executeBatch(List<GraphQLRequestBody> requests, RequestContext context) {
+        SchemaSnapshot currentSnapshot = getSnapshot();
+        if (currentSnapshot == null) {
+            return requests.stream().map(request -> schemaNotAvailable()).collect(Collectors.toList());
+        }
+
+        if (requests.stream().anyMatch(this::isMutation)) {
+            List<ExecutionResult> results = new ArrayList<>();
+            for (GraphQLRequestBody request: requests) {
+                results.add(executeInScope(currentSnapshot, request.getQuery(), request.getOperationName(), request.getVariables(), request.getExtensions(), context));
+            }
+            return results;
+        }
+
+        DataLoaderRegistry dataLoaderRegistry = buildDataLoaderRegistry(context);
+        try (FetcherExecutor.Scope scope = fetcherExecutor.open()) {
+            List<CompletableFuture<ExecutionResult>> results = new ArrayList<>();
+            for (GraphQLRequestBody request: requests) {
+                results.add(executeAsync(currentSnapshot, request.getQuery(), request.getOperationName(), request.getVariables(), request.getExtensions(), context, dataLoaderRegistry));
+            }
+            scope.await(CompletableFuture.allOf(results.toArray(new CompletableFuture[0])));
+            return results.stream().map(this::join).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Checks if the operation of the request is a mutation
+     *
+     * Requests whose query can not be resolved or parsed are not mutations, their execution returns the errors.
+     */
+    private boolean isMutation(GraphQLRequestBody request) {
+        String query;
+        try {
+            query = persistedQueries.resolve(request.getQuery(), request.getExtensions());
+        } catch (PersistedQueryException e) {
+            return false;
+        }
+        // Most of the batches are just queries, they are not parsed twice
+        if (query == null || !query.contains(MUTATION_KEYWORD)) {
+            return false;
+        }
+
+        try {
+            return new Parser().parseDocument(query).getDefinitionsOfType(OperationDefinition.class).stream()
+                    .filter(operation -> request.getOperationName() == null || request.getOperationName().equals(operation.getName()))
+                    .anyMatch(operation -> operation.getOperation() == OperationDefinition.Operation.MUTATION);
+        } catch (InvalidSyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Executes the query in the thread of the request, its root fields are fetched in parallel
+     *
+     * The execution goes on in this thread, the owner of the MgnlContext and the JCR sessions of the request.
+     */
+    private ExecutionResult executeInScope(SchemaSnapshot currentSnapshot, String query, String operationName, Map<String, Object> variables,
+                                           Map<String, Object> extensions, RequestContext context) {
+        try (FetcherExecutor.Scope scope = fetcherExecutor.open()) {
+            CompletableFuture<ExecutionResult> result = executeAsync(currentSnapshot, query, operationName, variables, extensions, context, buildDataLoaderRegistry(context));
+            scope.await(result);
+            return join(result);
+        }
+    }
+
+    private CompletableFuture<ExecutionResult> executeAsync(SchemaSnapshot currentSnapshot, String query, String operationName, Map<String, Object> variables,
+                                                   Map<String, Object> extensions, RequestContext context, DataLoaderRegistry dataLoaderRegistry) {
+        try {
+            query = persistedQueries.resolve(query, extensions);
+        } catch (PersistedQueryException e) {
+            return CompletableFuture.completedFuture(ExecutionResultImpl.newExecutionResult()
+                    .addError(GraphqlErrorBuilder.newError()
+                            .message(e.getMessage())
+                            .extensions(Collections.singletonMap("code", e.getCode()))
+                            .build())
+                    .build());
+        }
+
         ExecutionInput executionInput = ExecutionInput.newExecutionInput()
-                .query(query)
+                .query((query == null)? "": query)
+                .operationName(operationName)
+                .variables((variables == null)? Collections.emptyMap(): variables)
+                .context(context)
+                .dataLoaderRegistry(dataLoaderRegistry)
                 .build();
-        ExecutionResult executionResult = graphQL.execute(executionInput);
 
-        return executionResult.toSpecification();
+        final String resolvedQuery = query;
+        return currentSnapshot.getGraphQL().executeAsync(executionInput).thenApply(result -> {
+            // Just the queries parsed and validated are persisted
+            if (isValidQuery(result)) {
+                persistedQueries.register(resolvedQuery, extensions);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Checks if the query of the execution was parsed, validated and accepted by the limits of the module
+     */
+    private static boolean isValidQuery(ExecutionResult result) {
+        return result.getErrors().stream().noneMatch(error -> error.getErrorType() == ErrorType.InvalidSyntax
+                || error.getErrorType() == ErrorType.ValidationError
+                || error.getErrorType() == ErrorType.ExecutionAborted);
     }
 
     /**
-     * Initialize the TypeRegistry with the sdl "schema.graphqls"
+     * Waits for the result, throwing the exception of the execution as GraphQL.execute() does
+     */
+    private ExecutionResult join(CompletableFuture<ExecutionResult> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ExecutionResult schemaNotAvailable() {
+        return ExecutionResultImpl.newExecutionResult()
+                .addError(GraphqlErrorBuilder.newError().message("GraphQL schema is not available").build())
+                .build();
+    }
+
+    /**
+     * Last modification of the workspaces read by the request
+     *
+     * @param context context of the executed request
+     * @return milliseconds of the last modification, 0 if no workspace was read
+     */
+    public long getLastModified(RequestContext context) {
+        return workspaceChanges.getLastModified(context.getWorkspaces());
+    }
+
+    /**
+     * Statistics of the caches used by the provider
+     *
+     * @return
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        SchemaSnapshot currentSnapshot = getSnapshot();
+        statistics.put("schemaVersion", (currentSnapshot == null)? 0: currentSnapshot.getVersion());
+        statistics.put("documentCache", documentCache.getStats());
+        statistics.put("resultCache", resultCache.getStats());
+        statistics.put("fetcherExecutor", fetcherExecutor.getStats());
+        statistics.put("subscriptions", nodeChangeHub.getStats());
+        statistics.put("metrics", metrics.toMap());
+
+        return statistics;
+    }
+
+    /**
+     * Slowest JCR queries of the last hour, with the GraphQL operation that ran them and the plan of the repository
+     *
+     * @return
+     */
+    public List<Map<String, Object>> getSlowQueries() {
+        return slowQueryLog.getSlowest();
+    }
+
+    /**
+     * Current snapshot of the schema, null if the schema could not be initialized
+     * @return
+     */
+    public SchemaSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Builds GraphQL for a new schema.
+     *
+     * Every schema gets a new version so the parsed documents validated against the previous one are discarded.
+     * Queries over the limits configured in the module are rejected before executing them.
+     * Executions are recorded in the metrics, and traced if the request asks for it.
+     *
+     * @param graphQLSchema
+     * @param version
+     * @return
+     */
+    private GraphQL buildGraphQL(GraphQLSchema graphQLSchema, long version) {
+        return GraphQL.newGraphQL(graphQLSchema)
+                .preparsedDocumentProvider(documentCache.forSchemaVersion(version))
+                .instrumentation(new ChainedInstrumentation(Arrays.asList(
+                        new MetricsInstrumentation(metrics),
+                        new QueryCostInstrumentation(() -> moduleProvider.get().getLimits()),
+                        new RequestTracingInstrumentation())))
+                .build();
+    }
+
+    /**
+     * Builds the DataLoaders of a request
+     *
+     * The registry is created per request, so the nodes loaded are cached just during the request.
+     * @param context Context of the request, counts the nodes loaded
+     * @return
+     */
+    private DataLoaderRegistry buildDataLoaderRegistry(RequestContext context) {
+        DataLoaderRegistry registry = new DataLoaderRegistry();
+        registry.register(LOADER_nodes, DataLoader.newDataLoader(new NodeBatchLoader(count -> {
+            metrics.recordNodes(count);
+            context.recordNodes(count);
+        })));
+
+        return registry;
+    }
+
+    /**
+     * Loads the core sdl "schema.graphqls"
      * @return
      * @throws IOException
      */
-    private TypeDefinitionRegistry initTypeRegistry() throws IOException {
-        SchemaParser schemaParser = new SchemaParser();
+    private String loadCoreSdl() throws IOException {
         URL coreGraphql = Resources.getResource("schema.graphqls");
-        String sdl = Resources.toString(coreGraphql, Charsets.UTF_8);
-        TypeDefinitionRegistry typeRegistry = schemaParser.parse(sdl);
+        return Resources.toString(coreGraphql, Charsets.UTF_8);
+    }
+
+    /**
+     * Builds the executable schema from the current fragments and publishes it.
+     *
+     * The new schema is built aside and published with a single swap of the snapshot, requests in progress keep
+     * using the previous one.
+     * If the schema can not be built, the fragments changed since the last schema are tried one by one on top of the
+     * fragments of the last schema, and the ones that do not build are rolled back, so a definition with errors does
+     * not block the changes of the others. If it can not be built anyway the previous one is kept.
+     *
+     * Must be called holding schemaLock.
+     */
+    private void rebuildSchema() {
+        try {
+            publishSchema(schemaFragments.merge());
+            return;
+        } catch (Exception e) {
+            if (schemaFragments.getPending().isEmpty()) {
+                log.error("ERRORS building the GraphQL schema, the previous schema is kept", e);
+                return;
+            }
+            log.warn("ERRORS building the GraphQL schema, checking the definitions changed one by one", e);
+        }
+
+        rejectBrokenFragments();
+        try {
+            publishSchema(schemaFragments.merge());
+        } catch (Exception e) {
+            log.error("ERRORS building the GraphQL schema, the previous schema is kept", e);
+        }
+    }
+
+    /**
+     * Rolls back the changed fragments that do not build
+     *
+     * The changed fragments are added to the fragments of the last schema while they build, again and again while
+     * any of them is added, so a fragment that needs the types of another changed fragment is added after it.
+     */
+    private void rejectBrokenFragments() {
+        List<String> remaining = schemaFragments.getPending();
+        Map<String, Exception> errors = new LinkedHashMap<>();
+        boolean added = true;
+        while (added && !remaining.isEmpty()) {
+            added = false;
+            for (String id: new ArrayList<>(remaining)) {
+                List<String> others = new ArrayList<>(remaining);
+                others.remove(id);
+                try {
+                    buildSchema(schemaFragments.merge(others));
+                    remaining.remove(id);
+                    added = true;
+                } catch (Exception e) {
+                    errors.put(id, e);
+                }
+            }
+        }
+        for (String id: remaining) {
+            log.error("Definition [{}] rejected, the GraphQL schema is built without its changes", id, errors.get(id));
+            schemaFragments.rollback(id);
+        }
+    }
+
+    /**
+     * Builds the executable schema of the registry and publishes it as the current snapshot
+     */
+    private void publishSchema(TypeDefinitionRegistry newTypeRegistry) {
+        GraphQLSchema graphQLSchema = buildSchema(newTypeRegistry);
 
-        return typeRegistry;
+        long version = schemaVersion.incrementAndGet();
+        SchemaSnapshot newSnapshot = new SchemaSnapshot(version, newTypeRegistry, buildGraphQL(graphQLSchema, version));
+        snapshot.set(newSnapshot);
+        schemaFragments.commit();
+        // Documents of previous versions can not be used any more
+        documentCache.invalidateAll();
+    }
+
+    /**
+     * Adds the generated types to the registry and builds the executable schema
+     *
+     * @param newTypeRegistry merged fragments, the generated types are added to it
+     * @return
+     */
+    private GraphQLSchema buildSchema(TypeDefinitionRegistry newTypeRegistry) {
+        Map<String, QueryFilters> queryFilters = filterTypes.addFilters(newTypeRegistry);
+        connectionTypes.addConnections(newTypeRegistry);
+        subscriptionTypes.addSubscriptions(newTypeRegistry);
+        mutationTypes.addMutations(newTypeRegistry);
+        RuntimeWiring runtimeWiring = buildWiring(newTypeRegistry, queryFilters);
+
+        SchemaGenerator schemaGenerator = new SchemaGenerator();
+        return schemaGenerator.makeExecutableSchema(newTypeRegistry, runtimeWiring);
     }
 
     /**
      * Builds wiring between Schema and Fetchers.
      *
      * @param typeRegistry
+     * @param queryFilters QueryFilters of the where input types generated by FilterTypes
      * @return
      */
-    private RuntimeWiring buildWiring(TypeDefinitionRegistry typeRegistry) {
+    private RuntimeWiring buildWiring(TypeDefinitionRegistry typeRegistry, Map<String, QueryFilters> queryFilters) {
         RuntimeWiring.Builder builder = RuntimeWiring.newRuntimeWiring();
-        Optional<TypeRuntimeWiring.Builder> queryType = buildQueryType(typeRegistry);
+        Optional<TypeRuntimeWiring.Builder> queryType = buildQueryType(typeRegistry, queryFilters);
         if (queryType.isPresent()) {
             builder.type(queryType.get());
         }
+        Optional<TypeRuntimeWiring.Builder> mutationType = buildMutationType(typeRegistry);
+        if (mutationType.isPresent()) {
+            builder.type(mutationType.get());
+        }
+        Optional<TypeRuntimeWiring.Builder> subscriptionType = buildSubscriptionType(typeRegistry);
+        if (subscriptionType.isPresent()) {
+            builder.type(subscriptionType.get());
+        }
+        builder.type(buildNodeType());
+        builder.type(buildPropertyType());
+        contentFieldResolvers.build(typeRegistry).forEach((typeName, resolvers) -> builder.type(newTypeWiring(typeName).dataFetchers(resolvers)));
+        // Values of the typed accessors of Property
+        builder.scalar(Scalars.GraphQLLong);
         return builder.build();
     }
 
     /**
-     * Register GraphQL definition
+     * Register GraphQL definition as a fragment of the schema
+     *
+     * It does not rebuild the schema. Must be called holding schemaLock.
      * @param provider
      * @return
      */
     private Object registerGraphQL(DefinitionProvider<GraphQLDefinition> provider) {
+        final String referenceId = provider.getMetadata().getReferenceId();
         if (!provider.isValid()) {
+            schemaFragments.remove(referenceId);
             return null;
         }
 
         final GraphQLDefinition endpointDefinition = provider.get();
         final String sdl = endpointDefinition.getSdl();
-        if (endpointDefinition.getSdl() != null) {
-            addSchema(sdl);
+        if (sdl != null) {
+            schemaFragments.put(referenceId, sdl);
+        } else {
+            schemaFragments.remove(referenceId);
         }
 
         return provider;
     }
 
+    /**
+     * Register delivery endpoint as a fragment of the schema, with the field @delivery generated for it
+     *
+     * Endpoints that are not valid or not delivery endpoints remove their fragment, if any.
+     * It does not rebuild the schema. Must be called holding schemaLock.
+     * @param provider
+     * @return true if the fragments changed
+     */
+    private boolean registerDeliveryEndpoint(DefinitionProvider<EndpointDefinition> provider) {
+        final String fragmentId = DELIVERY_FRAGMENT_PREFIX + provider.getMetadata().getReferenceId();
+        if (!provider.isValid() || !(provider.get() instanceof JcrDeliveryEndpointDefinition)) {
+            return schemaFragments.remove(fragmentId);
+        }
+
+        schemaFragments.put(fragmentId, buildGraphQLSDLForDeliveryEndpoint(provider));
+        return true;
+    }
+
     /**
      * Builds graphQL SDL for a given DeliveryEndpoint
      *
@@ -234,8 +789,9 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
             String nodeTypesAsString = nodeTypes.stream()
                     .map(value -> "\"" + value + "\"")
                     .collect(Collectors.joining(","));
-            sdlBuilder.append(", nodeTypes: [" + nodeTypesAsString + "])");
+            sdlBuilder.append(", nodeTypes: [" + nodeTypesAsString + "]");
         }
+        sdlBuilder.append(")");
         sdlBuilder.append("}");
 
         return sdlBuilder.toString();
@@ -248,9 +804,10 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
      * Wiring for the rest of the fields. They must be tagged with the directive @definition
      *
      * @param typeRegistry
+     * @param queryFilters QueryFilters of the where input types generated by FilterTypes
      * @return
      */
-    private Optional<TypeRuntimeWiring.Builder> buildQueryType(TypeDefinitionRegistry typeRegistry) {
+    private Optional<TypeRuntimeWiring.Builder> buildQueryType(TypeDefinitionRegistry typeRegistry, Map<String, QueryFilters> queryFilters) {
         Optional<TypeDefinition> typeDefinitionQuery = typeRegistry.getType(QUERY);
         if (!typeDefinitionQuery.isPresent()) {
             return Optional.empty();
@@ -274,7 +831,7 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
                 .filter(field -> !field.getName().equals(QUERY_nodes)) // The field "nodes" has been created below
                 .filter(field -> (field.getDirective(DIRECTIVE_definition) != null || field.getDirective(DIRECTIVE_delivery) != null)) // Reject fields not tagged with Directive
                 .forEach(field -> {
-                    Optional<DataFetcher> dataFetcher = buildDataFetcherForField(field);
+                    Optional<DataFetcher> dataFetcher = buildDataFetcherForField(field, queryFilters);
                     if (dataFetcher.isPresent()) {
                         builder.dataFetcher(field.getName(), dataFetcher.get());
                     }
@@ -283,24 +840,192 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
         return Optional.of(builder);
     }
 
+    /**
+     * Builds wiring for "Mutation" type.
+     *
+     * The fields generated for the fields tagged with @definition create, update and delete their nodes.
+     *
+     * @param typeRegistry
+     * @return
+     */
+    private Optional<TypeRuntimeWiring.Builder> buildMutationType(TypeDefinitionRegistry typeRegistry) {
+        Optional<TypeDefinition> typeDefinitionMutation = typeRegistry.getType(MUTATION);
+        if (!typeDefinitionMutation.isPresent() || !(typeDefinitionMutation.get() instanceof ObjectTypeDefinition)) {
+            return Optional.empty();
+        }
+        TypeRuntimeWiring.Builder builder = newTypeWiring(MUTATION);
+        ((ObjectTypeDefinition) typeDefinitionMutation.get()).getFieldDefinitions().stream()
+                .filter(GraphQLProvider::isDefinitionField)
+                .forEach(field -> ContentDirective.of(field)
+                        .ifPresent(directive -> builder.dataFetcher(field.getName(), buildDataFetcherForMutation(field.getName(), directive))));
+
+        return Optional.of(builder);
+    }
+
+    /**
+     * Builds wiring for "Subscription" type.
+     *
+     * The fields generated for the fields tagged with @definition or @delivery publish the changes of their nodes.
+     *
+     * @param typeRegistry
+     * @return
+     */
+    private Optional<TypeRuntimeWiring.Builder> buildSubscriptionType(TypeDefinitionRegistry typeRegistry) {
+        Optional<TypeDefinition> typeDefinitionSubscription = typeRegistry.getType(SUBSCRIPTION);
+        if (!typeDefinitionSubscription.isPresent() || !(typeDefinitionSubscription.get() instanceof ObjectTypeDefinition)) {
+            return Optional.empty();
+        }
+        TypeRuntimeWiring.Builder builder = newTypeWiring(SUBSCRIPTION);
+        ((ObjectTypeDefinition) typeDefinitionSubscription.get()).getFieldDefinitions()
+                .forEach(field -> ContentDirective.of(field)
+                        .ifPresent(directive -> builder.dataFetcher(field.getName(), buildDataFetcherForSubscription(directive))));
+
+        return Optional.of(builder);
+    }
+
+    /**
+     * Builds wiring for "Node" type.
+     *
+     * The field "properties" reads just the properties of the argument "names", without wrapping the rest.
+     * @return
+     */
+    private TypeRuntimeWiring.Builder buildNodeType() {
+        return newTypeWiring(NODE_type)
+                .dataFetcher(NODE_properties, dataFetchingEnvironment -> {
+                    Node node = dataFetchingEnvironment.getSource();
+                    List<String> names = dataFetchingEnvironment.getArgument(Projection.PROPERTIES_names);
+                    return node.getProperties(names);
+                })
+                .dataFetcher(NODE_descendants, buildDataFetcherDescendants());
+    }
+
+    /**
+     * Builds the fetcher of "descendants", the children of the node with their subtree up to "depth" levels.
+     *
+     * The subtree is read with a single query below the node instead of reading the children of every node of every
+     * level, and the field "children" of the nodes returned is served from it. The siblings are in the order of the
+     * nodes in the repository, as returned by "children".
+     * A single level is read from the node without query. When the subtree has more than DESCENDANTS_MAX_NODES nodes up
+     * to the depth, or the query finds more than DESCENDANTS_MAX_SCANNED nodes at any depth, the subtree is discarded
+     * and the children are read level by level, the levels requested by the query. The descendants of the root node
+     * "/" are not allowed.
+     * @return
+     */
+    private DataFetcher buildDataFetcherDescendants() {
+        return dataFetchingEnvironment -> {
+            Node node = dataFetchingEnvironment.getSource();
+            Integer depthArgument = dataFetchingEnvironment.getArgument(NODE_descendants_depth);
+            int depth = (depthArgument == null)? DESCENDANTS_DEFAULT_DEPTH: Math.max(1, Math.min(depthArgument, DESCENDANTS_MAX_DEPTH));
+            List<String> nodeTypes = dataFetchingEnvironment.getArgument(NODE_descendants_nodeTypes);
+            NodeTypeFilter filter = (nodeTypes == null)? node.getChildFilter(): NodeTypeFilter.of(nodeTypes);
+
+            javax.jcr.Node root = node.getJCRNode();
+            if ("/".equals(root.getPath())) {
+                throw new IllegalArgumentException("Descendants of the root node are not allowed, query the children instead");
+            }
+            RequestContext.touch(dataFetchingEnvironment, root.getSession().getWorkspace().getName());
+            Projection projection = Projection.of(dataFetchingEnvironment.getSelectionSet());
+            Subtree subtree = (depth > 1)? querySubtree(root, depth, filter, projection, RequestContext.of(dataFetchingEnvironment)): null;
+            if (subtree == null) {
+                return filter.children(root, child -> new Node(child, filter, null));
+            }
+
+            List<javax.jcr.Node> children = subtree.getChildren(root);
+            List<Node> result = new ArrayList<>(children.size());
+            for (javax.jcr.Node child: children) {
+                result.add(new Node(child, filter, subtree));
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Builds wiring for "Property" type.
+     *
+     * The fields "reference" and "asset" are loaded in batches with the DataLoader of nodes.
+     * @return
+     */
+    private TypeRuntimeWiring.Builder buildPropertyType() {
+        return newTypeWiring(PROPERTY_type)
+                .dataFetcher(PROPERTY_reference, buildDataFetcherReference())
+                .dataFetcher(PROPERTY_asset, buildDataFetcherAsset());
+    }
+
+    private DataFetcher buildDataFetcherReference() {
+        return dataFetchingEnvironment -> {
+            Property property = dataFetchingEnvironment.getSource();
+            String identifier = property.getString();
+            if (StringUtils.isBlank(identifier)) {
+                return null;
+            }
+            String workspace = dataFetchingEnvironment.getArgument(PROPERTY_reference_workspace);
+            if (workspace == null) {
+                // By default the referenced node is in the same workspace
+                workspace = property.getJCRProperty().getSession().getWorkspace().getName();
+            }
+            RequestContext.touch(dataFetchingEnvironment, workspace);
+
+            DataLoader<NodeReference, javax.jcr.Node> loader = dataFetchingEnvironment.getDataLoader(LOADER_nodes);
+            return loader.load(new NodeReference(workspace, identifier))
+                    .thenApply(node -> (node == null)? null: new Node(node, NodeTypeFilter.ALL));
+        };
+    }
+
+    private DataFetcher buildDataFetcherAsset() {
+        return dataFetchingEnvironment -> {
+            Property property = dataFetchingEnvironment.getSource();
+            String identifier = StringUtils.removeStart(property.getString(), ASSET_REFERENCE_PREFIX);
+            if (StringUtils.isBlank(identifier)) {
+                return null;
+            }
+
+            RequestContext.touch(dataFetchingEnvironment, DAM_WORKSPACE);
+            DataLoader<NodeReference, javax.jcr.Node> loader = dataFetchingEnvironment.getDataLoader(LOADER_nodes);
+            return loader.load(new NodeReference(DAM_WORKSPACE, identifier))
+                    .thenApply(node -> (node == null)? null: new Asset(node));
+        };
+    }
+
     private DataFetcher buildDataFetcherNodes() {
         return dataFetchingEnvironment -> {
             String workspace = dataFetchingEnvironment.getArgument(QUERY_nodes_workspace);
             String path = dataFetchingEnvironment.getArgument(QUERY_nodes_path);
+            RequestContext.touch(dataFetchingEnvironment, workspace);
 
             try {
-                Session session = MgnlContext.getJCRSession(workspace);
-                javax.jcr.Node rootNode = session.getNode((path == null) ?"/": path);
-                List<Node> nodes = new ArrayList<>();
-                rootNode.getNodes().forEachRemaining(node -> nodes.add(new Node((javax.jcr.Node)node, Collections.emptyList())));
+                return supplyAsync(workspace, () -> {
+                    Session session = MgnlContext.getJCRSession(workspace);
+                    javax.jcr.Node rootNode = session.getNode((path == null) ?"/": path);
+                    List<Node> nodes = new ArrayList<>();
+                    rootNode.getNodes().forEachRemaining(node -> nodes.add(new Node((javax.jcr.Node)node, NodeTypeFilter.ALL)));
+                    metrics.recordNodes(nodes.size());
 
-                return nodes;
+                    return nodes;
+                }).exceptionally(e -> Collections.emptyList());
             } catch (Exception e) {
                 return Collections.emptyList();
             }
         };
     }
 
+    /**
+     * Checks if the field is tagged with @definition or @delivery
+     * @param field
+     * @return
+     */
+    private static boolean isContentField(FieldDefinition field) {
+        return field.getDirective(DIRECTIVE_definition) != null || field.getDirective(DIRECTIVE_delivery) != null;
+    }
+
+    /**
+     * Checks if the field is tagged with @definition
+     * @param field
+     * @return
+     */
+    private static boolean isDefinitionField(FieldDefinition field) {
+        return field.getDirective(DIRECTIVE_definition) != null;
+    }
+
     /**
      * Builds a fetcher for field tagged with @definition or @delivery directives
      *
@@ -308,53 +1033,105 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
      *      directive @delivery(workspace : String!, rootPath : String, nodeTypes : String) on FIELD_DEFINITION
      *
      * @param field
+     * @param queryFilters QueryFilters of the where input types generated by FilterTypes
      * @return
      */
-    private Optional<DataFetcher> buildDataFetcherForField(FieldDefinition field) {
+    private Optional<DataFetcher> buildDataFetcherForField(FieldDefinition field, Map<String, QueryFilters> queryFilters) {
+        Optional<ContentDirective> directive = ContentDirective.of(field);
+        if (!directive.isPresent()) {
+            return Optional.empty();
+        }
+        String workspace = directive.get().workspace;
+        String rootPath = directive.get().rootPath;
+        List<String> nodeTypes = directive.get().nodeTypes;
+        NodeTypeFilter filter = directive.get().filter;
+        QueryFilters fieldFilters = FilterTypes.getWhereTypeName(field).map(queryFilters::get).orElse(QueryFilters.DEFAULT);
+
         /**
-         * Get arguments of the directive
+         * Builds the DataFetcher
          */
-        Directive definition = field.getDirective(DIRECTIVE_definition);
-        if (definition == null) {
-            definition = field.getDirective(DIRECTIVE_delivery);
-        }
-        if (definition == null) {
-            return Optional.empty();
+        boolean connection = ConnectionTypes.isConnectionField(field);
+        switch (directive.get().name) {
+            case DIRECTIVE_definition:
+                return Optional.of(connection
+                        ? buildDataFetcherForConnection(workspace, rootPath, nodeTypes, fieldFilters, directive.get().wrapper())
+                        : buildDataFetcherForDefinition(workspace, rootPath, nodeTypes, fieldFilters, filter));
+            case DIRECTIVE_delivery:
+                return Optional.of(connection
+                        ? buildDataFetcherForConnection(workspace, rootPath, nodeTypes, fieldFilters, directive.get().wrapper())
+                        : buildDataFetcherForDelivery(workspace, rootPath, nodeTypes, fieldFilters, filter));
+            default: return Optional.empty();
         }
+    }
 
-        // Get workspace
-        Argument argWorkspace = definition.getArgument(DIRECTIVE_workspace);
-        if (argWorkspace == null) {
-            return Optional.empty();
+    /**
+     * Arguments of the directive @definition or @delivery of a field
+     *
+     *      directive @definition(workspace : String!, rootPath : String, nodeTypes : String) on FIELD_DEFINITION
+     *      directive @delivery(workspace : String!, rootPath : String, nodeTypes : String) on FIELD_DEFINITION
+     */
+    private static final class ContentDirective {
+        private final String name;
+        private final String workspace;
+        private final String rootPath;
+        private final List<String> nodeTypes;
+        // Shared by all the nodes of the field
+        private final NodeTypeFilter filter;
+
+        private ContentDirective(String name, String workspace, String rootPath, List<String> nodeTypes) {
+            this.name = name;
+            this.workspace = workspace;
+            this.rootPath = rootPath;
+            this.nodeTypes = nodeTypes;
+            this.filter = NodeTypeFilter.of(nodeTypes);
         }
 
-        String workspace = ((StringValue)argWorkspace.getValue()).getValue();
+        /**
+         * @param field
+         * @return empty if the field is not tagged or the directive has no workspace
+         */
+        private static Optional<ContentDirective> of(FieldDefinition field) {
+            Directive definition = field.getDirective(DIRECTIVE_definition);
+            if (definition == null) {
+                definition = field.getDirective(DIRECTIVE_delivery);
+            }
+            if (definition == null) {
+                return Optional.empty();
+            }
+
+            // Get workspace
+            Argument argWorkspace = definition.getArgument(DIRECTIVE_workspace);
+            if (argWorkspace == null) {
+                return Optional.empty();
+            }
+            String workspace = ((StringValue)argWorkspace.getValue()).getValue();
 
-        // Get rootPath
-        Argument argRootPath = definition.getArgument(DIRECTIVE_rootPath);
-        String rootPath = (argRootPath == null)? null: ((StringValue)argRootPath.getValue()).getValue();
+            // Get rootPath
+            Argument argRootPath = definition.getArgument(DIRECTIVE_rootPath);
+            String rootPath = (argRootPath == null)? null: ((StringValue)argRootPath.getValue()).getValue();
 
-        // Get list nodeTypes
-        Argument argNodeTypes = definition.getArgument(DIRECTIVE_nodeTypes);
-        final List<String> nodeTypes;
-        if (argNodeTypes == null){
-            nodeTypes = Collections.emptyList();
-        } else {
-            nodeTypes = ((ArrayValue)argNodeTypes.getValue()).getValues()
-                    .stream()
-                    .map(value -> ((StringValue)value).getValue())
-                    .collect(Collectors.toList());
+            // Get list nodeTypes
+            Argument argNodeTypes = definition.getArgument(DIRECTIVE_nodeTypes);
+            final List<String> nodeTypes;
+            if (argNodeTypes == null){
+                nodeTypes = Collections.emptyList();
+            } else {
+                nodeTypes = ((ArrayValue)argNodeTypes.getValue()).getValues()
+                        .stream()
+                        .map(value -> ((StringValue)value).getValue())
+                        .collect(Collectors.toList());
+            }
+
+            return Optional.of(new ContentDirective(definition.getName(), workspace, rootPath, nodeTypes));
         }
 
         /**
-         * Builds the DataFetcher
+         * Wraps the JCR node into the type of the items, NodeMap for @definition and Node for @delivery
          */
-        switch (definition.getName()) {
-            case DIRECTIVE_definition:
-                return Optional.of(buildDataFetcherForDefinition(workspace, rootPath, nodeTypes));
-            case DIRECTIVE_delivery:
-                return Optional.of(buildDataFetcherForDelivery(workspace, rootPath, nodeTypes));
-            default: return Optional.empty();
+        private Function<javax.jcr.Node, Object> wrapper() {
+            return DIRECTIVE_definition.equals(name)
+                    ? node -> new NodeMap(node, filter)
+                    : node -> new Node(node, filter);
         }
     }
 
@@ -366,33 +1143,27 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
      * @param workspace Workspace of the contents
      * @param rootPath  Path of the root node
      * @param nodeTypes List of node types used as a filter
+     * @param queryFilters Translates the arguments "where" and "orderBy" of the field
+     * @param filter    Filter of the children by nodeTypes
      * @return
      */
-    private DataFetcher buildDataFetcherForDefinition(String workspace, String rootPath, List<String> nodeTypes) {
+    private DataFetcher buildDataFetcherForDefinition(String workspace, String rootPath, List<String> nodeTypes, QueryFilters queryFilters, NodeTypeFilter filter) {
 
         return dataFetchingEnvironment -> {
-            Session session = MgnlContext.getJCRSession(workspace);
-
-            Query query = QueryBuilder.inWorkspace(session.getWorkspace())
-                    .rootPath(rootPath)
-                    .nodeTypes(nodeTypes)
-                    .build();
-            QueryResult result = query.execute();
-            NodeIterator nodeIterator = result.getNodes();
+            Projection projection = Projection.of(dataFetchingEnvironment.getSelectionSet());
+            Map<String, Object> arguments = dataFetchingEnvironment.getArguments();
+            RequestContext.touch(dataFetchingEnvironment, workspace);
+            RequestContext context = RequestContext.of(dataFetchingEnvironment);
+            QueryOrigin origin = QueryOrigin.of(dataFetchingEnvironment);
 
-            FilteringContentDecoratorBuilder decorators = new FilteringContentDecoratorBuilder()
-                    .childNodeTypes(Collections.emptyList())
-                    .strict(false)
-                    .depth(1)
-                    .includeSystemProperties(true)
-                    .supportI18n(i18nContentSupport);
+            return supplyAsync(workspace, () -> {
+                NodeIterator nodeIterator = executeQuery(workspace, rootPath, nodeTypes, arguments, queryFilters, projection, 0, PageRequest.NO_LIMIT, context, origin);
 
-            nodeIterator = decorators.wrapNodeIterator(nodeIterator);
+                final List<NodeMap> nodes = new ArrayList<>();
+                nodeIterator.forEachRemaining(node -> nodes.add(new NodeMap((javax.jcr.Node)node, filter)));
 
-            final List<NodeMap> nodes = new ArrayList<>();
-            nodeIterator.forEachRemaining(node -> nodes.add(new NodeMap((javax.jcr.Node)node, nodeTypes)));
-
-            return nodes;
+                return nodes;
+            });
         };
     }
     /**
@@ -403,115 +1174,463 @@ public class GraphQLProvider implements GraphQLEndpointDefinitionRegistryEventHa
      * @param workspace Workspace of the contents
      * @param rootPath  Path of the root node
      * @param nodeTypes List of node types used as a filter
+     * @param queryFilters Translates the arguments "where" and "orderBy" of the field
+     * @param filter    Filter of the children by nodeTypes
      * @return
      */
-    private DataFetcher buildDataFetcherForDelivery(String workspace, String rootPath, List<String> nodeTypes) {
+    private DataFetcher buildDataFetcherForDelivery(String workspace, String rootPath, List<String> nodeTypes, QueryFilters queryFilters, NodeTypeFilter filter) {
 
         return dataFetchingEnvironment -> {
-            Session session = MgnlContext.getJCRSession(workspace);
+            Projection projection = Projection.of(dataFetchingEnvironment.getSelectionSet());
+            Map<String, Object> arguments = dataFetchingEnvironment.getArguments();
+            RequestContext.touch(dataFetchingEnvironment, workspace);
+            RequestContext context = RequestContext.of(dataFetchingEnvironment);
+            QueryOrigin origin = QueryOrigin.of(dataFetchingEnvironment);
 
-            Query query = QueryBuilder.inWorkspace(session.getWorkspace())
-                    .rootPath(rootPath)
-                    .nodeTypes(nodeTypes)
-                    .build();
-            QueryResult result = query.execute();
-            NodeIterator nodeIterator = result.getNodes();
+            return supplyAsync(workspace, () -> {
+                NodeIterator nodeIterator = executeQuery(workspace, rootPath, nodeTypes, arguments, queryFilters, projection, 0, PageRequest.NO_LIMIT, context, origin);
+                final List<Node> nodes = new ArrayList<>();
+                nodeIterator.forEachRemaining(node -> nodes.add(new Node((javax.jcr.Node)node, filter)));
 
-            FilteringContentDecoratorBuilder decorators = new FilteringContentDecoratorBuilder()
-                    .childNodeTypes(Collections.emptyList())
-                    .strict(false)
-                    .depth(1)
-                    .includeSystemProperties(true)
-                    .supportI18n(i18nContentSupport);
+                return nodes;
+            });
+        };
+    }
 
-            nodeIterator = decorators.wrapNodeIterator(nodeIterator);
-            final List<Node> nodes = new ArrayList<>();
-            nodeIterator.forEachRemaining(node -> nodes.add(new Node((javax.jcr.Node)node, nodeTypes)));
+    /**
+     * Builds a DataFetcher for the connection of a field tagged with @definition or @delivery
+     *
+     * The page requested with first/after/last/before is read with the offset and limit of the JCR query, so just the
+     * nodes of the page are loaded.
+     *
+     * @param workspace Workspace of the contents
+     * @param rootPath  Path of the root node
+     * @param nodeTypes List of node types used as a filter
+     * @param queryFilters Translates the arguments "where" and "orderBy" of the field
+     * @param wrapper   Wraps the JCR node into the type of the items, NodeMap or Node
+     * @return
+     */
+    private DataFetcher buildDataFetcherForConnection(String workspace, String rootPath, List<String> nodeTypes, QueryFilters queryFilters, Function<javax.jcr.Node, Object> wrapper) {
+
+        return dataFetchingEnvironment -> {
+            Integer first = dataFetchingEnvironment.getArgument(ConnectionTypes.ARG_first);
+            String after = dataFetchingEnvironment.getArgument(ConnectionTypes.ARG_after);
+            Integer last = dataFetchingEnvironment.getArgument(ConnectionTypes.ARG_last);
+            String before = dataFetchingEnvironment.getArgument(ConnectionTypes.ARG_before);
 
-            return nodes;
+            Map<String, Object> arguments = dataFetchingEnvironment.getArguments();
+            RequestContext.touch(dataFetchingEnvironment, workspace);
+            RequestContext context = RequestContext.of(dataFetchingEnvironment);
+            QueryOrigin origin = QueryOrigin.of(dataFetchingEnvironment);
+            PageRequest pageRequest = PageRequest.of(first, after, last, before, () -> countQuery(workspace, rootPath, nodeTypes, arguments, queryFilters, context, origin));
+            Projection projection = Projection.of(dataFetchingEnvironment.getSelectionSet());
+
+            return supplyAsync(workspace, () -> {
+                NodeIterator nodeIterator = executeQuery(workspace, rootPath, nodeTypes, arguments, queryFilters, projection, pageRequest.getOffset(), pageRequest.getLimit(), context, origin);
+
+                final List<Object> nodes = new ArrayList<>();
+                nodeIterator.forEachRemaining(node -> nodes.add(wrapper.apply((javax.jcr.Node)node)));
+
+                return pageRequest.toConnection(nodes);
+            });
         };
     }
 
     /**
-     * Add new schema file to current TypeRegistry
+     * Builds a DataFetcher for the subscription of a field tagged with @definition or @delivery
+     *
+     * Returns the publisher of the changes below rootPath. Added and changed nodes are pushed if the subscriber can
+     * read them and they have one of the nodeTypes, removed nodes can not be read so they are always pushed.
      *
-     * Re-builds GraphQL
-     * @param newsdl
+     * @param directive Directive of the field
+     * @return
      */
-    private void addSchema(String newsdl) {
-        SchemaParser schemaParser = new SchemaParser();
-        TypeDefinitionRegistry newtypeRegistry = schemaParser.parse(newsdl);
-        mergeTypeRegistry(newtypeRegistry, typeRegistry);
+    private DataFetcher buildDataFetcherForSubscription(ContentDirective directive) {
+        Function<javax.jcr.Node, Object> wrapper = directive.wrapper();
 
-        RuntimeWiring runtimeWiring = buildWiring(typeRegistry);
-        SchemaGenerator schemaGenerator = new SchemaGenerator();
+        return dataFetchingEnvironment -> {
+            Projection projection = Projection.of(dataFetchingEnvironment.getSelectionSet());
+            RequestContext.touch(dataFetchingEnvironment, directive.workspace);
+            // The session of the subscriber is opened before the changes arrive
+            MgnlContext.getJCRSession(directive.workspace);
 
-        GraphQLSchema graphQLSchema = schemaGenerator.makeExecutableSchema(typeRegistry, runtimeWiring);
-        graphQL = graphQL.transform(builder -> builder.schema(graphQLSchema));
+            return new NodeChangePublisher(nodeChangeHub, directive.workspace, directive.rootPath,
+                    change -> acceptsChange(change, directive.filter),
+                    node -> wrapper.apply(decorate(node, projection)),
+                    moduleProvider.get().getSubscriptionBufferSize());
+        };
     }
 
     /**
-     * Merge TypeDefinitionRegistry "from" in "to"
+     * Builds a DataFetcher for a mutation generated for a field tagged with @definition
+     *
+     * The changes are saved with the session of the request, mutations are executed one after another so they do
+     * not share the session with other fetchers. Mutations are rejected in read-only requests, i.e. GET.
+     * The cached results below the rootPath are invalidated once the changes are saved, before the observation events
+     * arrive, so the next queries of the request or of the batch see the changes.
      *
-     * For existing Types adds the fields to the existing Type.
-     * For non existing Types, adds it
-     * @param from
-     * @param to
+     * @param fieldName Name of the mutation, its suffix tells the operation
+     * @param directive Directive of the field
+     * @return
      */
-    private void mergeTypeRegistry(TypeDefinitionRegistry from, TypeDefinitionRegistry to) {
-        for (ObjectTypeDefinition type: from.getTypes(ObjectTypeDefinition.class)) {
-            mergeTypeInto(type, to);
+    private DataFetcher buildDataFetcherForMutation(String fieldName, ContentDirective directive) {
+        ContentMutations mutations = new ContentMutations(directive.rootPath, directive.nodeTypes);
+        Function<javax.jcr.Node, Object> wrapper = directive.wrapper();
+
+        return dataFetchingEnvironment -> {
+            try {
+                if (RequestContext.isReadOnly(dataFetchingEnvironment)) {
+                    throw new MutationException("Mutations are not allowed in read-only requests", MutationException.CODE_NOT_ALLOWED, null);
+                }
+                RequestContext.touch(dataFetchingEnvironment, directive.workspace);
+                Session session = MgnlContext.getJCRSession(directive.workspace);
+                Projection projection = Projection.of(dataFetchingEnvironment.getSelectionSet());
+                String path = dataFetchingEnvironment.getArgument(ContentMutations.ARG_path);
+                Map<String, Object> data = dataFetchingEnvironment.getArgument(ContentMutations.ARG_data);
+                String lastModified = dataFetchingEnvironment.getArgument(ContentMutations.ARG_lastModified);
+
+                Object result;
+                if (fieldName.endsWith(MutationTypes.CREATE_FIELD_SUFFIX)) {
+                    result = wrapper.apply(decorate(mutations.create(session, path, data), projection));
+                } else if (fieldName.endsWith(MutationTypes.UPDATE_FIELD_SUFFIX)) {
+                    result = wrapper.apply(decorate(mutations.update(session, path, data, lastModified), projection));
+                } else if (fieldName.endsWith(MutationTypes.DELETE_FIELD_SUFFIX)) {
+                    result = mutations.delete(session, path, lastModified);
+                } else if (fieldName.endsWith(MutationTypes.BULK_FIELD_SUFFIX)) {
+                    List<Map<String, Object>> changes = dataFetchingEnvironment.getArgument(ContentMutations.ARG_changes);
+                    result = mutations.apply(session, changes, moduleProvider.get().getLimits().getMaxBulkChanges());
+                } else {
+                    return null;
+                }
+                // Saved, the changes are below the rootPath of the field
+                resultCache.invalidatePath(directive.workspace, directive.rootPath);
+                return result;
+            } catch (MutationException e) {
+                Map<String, Object> extensions = new LinkedHashMap<>();
+                extensions.put("code", e.getCode());
+                if (e.getPath() != null) {
+                    extensions.put(ContentMutations.ARG_path, e.getPath());
+                }
+                return DataFetcherResult.newResult()
+                        .error(GraphqlErrorBuilder.newError(dataFetchingEnvironment).message(e.getMessage()).extensions(extensions).build())
+                        .build();
+            }
+        };
+    }
+
+    private static boolean acceptsChange(NodeChange change, NodeTypeFilter filter) {
+        if (change.getType() == NodeChange.Type.REMOVED) {
+            return true;
+        }
+        try {
+            javax.jcr.Node node = change.getJCRNode();
+            return node != null && filter.test(node);
+        } catch (RepositoryException e) {
+            // Not readable by the subscriber
+            return false;
         }
     }
 
     /**
-     * Merge ObjectTypeDefinition inside TypeDefinitionRegistry
+     * Runs the fetcher in the executor of fetchers, so independent root fields are resolved in parallel
+     *
+     * The session of the workspace is acquired in the thread of the request before, the MgnlContext of the request
+     * is not thread-safe and the fetcher just reads the session already opened. The future is completed in the
+     * thread of the request, see FetcherExecutor.
+     *
+     * @param workspace Workspace read by the fetcher
+     * @param fetcher
+     * @return
+     * @throws RepositoryException
+     */
+    private <T> CompletableFuture<T> supplyAsync(String workspace, Callable<T> fetcher) throws RepositoryException {
+        MgnlContext.getJCRSession(workspace);
+        return fetcherExecutor.supply(workspace, fetcher);
+    }
+
+    /**
+     * Executes the query of a field tagged with @definition or @delivery
      *
-     * If Type exists in TypeRegistry the adds the fields to the existing Type.
-     * Otherwise add the Type to the TypeRegistry.
+     * The identifiers of the results are cached until the contents below rootPath change, the nodes are read again
+     * with the session of the request so the permissions of the user are checked.
      *
-     * @param newType
-     * @param registry
+     * @param workspace Workspace of the contents
+     * @param rootPath  Path of the root node
+     * @param nodeTypes List of node types used as a filter
+     * @param arguments Arguments of the field, "where" and "orderBy" are added to the query
+     * @param queryFilters Translates the arguments "where" and "orderBy" of the field
+     * @param projection What is selected from the nodes
+     * @param offset    Offset of the first result
+     * @param limit     Max number of results or PageRequest.NO_LIMIT
+     * @param context   Context of the request, counts the queries and nodes read, may be null
+     * @param origin    Operation and field of the query, for the slow query log, may be null
+     * @return Iterator of the results decorated for i18n
+     * @throws RepositoryException
      */
-    private void mergeTypeInto(ObjectTypeDefinition newType, TypeDefinitionRegistry registry) {
-        Optional<ObjectTypeDefinition> candidate = registry.getTypes(ObjectTypeDefinition.class)
-                .stream()
-                .filter(type -> type.getName().equals(newType.getName())).findFirst();
-        // 1. If exists, add field definitions, else add the type
-        if (candidate.isPresent()) {
-            List<FieldDefinition> fieldDefinitions = candidate.get().getFieldDefinitions();
-            fieldDefinitions.addAll(newType.getFieldDefinitions());
+    private NodeIterator executeQuery(String workspace, String rootPath, List<String> nodeTypes, Map<String, Object> arguments, QueryFilters queryFilters, Projection projection, long offset, long limit, RequestContext context, QueryOrigin origin) throws RepositoryException {
+        Session session = MgnlContext.getJCRSession(workspace);
 
-            ObjectTypeDefinition newObjectTypeDefinition = candidate.get().transform(builder -> builder.fieldDefinitions(fieldDefinitions));
-            registry.remove(candidate.get());
-            registry.add(newObjectTypeDefinition);
+        QueryResultCache.Key key = new QueryResultCache.Key(workspace, rootPath, resultCacheParameters(nodeTypes, arguments, offset, limit));
+        List<javax.jcr.Node> nodes = new ArrayList<>();
+        List<String> identifiers = resultCache.get(key);
+        if (identifiers != null) {
+            for (String identifier: identifiers) {
+                try {
+                    nodes.add(session.getNodeByIdentifier(identifier));
+                } catch (ItemNotFoundException e) {
+                    // Removed meanwhile, the entry is being invalidated
+                }
+            }
         } else {
-            // 2. If does not exist, add it
-            registry.add(newType);
+            long generation = resultCache.prepare(key);
+            Query query = buildQuery(rootPath, nodeTypes, arguments, queryFilters).build(session);
+            if (offset > 0) {
+                query.setOffset(offset);
+            }
+            if (limit != PageRequest.NO_LIMIT) {
+                query.setLimit(limit);
+            }
+            long start = System.nanoTime();
+            QueryResult result = query.execute();
+            identifiers = new ArrayList<>();
+            NodeIterator resultNodes = result.getNodes();
+            while (resultNodes.hasNext()) {
+                javax.jcr.Node node = resultNodes.nextNode();
+                nodes.add(node);
+                identifiers.add(node.getIdentifier());
+            }
+            long nanos = System.nanoTime() - start;
+            metrics.recordJcrQuery(nanos);
+            slowQueryLog.record(origin, session, query, identifiers.size(), nanos);
+            if (context != null) {
+                context.recordJcrQuery();
+            }
+            resultCache.put(key, Collections.unmodifiableList(identifiers), generation);
+        }
+        metrics.recordNodes(nodes.size());
+        if (context != null) {
+            context.recordNodes(nodes.size());
+        }
+
+        return decorate(new NodeIteratorAdapter(nodes), projection);
+    }
+
+    /**
+     * Reads the nodes below the root up to the depth accepted by the filter with a single ISDESCENDANTNODE query
+     *
+     * The query selects the node type of the filter when it has only one, otherwise all the nodes are selected and
+     * filtered while they are read. The reading stops as soon as one of the limits of nodes is passed.
+     * @param context Context of the request, counts the queries and nodes read, may be null
+     * @return null if the subtree has more than DESCENDANTS_MAX_NODES nodes or the query more than DESCENDANTS_MAX_SCANNED
+     */
+    private Subtree querySubtree(javax.jcr.Node root, int depth, NodeTypeFilter filter, Projection projection, RequestContext context) throws RepositoryException {
+        NodeQueryBuilder builder = NodeQueryBuilder.create().rootPath(root.getPath());
+        if (filter.getNodeTypes().size() == 1) {
+            builder.from(filter.getNodeTypes().get(0));
+        }
+        Query query = builder.build(root.getSession());
+        // One more result tells that the query exceeds the limit
+        query.setLimit(DESCENDANTS_MAX_SCANNED + 1);
+
+        long start = System.nanoTime();
+        Subtree subtree = new Subtree(root.getPath(), depth);
+        NodeIterator nodes = decorate(query.execute().getNodes(), projection);
+        long scanned = 0;
+        boolean exceeded = false;
+        while (nodes.hasNext() && !exceeded) {
+            javax.jcr.Node node = nodes.nextNode();
+            scanned++;
+            if (filter.test(node) && subtree.add(node)) {
+                exceeded = subtree.size() > DESCENDANTS_MAX_NODES;
+            }
+            exceeded = exceeded || scanned > DESCENDANTS_MAX_SCANNED;
+        }
+        metrics.recordJcrQuery(System.nanoTime() - start);
+        metrics.recordNodes(subtree.size());
+        if (context != null) {
+            context.recordJcrQuery();
+            context.recordNodes(subtree.size());
+        }
+        if (exceeded) {
+            log.debug("Subtree of {} exceeds the limits of nodes, reading the children level by level", root.getPath());
+            return null;
+        }
+        return subtree;
+    }
+
+    private javax.jcr.Node decorate(javax.jcr.Node node, Projection projection) {
+        return decorate(new NodeIteratorAdapter(Collections.singletonList(node)), projection).nextNode();
+    }
+
+    /**
+     * Decorates the nodes for i18n, system properties are filtered out unless the query reads them
+     */
+    private NodeIterator decorate(NodeIterator nodeIterator, Projection projection) {
+        FilteringContentDecoratorBuilder decorators = new FilteringContentDecoratorBuilder()
+                .childNodeTypes(Collections.emptyList())
+                .strict(false)
+                .depth(1)
+                .includeSystemProperties(projection.includesSystemProperties())
+                .supportI18n(i18nContentSupport);
+
+        return decorators.wrapNodeIterator(nodeIterator);
+    }
+
+    /**
+     * Parameters of the query that change its results, besides workspace and rootPath.
+     *
+     * The user is part of the key because the results of the query depend on the permissions of the user.
+     */
+    private String resultCacheParameters(List<String> nodeTypes, Map<String, Object> arguments, long offset, long limit) {
+        return nodeTypes + "|" + arguments + "|" + offset + "|" + limit
+                + "|" + i18nContentSupport.getLocale()
+                + "|" + MgnlContext.getUser().getName();
+    }
+
+    /**
+     * Builds the query of a field tagged with @definition or @delivery
+     *
+     * rootPath and nodeTypes come from the directive, the arguments "where" and "orderBy" are translated to conditions
+     * of the query so the repository does the filtering.
+     */
+    private NodeQueryBuilder buildQuery(String rootPath, List<String> nodeTypes, Map<String, Object> arguments, QueryFilters queryFilters) {
+        NodeQueryBuilder builder = NodeQueryBuilder.create()
+                .rootPath(rootPath)
+                .nodeTypes(nodeTypes);
+        queryFilters.apply(arguments, builder);
+
+        return builder;
+    }
+
+    /**
+     * Number of results of the query of a field tagged with @definition or @delivery
+     *
+     * Used just for connections requested with "last" and without "before".
+     * @param context Context of the request, counts the queries, may be null
+     * @param origin  Operation and field of the query, for the slow query log, may be null
+     */
+    private long countQuery(String workspace, String rootPath, List<String> nodeTypes, Map<String, Object> arguments, QueryFilters queryFilters, RequestContext context, QueryOrigin origin) {
+        try {
+            Session session = MgnlContext.getJCRSession(workspace);
+            Query query = buildQuery(rootPath, nodeTypes, arguments, queryFilters).build(session);
+            long start = System.nanoTime();
+            NodeIterator nodeIterator = query.execute().getNodes();
+            long size = nodeIterator.getSize();
+            if (size == -1) {
+                // The size is unknown, the results are counted without reading the nodes
+                size = 0;
+                while (nodeIterator.hasNext()) {
+                    nodeIterator.skip(1);
+                    size++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            metrics.recordJcrQuery(nanos);
+            slowQueryLog.record(origin, session, query, size, nanos);
+            if (context != null) {
+                context.recordJcrQuery();
+            }
+            return size;
+        } catch (RepositoryException e) {
+            throw new IllegalStateException("Errors counting results of workspace " + workspace, e);
         }
     }
 
     @Override
     public void onEndpointRegistered(GraphQLEndpointDefinitionRegistryEvent event) {
-        /**
-         * TODO Register just the new schema
-         */
-        init();
+        updateGraphQL(event.getGraphQLDefinitionDefinitionProvider());
     }
 
     @Override
     public void onEndpointReregistered(GraphQLEndpointDefinitionRegistryEvent event) {
-        /**
-         * TODO Update just the updated schema
-         */
-        init();
+        updateGraphQL(event.getGraphQLDefinitionDefinitionProvider());
     }
 
     @Override
     public void onEndpointUnregistered(GraphQLEndpointDefinitionRegistryEvent event) {
-        /**
-         * TODO Unregister just the unregistered schema
-         */
-        init();
+        DefinitionProvider<GraphQLDefinition> provider = event.getGraphQLDefinitionDefinitionProvider();
+        boolean changed;
+        synchronized (schemaLock) {
+            changed = schemaFragments != null && schemaFragments.remove(provider.getMetadata().getReferenceId());
+        }
+        if (changed) {
+            schemaRebuild.schedule();
+        }
+    }
+
+    /**
+     * Replaces the fragment of the GraphQL definition and requests a rebuild of the schema
+     * @param provider
+     */
+    private void updateGraphQL(DefinitionProvider<GraphQLDefinition> provider) {
+        synchronized (schemaLock) {
+            if (schemaFragments == null) {
+                return;
+            }
+            try {
+                registerGraphQL(provider);
+            } catch (Exception e) {
+                log.error("Failed to register endpoint [{}]", provider.getMetadata().getReferenceId(), e);
+                return;
+            }
+        }
+        schemaRebuild.schedule();
+    }
+
+    /**
+     * Replaces the fragment of the delivery endpoint and requests a rebuild of the schema
+     * @param provider
+     */
+    private void updateDeliveryEndpoint(DefinitionProvider<EndpointDefinition> provider) {
+        boolean changed;
+        synchronized (schemaLock) {
+            if (schemaFragments == null) {
+                return;
+            }
+            try {
+                changed = registerDeliveryEndpoint(provider);
+            } catch (Exception e) {
+                log.error("Failed to register delivery endpoint [{}]", provider.getMetadata().getReferenceId(), e);
+                return;
+            }
+        }
+        if (changed) {
+            schemaRebuild.schedule();
+        }
+    }
+
+    /**
+     * Removes the fragment of the delivery endpoint and requests a rebuild of the schema
+     * @param provider
+     */
+    private void removeDeliveryEndpoint(DefinitionProvider<EndpointDefinition> provider) {
+        boolean changed;
+        synchronized (schemaLock) {
+            changed = schemaFragments != null && schemaFragments.remove(DELIVERY_FRAGMENT_PREFIX + provider.getMetadata().getReferenceId());
+        }
+        if (changed) {
+            schemaRebuild.schedule();
+        }
+    }
+
+    /**
+     * Keeps the fields @delivery in sync with the delivery endpoints of the registry
+     */
+    private final class DeliveryEndpointHandler implements EndpointDefinitionRegistryEventHandler {
+
+        @Override
+        public void onEndpointRegistered(EndpointDefinitionRegistryEvent event) {
+            updateDeliveryEndpoint(event.getEndpointDefinitionProvider());
+        }
+
+        @Override
+        public void onEndpointReregistered(EndpointDefinitionRegistryEvent event) {
+            updateDeliveryEndpoint(event.getEndpointDefinitionProvider());
+        }
+
+        @Override
+        public void onEndpointUnregistered(EndpointDefinitionRegistryEvent event) {
+            removeDeliveryEndpoint(event.getEndpointDefinitionProvider());
+        }
     }
 }
@@ -0,0 +1,110 @@
+package com.formentor.magnolia.rest.graphql.service;
+
+import graphql.schema.DataFetchingEnvironment;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Context of the execution of a GraphQL request, available to the data fetchers as the context of the execution.
+ *
+ * Collects the workspaces read by the fetchers, so the endpoint can derive the last modification of the response.
+ * Fetchers run in parallel, so it is thread-safe.
+ * Read-only requests, i.e. GET, can not execute mutations.
+ * It also counts the JCR queries and nodes read by the request, returned with the tracing of the request.
+ */
+public class RequestContext {
+    private final Set<String> workspaces = ConcurrentHashMap.newKeySet();
+    private final boolean readOnly;
+    private final AtomicLong jcrQueries = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean tracing;
+
+    public RequestContext() {
+        this(false);
+    }
+
+    public RequestContext(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Records the workspace read by the fetcher of the environment
+     *
+     * @param dataFetchingEnvironment
+     * @param workspace
+     */
+    public static void touch(DataFetchingEnvironment dataFetchingEnvironment, String workspace) {
+        Object context = dataFetchingEnvironment.getContext();
+        if (context instanceof RequestContext && workspace != null) {
+            ((RequestContext) context).workspaces.add(workspace);
+        }
+    }
+
+    /**
+     * Context of the execution of the environment
+     *
+     * @param dataFetchingEnvironment
+     * @return null if the execution has no RequestContext
+     */
+    public static RequestContext of(DataFetchingEnvironment dataFetchingEnvironment) {
+        Object context = dataFetchingEnvironment.getContext();
+        return (context instanceof RequestContext)? (RequestContext) context: null;
+    }
+
+    /**
+     * Checks if the request of the environment can not change contents
+     *
+     * @param dataFetchingEnvironment
+     * @return
+     */
+    public static boolean isReadOnly(DataFetchingEnvironment dataFetchingEnvironment) {
+        Object context = dataFetchingEnvironment.getContext();
+        return context instanceof RequestContext && ((RequestContext) context).readOnly;
+    }
+
+    /**
+     * Workspaces read during the execution
+     * @return
+     */
+    public Set<String> getWorkspaces() {
+        return Collections.unmodifiableSet(workspaces);
+    }
+
+    /**
+     * Records a query executed in the repository
+     */
+    public void recordJcrQuery() {
+        jcrQueries.incrementAndGet();
+    }
+
+    /**
+     * Records nodes read from the repository
+     * @param count
+     */
+    public void recordNodes(long count) {
+        nodes.addAndGet(count);
+    }
+
+    public long getJcrQueries() {
+        return jcrQueries.get();
+    }
+
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * The tracing and the metrics of the execution are added to the extensions of the result
+     * @return
+     */
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+}
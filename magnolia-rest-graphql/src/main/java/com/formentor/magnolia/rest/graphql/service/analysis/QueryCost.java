@@ -0,0 +1,44 @@
+package com.formentor.magnolia.rest.graphql.service.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cost of a query computed before executing it: depth, number of aliases and complexity.
+ */
+public final class QueryCost {
+    private final int depth;
+    private final int aliases;
+    private final long complexity;
+
+    public QueryCost(int depth, int aliases, long complexity) {
+        this.depth = depth;
+        this.aliases = aliases;
+        this.complexity = complexity;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getAliases() {
+        return aliases;
+    }
+
+    public long getComplexity() {
+        return complexity;
+    }
+
+    /**
+     * Cost as reported in the extensions of the response
+     * @return
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("depth", depth);
+        result.put("aliases", aliases);
+        result.put("complexity", complexity);
+
+        return result;
+    }
+}
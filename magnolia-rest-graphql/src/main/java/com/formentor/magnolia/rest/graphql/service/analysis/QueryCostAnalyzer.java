@@ -0,0 +1,135 @@
+package com.formentor.magnolia.rest.graphql.service.analysis;
+
+import com.formentor.magnolia.rest.graphql.QueryLimits;
+import com.formentor.magnolia.rest.graphql.service.schema.ConnectionTypes;
+import graphql.analysis.QueryTraverser;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.language.Document;
+import graphql.schema.GraphQLOutputType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Computes the cost of a query without executing it.
+ *
+ * Every field costs 1 each time it is resolved, so the fields below a list cost the estimated size of the list:
+ *      tours_ql { name, children { name } }  =  tours_ql(1) + 20 x (name(1) + children(1) + 20 x name(1))
+ * The size of a list is taken from the arguments "first"/"last" of the connections, from the sizes configured for
+ * the fields of Query or from the default size of the lists.
+ * The field "descendants" of Node reads its subtree with one query, so it costs the default size of the lists for
+ * every level of its argument "depth".
+ */
+public class QueryCostAnalyzer {
+    private static final String CONNECTION_TYPE_SUFFIX = "Connection";
+    private static final String CONNECTION_edges = "edges";
+    // Field "descendants" of Node and its depth, as defined by GraphQLProvider
+    private static final String NODE_descendants = "descendants";
+    private static final String NODE_descendants_depth = "depth";
+    private static final int DESCENDANTS_DEFAULT_DEPTH = 3;
+    private static final int DESCENDANTS_MAX_DEPTH = 10;
+
+    private final QueryLimits limits;
+
+    public QueryCostAnalyzer(QueryLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Cost of the operation of the document
+     *
+     * @param schema        schema of the query
+     * @param document      parsed and validated query
+     * @param operationName operation to analyze, may be null if the document has just one
+     * @param variables     variables of the query
+     * @return
+     */
+    public QueryCost analyze(GraphQLSchema schema, Document document, String operationName, Map<String, Object> variables) {
+        QueryTraverser traverser = QueryTraverser.newQueryTraverser()
+                .schema(schema)
+                .document(document)
+                .operationName(operationName)
+                .variables(variables)
+                .build();
+
+        CostVisitor visitor = new CostVisitor();
+        traverser.visitPreOrder(visitor);
+
+        return new QueryCost(visitor.depth, visitor.aliases, visitor.complexity);
+    }
+
+    /**
+     * Estimated number of items of the field, 1 if it is not a list
+     */
+    private long listSize(QueryVisitorFieldEnvironment environment) {
+        Map<String, Object> arguments = environment.getArguments();
+        Object first = arguments.get(ConnectionTypes.ARG_first);
+        Object last = arguments.get(ConnectionTypes.ARG_last);
+        if (first instanceof Number || last instanceof Number) {
+            return Math.max(
+                    (first instanceof Number)? ((Number) first).longValue(): 0,
+                    (last instanceof Number)? ((Number) last).longValue(): 0);
+        }
+
+        String name = environment.getFieldDefinition().getName();
+        QueryVisitorFieldEnvironment parent = environment.getParentEnvironment();
+        if (parent == null) {
+            Integer size = limits.getListSizes().get(name);
+            if (size != null) {
+                return size;
+            }
+        } else if (CONNECTION_edges.equals(name) && isConnection(parent.getFieldDefinition().getType())) {
+            // The size of the page was counted by the connection
+            return 1;
+        } else if (NODE_descendants.equals(name)) {
+            Object depth = arguments.get(NODE_descendants_depth);
+            int levels = (depth instanceof Number)? Math.max(1, Math.min(((Number) depth).intValue(), DESCENDANTS_MAX_DEPTH)): DESCENDANTS_DEFAULT_DEPTH;
+            return multiply(limits.getDefaultListSize(), levels);
+        }
+
+        GraphQLOutputType type = environment.getFieldDefinition().getType();
+        return (GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(type)) || isConnection(type))? limits.getDefaultListSize(): 1;
+    }
+
+    private static boolean isConnection(GraphQLOutputType type) {
+        return GraphQLTypeUtil.unwrapAll(type).getName().endsWith(CONNECTION_TYPE_SUFFIX);
+    }
+
+    private static long multiply(long a, long b) {
+        long result = a * b;
+        // Saturates instead of overflowing, the query is rejected anyway
+        return (a != 0 && (result / a != b || result < 0))? Long.MAX_VALUE: result;
+    }
+
+    private class CostVisitor extends QueryVisitorStub {
+        // Times the children of each field are resolved, the traverser passes the same environment to the children
+        private final Map<QueryVisitorFieldEnvironment, Long> multipliers = new IdentityHashMap<>();
+        private int depth;
+        private int aliases;
+        private long complexity;
+
+        @Override
+        public void visitField(QueryVisitorFieldEnvironment environment) {
+            if (environment.isTypeNameIntrospectionField()) {
+                return;
+            }
+
+            int fieldDepth = 1;
+            for (QueryVisitorFieldEnvironment parent = environment.getParentEnvironment(); parent != null; parent = parent.getParentEnvironment()) {
+                fieldDepth++;
+            }
+            depth = Math.max(depth, fieldDepth);
+            if (environment.getField().getAlias() != null) {
+                aliases++;
+            }
+
+            QueryVisitorFieldEnvironment parent = environment.getParentEnvironment();
+            long times = (parent == null)? 1: multipliers.getOrDefault(parent, 1L);
+            complexity = (Long.MAX_VALUE - complexity < times)? Long.MAX_VALUE: complexity + times;
+            multipliers.put(environment, multiply(times, listSize(environment)));
+        }
+    }
+}
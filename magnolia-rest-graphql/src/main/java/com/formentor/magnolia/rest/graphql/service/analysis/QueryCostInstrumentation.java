@@ -0,0 +1,86 @@
+package com.formentor.magnolia.rest.graphql.service.analysis;
+
+import com.formentor.magnolia.rest.graphql.QueryLimits;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Rejects the queries over the limits of depth, aliases and complexity before executing them.
+ *
+ * The cost is computed when the operation starts and not during the validation, because the validation is skipped
+ * for the documents in the cache. No data fetcher has been called yet, so no content is read for rejected queries.
+ * The cost of the executed queries is reported in the extension "cost" of the response.
+ */
+@Slf4j
+public class QueryCostInstrumentation extends SimpleInstrumentation {
+    public static final String EXTENSION_cost = "cost";
+
+    // Limits are read for every query, so changes of the configuration are applied at once
+    private final Supplier<QueryLimits> limits;
+
+    public QueryCostInstrumentation(Supplier<QueryLimits> limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new CostState();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters) {
+        ExecutionContext executionContext = parameters.getExecutionContext();
+        QueryLimits currentLimits = limits.get();
+        QueryCost cost = new QueryCostAnalyzer(currentLimits).analyze(
+                executionContext.getGraphQLSchema(),
+                executionContext.getDocument(),
+                executionContext.getOperationDefinition().getName(),
+                executionContext.getVariables());
+
+        check("depth", cost.getDepth(), currentLimits.getMaxDepth());
+        check("number of aliases", cost.getAliases(), currentLimits.getMaxAliases());
+        check("complexity", cost.getComplexity(), currentLimits.getMaxComplexity());
+
+        CostState state = parameters.getInstrumentationState();
+        state.cost = cost;
+
+        return super.beginExecuteOperation(parameters);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult, InstrumentationExecutionParameters parameters) {
+        CostState state = parameters.getInstrumentationState();
+        if (state == null || state.cost == null) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+
+        ExecutionResult result = ExecutionResultImpl.newExecutionResult()
+                .from(executionResult)
+                .addExtension(EXTENSION_cost, state.cost.toMap())
+                .build();
+        return CompletableFuture.completedFuture(result);
+    }
+
+    private static void check(String measure, long value, long limit) {
+        if (limit > 0 && value > limit) {
+            log.debug("Query rejected, {} {} is over the limit {}", measure, value, limit);
+            throw new AbortExecutionException("Query " + measure + " " + value + " exceeds the limit " + limit);
+        }
+    }
+
+    private static final class CostState implements InstrumentationState {
+        private QueryCost cost;
+    }
+}
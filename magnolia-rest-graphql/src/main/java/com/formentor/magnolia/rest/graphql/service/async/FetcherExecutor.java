@@ -0,0 +1,301 @@
+package com.formentor.magnolia.rest.graphql.service.async;
+
+import info.magnolia.context.Context;
+import info.magnolia.context.MgnlContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor of the data fetchers, so the root fields of a query are resolved in parallel.
+ *
+ * The MgnlContext of the request and its JCR sessions are not thread-safe, so the fetchers of a request run inside a
+ * Scope opened by the thread of the request:
+ * - The fetchers are collected while graphql-java dispatches the fields, nothing runs yet.
+ * - The thread of the request starts the collected fetchers, one task per workspace so a session is used by one
+ *   thread at a time, and waits for all of them. Meanwhile it does not touch the context nor the sessions.
+ * - The futures are completed by the thread of the request, so graphql-java resolves the child fields, dispatches
+ *   the DataLoaders and reads i18n contents in the thread that owns the MgnlContext.
+ * Fetchers called out of a scope, i.e. deferred fields or events of subscriptions, run in the calling thread.
+ *
+ * Uses a pool of platform threads with a bounded queue, when the queue is full the fetcher runs in the thread of the
+ * request. With virtual threads, available since Java 21, a thread is started per task and the number of tasks
+ * running at the same time is bounded by a semaphore.
+ */
+@Slf4j
+public class FetcherExecutor {
+    private static final String THREAD_NAME_PREFIX = "graphql-fetcher-";
+    // Wait for a result completed out of the scope, i.e. by a DataLoader, before checking the scope again
+    private static final long AWAIT_POLL_MILLIS = 10;
+
+    private final ExecutorService executor;
+    // Bounds the fetchers running in virtual threads, null for platform threads
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+    // Scope of the request running in the thread
+    private final ThreadLocal<Scope> scopes = new ThreadLocal<>();
+
+    /**
+     * @param threads        Max number of fetchers running at the same time
+     * @param queueSize      Max number of fetchers waiting for a platform thread
+     * @param virtualThreads Use virtual threads when the JVM supports them
+     */
+    public FetcherExecutor(int threads, int queueSize, boolean virtualThreads) {
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtualExecutor != null) {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(threads);
+            this.virtualThreads = true;
+        } else {
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), new FetcherThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+            this.permits = null;
+            this.virtualThreads = false;
+        }
+    }
+
+    /**
+     * Opens the scope of the fetchers of a request in the current thread
+     *
+     * @return scope to close when the execution finishes
+     */
+    public Scope open() {
+        Scope scope = new Scope(scopes.get());
+        scopes.set(scope);
+        return scope;
+    }
+
+    /**
+     * Adds the fetcher to the scope of the current thread, without scope the fetcher runs now in the current thread
+     *
+     * @param workspace workspace read by the fetcher, the fetchers of the same workspace run one after another
+     * @param fetcher
+     * @param <T>
+     * @return future completed with the result of the fetcher in the thread of the request
+     */
+    public <T> CompletableFuture<T> supply(String workspace, Callable<T> fetcher) {
+        Scope scope = scopes.get();
+        if (scope != null) {
+            return scope.add(workspace, fetcher);
+        }
+
+        Job<T> job = new Job<>(fetcher);
+        job.run();
+        job.complete();
+        return job.future;
+    }
+
+    /**
+     * Stops the threads, fetchers in progress are completed
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Statistics of the executor: active threads and queued fetchers
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("virtualThreads", virtualThreads);
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            result.put("poolSize", pool.getPoolSize());
+            result.put("active", pool.getActiveCount());
+            result.put("queued", pool.getQueue().size());
+            result.put("completed", pool.getCompletedTaskCount());
+        } else if (permits != null) {
+            result.put("availablePermits", permits.availablePermits());
+            result.put("waiting", permits.getQueueLength());
+        }
+
+        return result;
+    }
+
+    /**
+     * Fetchers of the execution of a request, used only by the thread that opened it
+     */
+    public final class Scope implements AutoCloseable {
+        private final Scope parent;
+        // Fetchers waiting to be started, by workspace
+        private final Map<String, List<Job<?>>> pending = new LinkedHashMap<>();
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * Runs the fetchers of the scope until the result is done
+         *
+         * @param result result of the execution
+         */
+        public void await(CompletableFuture<?> result) {
+            while (!result.isDone()) {
+                if (!pending.isEmpty()) {
+                    runPending();
+                    continue;
+                }
+                try {
+                    result.get(AWAIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | ExecutionException e) {
+                    // Not done yet or done with errors, checked by the loop
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result.cancel(false);
+                }
+            }
+        }
+
+        /**
+         * Closes the scope, the fetchers not started fail
+         */
+        @Override
+        public void close() {
+            for (List<Job<?>> jobs: pending.values()) {
+                jobs.forEach(job -> job.future.cancel(false));
+            }
+            pending.clear();
+            if (parent == null) {
+                scopes.remove();
+            } else {
+                scopes.set(parent);
+            }
+        }
+
+        private <T> CompletableFuture<T> add(String workspace, Callable<T> fetcher) {
+            Job<T> job = new Job<>(fetcher);
+            pending.computeIfAbsent(String.valueOf(workspace), key -> new ArrayList<>()).add(job);
+            return job.future;
+        }
+
+        /**
+         * Runs the pending fetchers, one task per workspace, and completes their futures in this thread
+         */
+        private void runPending() {
+            List<List<Job<?>>> tasks = new ArrayList<>(pending.values());
+            pending.clear();
+
+            if (tasks.size() == 1) {
+                // Nothing to run in parallel
+                tasks.get(0).forEach(Job::run);
+            } else {
+                final Context context = MgnlContext.hasInstance() ? MgnlContext.getInstance() : null;
+                List<CompletableFuture<Void>> running = new ArrayList<>();
+                for (List<Job<?>> jobs: tasks) {
+                    running.add(CompletableFuture.runAsync(() -> call(jobs, context), executor));
+                }
+                // The sessions of the request are used by the tasks until all of them finish
+                CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+            }
+
+            for (List<Job<?>> jobs: tasks) {
+                jobs.forEach(Job::complete);
+            }
+        }
+    }
+
+    private void call(List<Job<?>> jobs, Context context) {
+        boolean acquired = false;
+        Context previous = MgnlContext.hasInstance() ? MgnlContext.getInstance() : null;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+            if (context != null) {
+                MgnlContext.setInstance(context);
+            }
+            jobs.forEach(Job::run);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            jobs.forEach(job -> job.fail(e));
+        } finally {
+            // The context belongs to the request, it is not released here
+            if (context != null) {
+                MgnlContext.setInstance(previous);
+            }
+            if (acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Fetcher with its outcome, run by a task and completed by the thread of the request
+     */
+    private static final class Job<T> {
+        private final Callable<T> fetcher;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T value;
+        private Throwable error;
+
+        private Job(Callable<T> fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        private void run() {
+            if (error != null) {
+                return;
+            }
+            try {
+                value = fetcher.call();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        private void fail(Throwable e) {
+            error = e;
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(value);
+            }
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up by reflection, so the module still runs on Java 8
+     *
+     * @return null if the JVM does not support virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not supported by this JVM, using a pool of platform threads");
+            return null;
+        }
+    }
+
+    private static final class FetcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.formentor.magnolia.rest.graphql.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Cache of parsed and validated documents shared by all the GraphQL instances built by GraphQLProvider.
+ *
+ * Entries are keyed by the query text and the version of the schema used to validate it, so a document validated
+ * against an old schema is never served for a new one.
+ * The cache is bounded by weight, being the weight of an entry the length of the query text.
+ */
+@Slf4j
+public class PreparsedDocumentCache {
+
+    private final Cache<Key, PreparsedDocumentEntry> cache;
+
+    /**
+     * @param maxWeight Maximum number of characters of query text kept in the cache
+     */
+    public PreparsedDocumentCache(long maxWeight) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Key key, PreparsedDocumentEntry entry) -> key.query.length())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the PreparsedDocumentProvider for the given version of the schema.
+     *
+     * @param schemaVersion version of the schema the documents will be validated against
+     * @return
+     */
+    public PreparsedDocumentProvider forSchemaVersion(long schemaVersion) {
+        return new VersionedProvider(schemaVersion);
+    }
+
+    /**
+     * Removes all the entries, used when the schema is replaced.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Statistics of the cache: hits, misses, evictions and size
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.size());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("hitRate", stats.hitRate());
+
+        return result;
+    }
+
+    private class VersionedProvider implements PreparsedDocumentProvider {
+        private final long schemaVersion;
+
+        private VersionedProvider(long schemaVersion) {
+            this.schemaVersion = schemaVersion;
+        }
+
+        @Override
+        public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+            Key key = new Key(executionInput.getQuery(), schemaVersion);
+            PreparsedDocumentEntry entry = cache.getIfPresent(key);
+            if (entry != null) {
+                return entry;
+            }
+
+            entry = parseAndValidateFunction.apply(executionInput);
+            // Invalid documents are not cached, otherwise any client could fill the cache with garbage
+            if (!entry.hasErrors()) {
+                cache.put(key, entry);
+            }
+
+            return entry;
+        }
+    }
+
+    private static final class Key {
+        private final String query;
+        private final long schemaVersion;
+
+        private Key(String query, long schemaVersion) {
+            this.query = query;
+            this.schemaVersion = schemaVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return schemaVersion == other.schemaVersion && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, schemaVersion);
+        }
+    }
+}
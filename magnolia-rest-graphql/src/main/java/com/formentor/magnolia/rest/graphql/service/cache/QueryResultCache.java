@@ -0,0 +1,215 @@
+package com.formentor.magnolia.rest.graphql.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import info.magnolia.cms.util.ObservationUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.jcr.observation.EventListener;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the results of the queries of the fields tagged with @definition or @delivery.
+ *
+ * The cache keeps the identifiers of the nodes, not the nodes, because JCR nodes belong to the session of the request.
+ * Entries are bounded by the number of identifiers and by time, and they are invalidated by a JCR observation listener
+ * registered for the workspace and rootPath of the cached queries, so any change below the rootPath removes just the
+ * entries of that workspace and rootPath.
+ * The observation events are delivered after the changes are saved, so the changes saved by the module, i.e.
+ * mutations, invalidate the entries at once with invalidatePath().
+ */
+@Slf4j
+public class QueryResultCache {
+
+    private final Cache<Key, List<String>> cache;
+    private final Map<Scope, EventListener> listeners = new ConcurrentHashMap<>();
+    // Incremented on every invalidation, results of queries started before an invalidation are not cached
+    private final Map<Scope, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxIdentifiers Maximum number of identifiers kept in the cache
+     * @param ttlSeconds     Time to live of the entries
+     */
+    public QueryResultCache(long maxIdentifiers, long ttlSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxIdentifiers)
+                .weigher((Key key, List<String> identifiers) -> identifiers.size() + 1)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Identifiers of the results of the query or null if they are not cached
+     * @param key
+     * @return
+     */
+    public List<String> get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Must be called before executing the query whose results will be cached
+     *
+     * The first time a workspace and rootPath are queried, a listener is registered to invalidate them.
+     * @param key
+     * @return generation of the workspace and rootPath to pass to put()
+     */
+    public long prepare(Key key) {
+        Scope scope = new Scope(key.workspace, key.rootPath);
+        listeners.computeIfAbsent(scope, this::registerListener);
+        return generations.computeIfAbsent(scope, s -> new AtomicLong()).get();
+    }
+
+    /**
+     * Caches the identifiers of the results of the query
+     *
+     * The results are discarded if the workspace and rootPath changed while the query was executed.
+     * @param key
+     * @param identifiers
+     * @param generation returned by prepare() before executing the query
+     */
+    public void put(Key key, List<String> identifiers, long generation) {
+        AtomicLong current = generations.get(new Scope(key.workspace, key.rootPath));
+        if (current != null && current.get() == generation) {
+            cache.put(key, identifiers);
+        }
+    }
+
+    /**
+     * Removes the entries of the workspace and rootPath
+     */
+    public void invalidate(String workspace, String rootPath) {
+        Scope scope = new Scope(workspace, rootPath);
+        generations.computeIfAbsent(scope, s -> new AtomicLong()).incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> scope.equals(new Scope(key.workspace, key.rootPath)));
+    }
+
+    /**
+     * Removes the entries of the workspace whose rootPath contains the path or is below it
+     *
+     * @param workspace workspace of the changes
+     * @param path      path of the node changed, or of a node whose subtree contains all the nodes changed
+     */
+    public void invalidatePath(String workspace, String path) {
+        String changedPath = (path == null)? "/": path;
+        for (Scope scope: generations.keySet()) {
+            if (scope.workspace.equals(workspace) && (isSelfOrBelow(changedPath, scope.rootPath) || isSelfOrBelow(scope.rootPath, changedPath))) {
+                invalidate(scope.workspace, scope.rootPath);
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries and the observation listeners
+     */
+    public void close() {
+        for (Map.Entry<Scope, EventListener> entry: listeners.entrySet()) {
+            ObservationUtil.unregisterChangeListener(entry.getKey().workspace, entry.getValue());
+        }
+        listeners.clear();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Statistics of the cache: hits, misses, evictions, size and number of observed paths
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.size());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("observedPaths", listeners.size());
+
+        return result;
+    }
+
+    private static boolean isSelfOrBelow(String path, String ancestor) {
+        return "/".equals(ancestor) || path.equals(ancestor) || path.startsWith(ancestor + "/");
+    }
+
+    private EventListener registerListener(Scope scope) {
+        EventListener listener = events -> {
+            log.debug("Changes in {}:{}, invalidating cached results", scope.workspace, scope.rootPath);
+            invalidate(scope.workspace, scope.rootPath);
+        };
+        ObservationUtil.registerChangeListener(scope.workspace, scope.rootPath, listener);
+
+        return listener;
+    }
+
+    /**
+     * Key of a query: workspace and rootPath, used for the invalidation, and the rest of the parameters of the query
+     */
+    public static final class Key {
+        private final String workspace;
+        private final String rootPath;
+        private final String parameters;
+
+        /**
+         * @param workspace  Workspace of the query
+         * @param rootPath   Root path of the query
+         * @param parameters Rest of the parameters that change the results: node types, arguments, locale, user...
+         */
+        public Key(String workspace, String rootPath, String parameters) {
+            this.workspace = workspace;
+            this.rootPath = (rootPath == null)? "/": rootPath;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return workspace.equals(other.workspace) && rootPath.equals(other.rootPath) && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(workspace, rootPath, parameters);
+        }
+    }
+
+    private static final class Scope {
+        private final String workspace;
+        private final String rootPath;
+
+        private Scope(String workspace, String rootPath) {
+            this.workspace = workspace;
+            this.rootPath = (rootPath == null)? "/": rootPath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Scope)) {
+                return false;
+            }
+            Scope other = (Scope) o;
+            return workspace.equals(other.workspace) && rootPath.equals(other.rootPath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(workspace, rootPath);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.formentor.magnolia.rest.graphql.service.cache;
+
+import info.magnolia.cms.util.ObservationUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.jcr.observation.EventListener;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time of the last change of the workspaces read by the queries, used as Last-Modified of the responses.
+ *
+ * A workspace is observed since the first time it is read, changes done before are unknown so the time it started
+ * to be observed is taken as its last change.
+ */
+@Slf4j
+public class WorkspaceChanges {
+    private static final String ROOT_PATH = "/";
+
+    private final Map<String, AtomicLong> lastChanges = new ConcurrentHashMap<>();
+    private final Map<String, EventListener> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Time of the last change of the workspaces, the workspaces not observed yet start to be observed
+     *
+     * @param workspaces
+     * @return milliseconds of the last change, 0 if there are no workspaces
+     */
+    public long getLastModified(Collection<String> workspaces) {
+        long lastModified = 0;
+        for (String workspace: workspaces) {
+            lastModified = Math.max(lastModified, lastChanges.computeIfAbsent(workspace, this::observe).get());
+        }
+
+        return lastModified;
+    }
+
+    /**
+     * Unregisters the observation listeners
+     */
+    public void close() {
+        for (Map.Entry<String, EventListener> entry: listeners.entrySet()) {
+            ObservationUtil.unregisterChangeListener(entry.getKey(), entry.getValue());
+        }
+        listeners.clear();
+        lastChanges.clear();
+    }
+
+    private AtomicLong observe(String workspace) {
+        AtomicLong lastChange = new AtomicLong(System.currentTimeMillis());
+        EventListener listener = events -> lastChange.set(System.currentTimeMillis());
+        try {
+            ObservationUtil.registerChangeListener(workspace, ROOT_PATH, listener);
+            listeners.put(workspace, listener);
+        } catch (RuntimeException e) {
+            log.warn("Changes of workspace {} can not be observed", workspace, e);
+        }
+
+        return lastChange;
+    }
+}
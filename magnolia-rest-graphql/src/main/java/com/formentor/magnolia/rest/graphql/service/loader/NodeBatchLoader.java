@@ -0,0 +1,82 @@
+package com.formentor.magnolia.rest.graphql.service.loader;
+
+import info.magnolia.context.MgnlContext;
+import lombok.extern.slf4j.Slf4j;
+import org.dataloader.BatchLoader;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.LongConsumer;
+
+/**
+ * Loads in one batch the nodes referenced by all the fields of a level of the query.
+ *
+ * The keys are grouped by workspace so every workspace is resolved with one session, and the DataLoader
+ * deduplicates the identifiers requested more than once in the same request.
+ * Nodes that do not exist or can not be read are returned as null.
+ */
+@Slf4j
+public class NodeBatchLoader implements BatchLoader<NodeReference, Node> {
+    // Receives the number of nodes loaded by every batch
+    private final LongConsumer nodesLoaded;
+
+    public NodeBatchLoader() {
+        this(count -> { });
+    }
+
+    public NodeBatchLoader(LongConsumer nodesLoaded) {
+        this.nodesLoaded = nodesLoaded;
+    }
+
+    @Override
+    public CompletionStage<List<Node>> load(List<NodeReference> keys) {
+        Map<String, List<NodeReference>> keysByWorkspace = new LinkedHashMap<>();
+        for (NodeReference key: keys) {
+            keysByWorkspace.computeIfAbsent(key.getWorkspace(), workspace -> new ArrayList<>()).add(key);
+        }
+
+        Map<NodeReference, Node> nodes = new HashMap<>();
+        for (Map.Entry<String, List<NodeReference>> entry: keysByWorkspace.entrySet()) {
+            loadWorkspace(entry.getKey(), entry.getValue(), nodes);
+        }
+
+        nodesLoaded.accept(nodes.size());
+
+        // The result must keep the order of the keys
+        List<Node> result = new ArrayList<>(keys.size());
+        for (NodeReference key: keys) {
+            result.add(nodes.get(key));
+        }
+
+        return CompletableFuture.completedFuture(result);
+    }
+
+    private void loadWorkspace(String workspace, List<NodeReference> keys, Map<NodeReference, Node> nodes) {
+        final Session session;
+        try {
+            session = MgnlContext.getJCRSession(workspace);
+        } catch (RepositoryException e) {
+            log.error("Errors getting session of workspace {}", workspace, e);
+            return;
+        }
+
+        for (NodeReference key: keys) {
+            try {
+                nodes.put(key, session.getNodeByIdentifier(key.getIdentifier()));
+            } catch (ItemNotFoundException e) {
+                log.debug("Node {} not found", key);
+            } catch (RepositoryException e) {
+                log.error("Errors getting node {}", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.formentor.magnolia.rest.graphql.service.loader;
+
+import java.util.Objects;
+
+/**
+ * Key of the nodes loaded by NodeBatchLoader: the identifier of a node in a workspace
+ */
+public final class NodeReference {
+    private final String workspace;
+    private final String identifier;
+
+    public NodeReference(String workspace, String identifier) {
+        this.workspace = workspace;
+        this.identifier = identifier;
+    }
+
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NodeReference)) {
+            return false;
+        }
+        NodeReference other = (NodeReference) o;
+        return workspace.equals(other.workspace) && identifier.equals(other.identifier);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(workspace, identifier);
+    }
+
+    @Override
+    public String toString() {
+        return workspace + ":" + identifier;
+    }
+}
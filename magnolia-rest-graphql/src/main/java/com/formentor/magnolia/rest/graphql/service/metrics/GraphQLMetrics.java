@@ -0,0 +1,274 @@
+package com.formentor.magnolia.rest.graphql.service.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated metrics of the executions: timings by operation and by field, JCR queries and nodes materialized.
+ *
+ * The metrics are recorded by the instrumentation of the executions and by the fetchers that query the repository,
+ * and published as an MBean so they can be read by any JMX client without attaching a profiler.
+ * The number of operations is bounded, the operations over the limit are recorded as OTHER_OPERATIONS because
+ * their names are chosen by the clients.
+ * The slowest JCR queries of the slow query log are published too.
+ */
+@Slf4j
+public class GraphQLMetrics implements GraphQLMetricsMBean {
+    public static final String OBJECT_NAME = "com.formentor.magnolia.rest.graphql:type=GraphQLMetrics";
+    public static final String ANONYMOUS_OPERATION = "(anonymous)";
+    public static final String OTHER_OPERATIONS = "(other)";
+
+    private static final int MAX_OPERATIONS = 500;
+    private static final int TOP_SIZE = 10;
+
+    private final Map<String, Timer> operations = new ConcurrentHashMap<>();
+    private final Map<String, Timer> fields = new ConcurrentHashMap<>();
+    private final Timer operationTotals = new Timer();
+    private final Timer jcrQueries = new Timer();
+    private final LongAdder fieldsResolved = new LongAdder();
+    private final LongAdder nodesMaterialized = new LongAdder();
+    private final SlowQueryLog slowQueryLog;
+    private ObjectName registeredName;
+
+    public GraphQLMetrics(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Records an execution of an operation
+     *
+     * @param operationName name of the operation, null if anonymous
+     * @param nanos         time of the execution
+     * @param failed        true if the result has errors
+     * @param fieldCount    number of fields resolved, approximates the size of the result
+     */
+    public void recordOperation(String operationName, long nanos, boolean failed, long fieldCount) {
+        String name = (operationName == null)? ANONYMOUS_OPERATION: operationName;
+        Timer timer = operations.get(name);
+        if (timer == null) {
+            timer = (operations.size() < MAX_OPERATIONS)? operations.computeIfAbsent(name, key -> new Timer()): operations.computeIfAbsent(OTHER_OPERATIONS, key -> new Timer());
+        }
+        timer.record(nanos, failed);
+        operationTotals.record(nanos, failed);
+        fieldsResolved.add(fieldCount);
+    }
+
+    /**
+     * Records the fetch of a field
+     *
+     * @param coordinate "Type.field"
+     * @param nanos      time until the value was fetched, including the asynchronous fetchers
+     * @param failed     true if the fetcher failed
+     */
+    public void recordField(String coordinate, long nanos, boolean failed) {
+        Timer timer = fields.get(coordinate);
+        if (timer == null) {
+            timer = fields.computeIfAbsent(coordinate, key -> new Timer());
+        }
+        timer.record(nanos, failed);
+    }
+
+    /**
+     * Records a query executed in the repository
+     *
+     * @param nanos time of the query
+     */
+    public void recordJcrQuery(long nanos) {
+        jcrQueries.record(nanos, false);
+    }
+
+    /**
+     * Records the nodes read from the repository
+     *
+     * @param count
+     */
+    public void recordNodes(long count) {
+        nodesMaterialized.add(count);
+    }
+
+    /**
+     * Registers the MBean, errors are logged because metrics are not required to run the service
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // Left by a previous instance of the module
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            log.warn("GraphQL metrics can not be registered in JMX", e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean
+     */
+    public void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            log.debug("GraphQL metrics were not registered", e);
+        }
+        registeredName = null;
+    }
+
+    /**
+     * Metrics as a map, for the statistics of the service
+     * @return
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("operations", operationTotals.toMap());
+        result.put("fieldsResolved", fieldsResolved.sum());
+        result.put("jcrQueries", jcrQueries.toMap());
+        result.put("nodesMaterialized", nodesMaterialized.sum());
+        result.put("slowestOperations", top(operations));
+        result.put("slowestFields", top(fields));
+
+        return result;
+    }
+
+    @Override
+    public long getOperations() {
+        return operationTotals.count.sum();
+    }
+
+    @Override
+    public long getOperationErrors() {
+        return operationTotals.errors.sum();
+    }
+
+    @Override
+    public double getOperationMeanMillis() {
+        return operationTotals.meanMillis();
+    }
+
+    @Override
+    public long getOperationMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(operationTotals.maxNanos.get());
+    }
+
+    @Override
+    public long getFieldsResolved() {
+        return fieldsResolved.sum();
+    }
+
+    @Override
+    public long getJcrQueries() {
+        return jcrQueries.count.sum();
+    }
+
+    @Override
+    public double getJcrQueryMeanMillis() {
+        return jcrQueries.meanMillis();
+    }
+
+    @Override
+    public long getNodesMaterialized() {
+        return nodesMaterialized.sum();
+    }
+
+    @Override
+    public String[] getSlowestFields() {
+        return describe(top(fields));
+    }
+
+    @Override
+    public String[] getSlowestOperations() {
+        return describe(top(operations));
+    }
+
+    @Override
+    public String[] getSlowQueries() {
+        return slowQueryLog.getSlowest().stream()
+                .map(query -> query.get("millis") + " ms " + query.get("operationName") + " " + query.get("field") + ": " + query.get("statement"))
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+        fields.clear();
+        operationTotals.reset();
+        jcrQueries.reset();
+        fieldsResolved.reset();
+        nodesMaterialized.reset();
+    }
+
+    /**
+     * Timers with the highest mean time
+     */
+    private static Map<String, Object> top(Map<String, Timer> timers) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        timers.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Timer> entry) -> entry.getValue().meanMillis()).reversed())
+                .limit(TOP_SIZE)
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue().toMap()));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String[] describe(Map<String, Object> timers) {
+        return timers.entrySet().stream()
+                .map(entry -> {
+                    Map<String, Object> timer = (Map<String, Object>) entry.getValue();
+                    return entry.getKey() + ": " + timer.get("meanMillis") + " ms (" + timer.get("count") + ")";
+                })
+                .toArray(String[]::new);
+    }
+
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        private double meanMillis() {
+            long n = count.sum();
+            return (n == 0)? 0: (double) totalNanos.sum() / n / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        private void reset() {
+            count.reset();
+            errors.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", count.sum());
+            result.put("errors", errors.sum());
+            result.put("meanMillis", Math.round(meanMillis() * 100) / 100.0);
+            result.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.formentor.magnolia.rest.graphql.service.metrics;
+
+/**
+ * Metrics of the GraphQL service exposed by JMX as "com.formentor.magnolia.rest.graphql:type=GraphQLMetrics".
+ */
+public interface GraphQLMetricsMBean {
+
+    long getOperations();
+
+    long getOperationErrors();
+
+    double getOperationMeanMillis();
+
+    long getOperationMaxMillis();
+
+    long getFieldsResolved();
+
+    long getJcrQueries();
+
+    double getJcrQueryMeanMillis();
+
+    long getNodesMaterialized();
+
+    /**
+     * Fields with the highest mean time, as "Type.field: mean ms (count)"
+     */
+    String[] getSlowestFields();
+
+    /**
+     * Operations with the highest mean time, as "name: mean ms (count)"
+     */
+    String[] getSlowestOperations();
+
+    /**
+     * JCR queries of the last hour slower than the threshold, as "ms operation field: statement"
+     */
+    String[] getSlowQueries();
+
+    void reset();
+}
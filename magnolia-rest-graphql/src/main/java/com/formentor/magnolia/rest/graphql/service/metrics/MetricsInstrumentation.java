@@ -0,0 +1,142 @@
+package com.formentor.magnolia.rest.graphql.service.metrics;
+
+import com.formentor.magnolia.rest.graphql.service.RequestContext;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the timings of the operations and of the fields in the metrics of the service.
+ *
+ * The time of a field is the time until its value is fetched, so it includes the fetchers running in the executor
+ * and the loads of the DataLoaders. Just the fields that read the repository are timed: root fields, connections,
+ * children, descendants and references. The rest, i.e. properties, are counted but not timed.
+ * If the request asked for tracing, the extension "metrics" of the result has the fields resolved and the JCR queries
+ * and nodes read by the request.
+ */
+public class MetricsInstrumentation extends SimpleInstrumentation {
+    public static final String EXTENSION_metrics = "metrics";
+
+    private static final String CONNECTION_TYPE_SUFFIX = "Connection";
+    private static final Set<String> TIMED_FIELDS = new HashSet<>(Arrays.asList("children", "descendants", "reference", "asset"));
+
+    private final GraphQLMetrics metrics;
+    // "Type.field" of the timed fields by parent type and field, empty for the fields not timed
+    private final Map<GraphQLType, Map<GraphQLFieldDefinition, Optional<String>>> coordinates = new ConcurrentHashMap<>();
+
+    public MetricsInstrumentation(GraphQLMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        Object context = parameters.getExecutionInput().getContext();
+        return new MetricsState((context instanceof RequestContext)? (RequestContext) context: null);
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters) {
+        MetricsState state = parameters.getInstrumentationState();
+        state.operationName = parameters.getExecutionContext().getOperationDefinition().getName();
+        return super.beginExecuteOperation(parameters);
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters) {
+        MetricsState state = parameters.getInstrumentationState();
+        state.fields.increment();
+        DataFetchingEnvironment environment = parameters.getEnvironment();
+        String coordinate = coordinate(environment.getParentType(), parameters.getField(), environment.getGraphQLSchema());
+        if (coordinate == null) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        long start = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted((value, throwable) -> metrics.recordField(coordinate, System.nanoTime() - start, throwable != null));
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult, InstrumentationExecutionParameters parameters) {
+        MetricsState state = parameters.getInstrumentationState();
+        long nanos = System.nanoTime() - state.start;
+        long fields = state.fields.sum();
+        metrics.recordOperation(state.operationName, nanos, !executionResult.getErrors().isEmpty(), fields);
+
+        if (state.context == null || !state.context.isTracing()) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        // JCR queries and nodes are counted for the whole request, that may be a batch
+        Map<String, Object> requestMetrics = new LinkedHashMap<>();
+        requestMetrics.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(nanos));
+        requestMetrics.put("fields", fields);
+        requestMetrics.put("jcrQueries", state.context.getJcrQueries());
+        requestMetrics.put("nodes", state.context.getNodes());
+
+        return CompletableFuture.completedFuture(ExecutionResultImpl.newExecutionResult()
+                .from(executionResult)
+                .addExtension(EXTENSION_metrics, requestMetrics)
+                .build());
+    }
+
+    /**
+     * "Type.field" of the field if it is timed, built the first time the field is fetched
+     * @return null if the field is not timed
+     */
+    private String coordinate(GraphQLType parentType, GraphQLFieldDefinition field, GraphQLSchema schema) {
+        Map<GraphQLFieldDefinition, Optional<String>> fields = coordinates.get(parentType);
+        if (fields == null) {
+            fields = coordinates.computeIfAbsent(parentType, type -> new ConcurrentHashMap<>());
+        }
+        Optional<String> coordinate = fields.get(field);
+        if (coordinate == null) {
+            coordinate = isTimed(parentType, field, schema)? Optional.of(GraphQLTypeUtil.simplePrint(parentType) + "." + field.getName()): Optional.empty();
+            fields.put(field, coordinate);
+        }
+
+        return coordinate.orElse(null);
+    }
+
+    /**
+     * Checks if the fetcher of the field may read the repository
+     */
+    private static boolean isTimed(GraphQLType parentType, GraphQLFieldDefinition field, GraphQLSchema schema) {
+        if (parentType == schema.getQueryType() || parentType == schema.getMutationType() || parentType == schema.getSubscriptionType()) {
+            return true;
+        }
+
+        return TIMED_FIELDS.contains(field.getName()) || GraphQLTypeUtil.unwrapAll(field.getType()).getName().endsWith(CONNECTION_TYPE_SUFFIX);
+    }
+
+    private static final class MetricsState implements InstrumentationState {
+        private final long start = System.nanoTime();
+        private final LongAdder fields = new LongAdder();
+        private final RequestContext context;
+        private volatile String operationName;
+
+        private MetricsState(RequestContext context) {
+            this.context = context;
+        }
+    }
+}
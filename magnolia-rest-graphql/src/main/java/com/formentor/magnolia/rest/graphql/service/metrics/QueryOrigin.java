@@ -0,0 +1,57 @@
+package com.formentor.magnolia.rest.graphql.service.metrics;
+
+import com.google.common.hash.Hashing;
+import graphql.language.AstPrinter;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetchingEnvironment;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GraphQL operation and field whose fetcher runs a JCR query, so a slow JCR query can be traced back to them.
+ *
+ * The hash of the operation is computed only when it is requested, i.e. for the slow queries.
+ */
+public class QueryOrigin {
+    private final OperationDefinition operation;
+    private final String fieldPath;
+
+    private QueryOrigin(OperationDefinition operation, String fieldPath) {
+        this.operation = operation;
+        this.fieldPath = fieldPath;
+    }
+
+    /**
+     * Origin of the queries of the fetcher of the environment
+     * @param dataFetchingEnvironment
+     * @return
+     */
+    public static QueryOrigin of(DataFetchingEnvironment dataFetchingEnvironment) {
+        return new QueryOrigin(dataFetchingEnvironment.getOperationDefinition(), dataFetchingEnvironment.getExecutionStepInfo().getPath().toString());
+    }
+
+    /**
+     * Name of the operation, null if anonymous
+     * @return
+     */
+    public String getOperationName() {
+        return (operation == null)? null: operation.getName();
+    }
+
+    /**
+     * sha256 of the operation printed in its normalised form, so the same operation gets the same hash whatever
+     * the formatting of the query sent by the client
+     * @return
+     */
+    public String getQueryHash() {
+        return (operation == null)? null: Hashing.sha256().hashString(AstPrinter.printAst(operation), StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Path of the field in the result, i.e. "/tours_ql_connection"
+     * @return
+     */
+    public String getFieldPath() {
+        return fieldPath;
+    }
+}
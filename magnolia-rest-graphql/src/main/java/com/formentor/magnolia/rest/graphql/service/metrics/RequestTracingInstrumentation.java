@@ -0,0 +1,66 @@
+package com.formentor.magnolia.rest.graphql.service.metrics;
+
+import com.formentor.magnolia.rest.graphql.service.RequestContext;
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.execution.instrumentation.tracing.TracingInstrumentation;
+import graphql.language.Document;
+import graphql.validation.ValidationError;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Apollo tracing of the requests that ask for it, returned in the extension "tracing" of the result.
+ *
+ * Tracing records every field of the request, so it is enabled per request and not for all of them.
+ */
+public class RequestTracingInstrumentation extends TracingInstrumentation {
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        Object context = parameters.getExecutionInput().getContext();
+        if (context instanceof RequestContext && ((RequestContext) context).isTracing()) {
+            return super.createState(parameters);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult, InstrumentationExecutionParameters parameters) {
+        if (parameters.getInstrumentationState() == null) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        return super.instrumentExecutionResult(executionResult, parameters);
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters) {
+        if (parameters.getInstrumentationState() == null) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        return super.beginFieldFetch(parameters);
+    }
+
+    @Override
+    public InstrumentationContext<Document> beginParse(InstrumentationExecutionParameters parameters) {
+        if (parameters.getInstrumentationState() == null) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        return super.beginParse(parameters);
+    }
+
+    @Override
+    public InstrumentationContext<List<ValidationError>> beginValidation(InstrumentationValidationParameters parameters) {
+        if (parameters.getInstrumentationState() == null) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        return super.beginValidation(parameters);
+    }
+}
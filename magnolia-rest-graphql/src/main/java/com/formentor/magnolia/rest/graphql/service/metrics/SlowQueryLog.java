@@ -0,0 +1,161 @@
+package com.formentor.magnolia.rest.graphql.service.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Log of the JCR queries of the fetchers slower than a threshold.
+ *
+ * Every slow query is logged with the GraphQL operation and field that ran it, the JCR-SQL2 statement, the plan of
+ * the repository, the number of results and the time spent. The slowest queries of the last hour are kept to be
+ * listed by the endpoint.
+ *
+ * The plan is requested with "explain" once the query is known to be slow, so the queries under the threshold have
+ * no overhead. Repositories that do not support "explain", i.e. Jackrabbit 2, have no plan.
+ */
+@Slf4j
+public class SlowQueryLog {
+    public static final String PLAN_NOT_AVAILABLE = "(not available)";
+
+    private static final long WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String EXPLAIN = "explain ";
+    private static final String COLUMN_plan = "plan";
+
+    // Read for every query, so changes of the configuration are applied at once
+    private final IntSupplier thresholdMillis;
+    private final IntSupplier size;
+    // Guarded by itself, sorted by time descending
+    private final List<SlowQuery> slowest = new ArrayList<>();
+
+    /**
+     * @param thresholdMillis min time of the queries logged, 0 or lower disables the log
+     * @param size            number of slowest queries kept
+     */
+    public SlowQueryLog(IntSupplier thresholdMillis, IntSupplier size) {
+        this.thresholdMillis = thresholdMillis;
+        this.size = size;
+    }
+
+    /**
+     * Logs the query if it is slower than the threshold
+     *
+     * @param origin      operation and field that ran the query, may be null
+     * @param session     session that ran the query
+     * @param query       query executed
+     * @param resultCount number of results read
+     * @param nanos       time of the execution and the read of the results
+     */
+    public void record(QueryOrigin origin, Session session, Query query, long resultCount, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int threshold = thresholdMillis.getAsInt();
+        if (threshold <= 0 || millis < threshold) {
+            return;
+        }
+
+        SlowQuery slowQuery = new SlowQuery(
+                System.currentTimeMillis(),
+                (origin == null)? null: origin.getOperationName(),
+                (origin == null)? null: origin.getQueryHash(),
+                (origin == null)? null: origin.getFieldPath(),
+                session.getWorkspace().getName(),
+                query.getStatement(),
+                explain(session, query),
+                resultCount,
+                millis);
+        log.warn("Slow JCR query of GraphQL operation {} ({}) field {}: {} ms, {} results, statement [{}], plan [{}]",
+                slowQuery.operationName, slowQuery.queryHash, slowQuery.fieldPath, millis, resultCount, slowQuery.statement, slowQuery.plan);
+
+        synchronized (slowest) {
+            removeExpired();
+            slowest.add(slowQuery);
+            slowest.sort(Comparator.comparingLong((SlowQuery entry) -> entry.millis).reversed());
+            int maxSize = Math.max(1, size.getAsInt());
+            while (slowest.size() > maxSize) {
+                slowest.remove(slowest.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Slowest queries of the last hour, the slowest first
+     * @return
+     */
+    public List<Map<String, Object>> getSlowest() {
+        synchronized (slowest) {
+            removeExpired();
+            return slowest.stream().map(SlowQuery::toMap).collect(Collectors.toList());
+        }
+    }
+
+    private void removeExpired() {
+        long oldest = System.currentTimeMillis() - WINDOW_MILLIS;
+        slowest.removeIf(entry -> entry.timestamp < oldest);
+    }
+
+    private static String explain(Session session, Query query) {
+        try {
+            Query explain = session.getWorkspace().getQueryManager().createQuery(EXPLAIN + query.getStatement(), query.getLanguage());
+            RowIterator rows = explain.execute().getRows();
+            if (rows.hasNext()) {
+                Row row = rows.nextRow();
+                return row.getValue(COLUMN_plan).getString();
+            }
+        } catch (RepositoryException | RuntimeException e) {
+            log.debug("Plan of query [{}] is not available", query.getStatement(), e);
+        }
+        return PLAN_NOT_AVAILABLE;
+    }
+
+    private static final class SlowQuery {
+        private final long timestamp;
+        private final String operationName;
+        private final String queryHash;
+        private final String fieldPath;
+        private final String workspace;
+        private final String statement;
+        private final String plan;
+        private final long resultCount;
+        private final long millis;
+
+        private SlowQuery(long timestamp, String operationName, String queryHash, String fieldPath, String workspace,
+                          String statement, String plan, long resultCount, long millis) {
+            this.timestamp = timestamp;
+            this.operationName = operationName;
+            this.queryHash = queryHash;
+            this.fieldPath = fieldPath;
+            this.workspace = workspace;
+            this.statement = statement;
+            this.plan = plan;
+            this.resultCount = resultCount;
+            this.millis = millis;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("time", new Date(timestamp).toInstant().toString());
+            result.put("operationName", operationName);
+            result.put("queryHash", queryHash);
+            result.put("field", fieldPath);
+            result.put("workspace", workspace);
+            result.put("statement", statement);
+            result.put("plan", plan);
+            result.put("resultCount", resultCount);
+            result.put("millis", millis);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.formentor.magnolia.rest.graphql.service.mutation;
+
+import com.formentor.magnolia.rest.graphql.type.NodeMap;
+import info.magnolia.jcr.util.NodeTypes;
+import info.magnolia.jcr.util.PropertyUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates, updates and deletes the nodes of a field tagged with @definition.
+ *
+ * Every mutation is applied with the session of the request, so the permissions of the user are checked by the
+ * repository, and saved once: a single change saves its node and a batch of changes saves all of them or none.
+ * The changes with the "lastModified" read by the client fail with CONFLICT if the node was modified meanwhile.
+ */
+public class ContentMutations {
+    public static final String ARG_path = "path";
+    public static final String ARG_data = "data";
+    public static final String ARG_lastModified = "lastModified";
+    public static final String ARG_changes = "changes";
+    public static final String CHANGE_operation = "operation";
+
+    public static final String OPERATION_CREATE = "CREATE";
+    public static final String OPERATION_UPDATE = "UPDATE";
+    public static final String OPERATION_DELETE = "DELETE";
+
+    public static final String RESULT_created = "created";
+    public static final String RESULT_updated = "updated";
+    public static final String RESULT_deleted = "deleted";
+
+    private static final String ROOT_PATH = "/";
+
+    private final String rootPath;
+    // Primary type of the nodes created
+    private final String nodeType;
+
+    /**
+     * @param rootPath  Path of the root node, the nodes changed must be below it
+     * @param nodeTypes List of node types of the field, the first one is the type of the nodes created
+     */
+    public ContentMutations(String rootPath, List<String> nodeTypes) {
+        this.rootPath = (rootPath == null || ROOT_PATH.equals(rootPath))? "": StringUtils.removeEnd(rootPath, "/");
+        this.nodeType = (nodeTypes == null || nodeTypes.isEmpty())? NodeTypes.Content.NAME: nodeTypes.get(0);
+    }
+
+    /**
+     * Creates the node with the properties of data, its parent must exist
+     * @return node created
+     */
+    public Node create(Session session, String path, Map<String, Object> data) throws MutationException, RepositoryException {
+        return inTransaction(session, () -> doCreate(session, path, data));
+    }
+
+    /**
+     * Sets the properties of data, a property whose value is null is removed and the rest are not changed
+     * @param lastModified mgnl:lastModified read by the client, null to skip the check
+     * @return node updated
+     */
+    public Node update(Session session, String path, Map<String, Object> data, String lastModified) throws MutationException, RepositoryException {
+        return inTransaction(session, () -> doUpdate(session, path, data, lastModified));
+    }
+
+    /**
+     * Removes the node and its children
+     * @param lastModified mgnl:lastModified read by the client, null to skip the check
+     */
+    public boolean delete(Session session, String path, String lastModified) throws MutationException, RepositoryException {
+        return inTransaction(session, () -> {
+            doDelete(session, path, lastModified);
+            return true;
+        });
+    }
+
+    /**
+     * Applies the changes in order and saves them at once, if a change fails none is saved
+     *
+     * @param changes    operation, path, data and lastModified of every change
+     * @param maxChanges max number of changes, 0 is unlimited
+     * @return number of nodes created, updated and deleted
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> apply(Session session, List<Map<String, Object>> changes, int maxChanges) throws MutationException, RepositoryException {
+        if (maxChanges > 0 && changes.size() > maxChanges) {
+            throw new MutationException("Too many changes, the max is " + maxChanges, MutationException.CODE_TOO_MANY_CHANGES, null);
+        }
+
+        return inTransaction(session, () -> {
+            int created = 0;
+            int updated = 0;
+            int deleted = 0;
+            for (Map<String, Object> change: changes) {
+                String path = (String) change.get(ARG_path);
+                Map<String, Object> data = (Map<String, Object>) change.get(ARG_data);
+                String lastModified = (String) change.get(ARG_lastModified);
+                switch (String.valueOf(change.get(CHANGE_operation))) {
+                    case OPERATION_CREATE:
+                        doCreate(session, path, data);
+                        created++;
+                        break;
+                    case OPERATION_UPDATE:
+                        doUpdate(session, path, data, lastModified);
+                        updated++;
+                        break;
+                    case OPERATION_DELETE:
+                        doDelete(session, path, lastModified);
+                        deleted++;
+                        break;
+                    default:
+                        throw new MutationException("Unknown operation " + change.get(CHANGE_operation), MutationException.CODE_NOT_ALLOWED, path);
+                }
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put(RESULT_created, created);
+            result.put(RESULT_updated, updated);
+            result.put(RESULT_deleted, deleted);
+            return result;
+        });
+    }
+
+    private Node doCreate(Session session, String path, Map<String, Object> data) throws MutationException, RepositoryException {
+        checkPath(path);
+        if (session.nodeExists(path)) {
+            throw new MutationException("Node " + path + " already exists", MutationException.CODE_ALREADY_EXISTS, path);
+        }
+        String parentPath = StringUtils.defaultIfEmpty(StringUtils.substringBeforeLast(path, "/"), ROOT_PATH);
+        if (!session.nodeExists(parentPath)) {
+            throw new MutationException("Parent of node " + path + " not found", MutationException.CODE_NOT_FOUND, path);
+        }
+
+        Node node = session.getNode(parentPath).addNode(StringUtils.substringAfterLast(path, "/"), nodeType);
+        NodeTypes.Created.set(node);
+        setProperties(node, data);
+        NodeTypes.LastModified.update(node);
+        return node;
+    }
+
+    private Node doUpdate(Session session, String path, Map<String, Object> data, String lastModified) throws MutationException, RepositoryException {
+        Node node = getNode(session, path, lastModified);
+        setProperties(node, data);
+        NodeTypes.LastModified.update(node);
+        return node;
+    }
+
+    private void doDelete(Session session, String path, String lastModified) throws MutationException, RepositoryException {
+        getNode(session, path, lastModified).remove();
+    }
+
+    /**
+     * Existing node of the path, checking it was not modified since the client read it
+     */
+    private Node getNode(Session session, String path, String lastModified) throws MutationException, RepositoryException {
+        checkPath(path);
+        if (!session.nodeExists(path)) {
+            throw new MutationException("Node " + path + " not found", MutationException.CODE_NOT_FOUND, path);
+        }
+        Node node = session.getNode(path);
+        if (lastModified != null && !lastModified.equals(NodeMap.getLastModified(node))) {
+            throw new MutationException("Node " + path + " was modified after " + lastModified, MutationException.CODE_CONFLICT, path);
+        }
+        return node;
+    }
+
+    /**
+     * The path must be absolute, normalized and below rootPath
+     */
+    private void checkPath(String path) throws MutationException {
+        boolean valid = path != null
+                && path.startsWith(rootPath + "/")
+                && path.length() > rootPath.length() + 1
+                && !path.endsWith("/")
+                && !path.contains("//")
+                && !path.contains("/./") && !path.contains("/../")
+                && !path.endsWith("/.") && !path.endsWith("/..");
+        if (!valid) {
+            throw new MutationException("Path " + path + " is not below " + StringUtils.defaultIfEmpty(rootPath, ROOT_PATH), MutationException.CODE_INVALID_PATH, path);
+        }
+    }
+
+    private static void setProperties(Node node, Map<String, Object> data) throws RepositoryException {
+        if (data == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry: data.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                if (node.hasProperty(entry.getKey())) {
+                    node.getProperty(entry.getKey()).remove();
+                }
+                continue;
+            }
+            // JCR has no int nor float properties
+            if (value instanceof Integer) {
+                value = ((Integer) value).longValue();
+            } else if (value instanceof Float) {
+                value = ((Float) value).doubleValue();
+            }
+            PropertyUtil.setProperty(node, entry.getKey(), value);
+        }
+    }
+
+    /**
+     * Runs the changes and saves the session, the changes are discarded if they fail
+     */
+    private static <T> T inTransaction(Session session, Changes<T> changes) throws MutationException, RepositoryException {
+        boolean saved = false;
+        try {
+            T result = changes.apply();
+            session.save();
+            saved = true;
+            return result;
+        } catch (InvalidItemStateException e) {
+            // Another session saved the same nodes meanwhile
+            throw new MutationException("Nodes were modified by another session: " + e.getMessage(), MutationException.CODE_CONFLICT, null);
+        } finally {
+            if (!saved) {
+                session.refresh(false);
+            }
+        }
+    }
+
+    private interface Changes<T> {
+        T apply() throws MutationException, RepositoryException;
+    }
+}
@@ -0,0 +1,35 @@
+package com.formentor.magnolia.rest.graphql.service.mutation;
+
+/**
+ * Errors of the mutations of contents, the code is returned in the extensions of the error so the client knows if
+ * it has to read the node again.
+ */
+public class MutationException extends Exception {
+    public static final String CODE_NOT_FOUND = "NOT_FOUND";
+    public static final String CODE_ALREADY_EXISTS = "ALREADY_EXISTS";
+    public static final String CODE_CONFLICT = "CONFLICT";
+    public static final String CODE_INVALID_PATH = "INVALID_PATH";
+    public static final String CODE_TOO_MANY_CHANGES = "TOO_MANY_CHANGES";
+    public static final String CODE_NOT_ALLOWED = "NOT_ALLOWED";
+
+    private final String code;
+    private final String path;
+
+    public MutationException(String message, String code, String path) {
+        super(message);
+        this.code = code;
+        this.path = path;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Path of the node whose change failed, null if the error is not about a node
+     * @return
+     */
+    public String getPath() {
+        return path;
+    }
+}
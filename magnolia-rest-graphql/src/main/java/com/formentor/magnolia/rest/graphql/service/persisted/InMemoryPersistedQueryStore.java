@@ -0,0 +1,39 @@
+package com.formentor.magnolia.rest.graphql.service.persisted;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Persisted queries kept in memory, they are lost on restart and the clients register them again.
+ *
+ * Bounded by the number of characters of the queries, the least recently used are evicted.
+ */
+public class InMemoryPersistedQueryStore implements PersistedQueryStore {
+    private static final long DEFAULT_MAX_WEIGHT = 4 * 1024 * 1024;
+
+    private final Cache<String, String> queries;
+
+    public InMemoryPersistedQueryStore() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * @param maxWeight Maximum number of characters of query text kept in memory
+     */
+    public InMemoryPersistedQueryStore(long maxWeight) {
+        this.queries = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String hash, String query) -> query.length())
+                .build();
+    }
+
+    @Override
+    public String get(String hash) {
+        return queries.getIfPresent(hash);
+    }
+
+    @Override
+    public void put(String hash, String query) {
+        queries.put(hash, query);
+    }
+}
@@ -0,0 +1,150 @@
+package com.formentor.magnolia.rest.graphql.service.persisted;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import info.magnolia.cms.security.User;
+import info.magnolia.context.MgnlContext;
+import info.magnolia.jcr.util.NodeTypes;
+import info.magnolia.jcr.util.NodeUtil;
+import info.magnolia.jcr.util.PropertyUtil;
+import info.magnolia.repository.RepositoryConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisted queries stored in the workspace "config", so they survive restarts and are shared by the instances
+ * of a cluster.
+ *
+ *      /modules/magnolia-rest-graphql/persistedQueries/<sha256>@query
+ *
+ * Queries read from the repository are kept in memory, a query never changes for the same hash. Hashes not found are
+ * also kept for a while, so unknown hashes do not read the repository on every request.
+ * The repository holds at most maxQueries queries, the queries registered beyond it are kept just in memory.
+ * With registrationRole just the users with the role persist queries in the repository.
+ *
+ *      persistedQueryStore:
+ *        class: com.formentor.magnolia.rest.graphql.service.persisted.JcrPersistedQueryStore
+ *        maxQueries: 1000
+ *        registrationRole: graphql-editor
+ */
+@Slf4j
+public class JcrPersistedQueryStore implements PersistedQueryStore {
+    private static final String ROOT_PATH = "/modules/magnolia-rest-graphql/persistedQueries";
+    private static final String PROPERTY_query = "query";
+    private static final long MAX_WEIGHT = 4 * 1024 * 1024;
+    // Hashes not found, the registrations of other instances of the cluster are seen after the expiration
+    private static final long MAX_MISSES = 10000;
+    private static final long MISS_TTL_SECONDS = 60;
+
+    private final Cache<String, String> queries = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_WEIGHT)
+            .weigher((String hash, String query) -> query.length())
+            .build();
+    private final Cache<String, Boolean> misses = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MISSES)
+            .expireAfterWrite(MISS_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private int maxQueries = 1000;
+    private String registrationRole;
+
+    @Override
+    public String get(String hash) {
+        String query = queries.getIfPresent(hash);
+        if (query != null || misses.getIfPresent(hash) != null) {
+            return query;
+        }
+
+        try {
+            query = MgnlContext.doInSystemContext(() -> {
+                Session session = MgnlContext.getJCRSession(RepositoryConstants.CONFIG);
+                String path = ROOT_PATH + "/" + hash;
+                return session.nodeExists(path)? PropertyUtil.getString(session.getNode(path), PROPERTY_query): null;
+            });
+        } catch (RepositoryException e) {
+            log.error("Errors reading persisted query {}", hash, e);
+            return null;
+        }
+        if (query != null) {
+            queries.put(hash, query);
+        } else {
+            misses.put(hash, Boolean.TRUE);
+        }
+
+        return query;
+    }
+
+    @Override
+    public void put(String hash, String query) {
+        queries.put(hash, query);
+        misses.invalidate(hash);
+        if (!canRegister()) {
+            return;
+        }
+
+        try {
+            MgnlContext.doInSystemContext(() -> {
+                Session session = MgnlContext.getJCRSession(RepositoryConstants.CONFIG);
+                Node root = NodeUtil.createPath(session.getRootNode(), StringUtils.removeStart(ROOT_PATH, "/"), NodeTypes.Content.NAME);
+                if (root.hasNode(hash)) {
+                    return null;
+                }
+                if (countQueries(root) >= maxQueries) {
+                    log.warn("Persisted query {} is kept just in memory, the repository holds {} queries already", hash, maxQueries);
+                    return null;
+                }
+                root.addNode(hash, NodeTypes.Content.NAME).setProperty(PROPERTY_query, query);
+                session.save();
+                return null;
+            });
+        } catch (RepositoryException e) {
+            log.error("Errors persisting query {}", hash, e);
+        }
+    }
+
+    public int getMaxQueries() {
+        return maxQueries;
+    }
+
+    public void setMaxQueries(int maxQueries) {
+        this.maxQueries = maxQueries;
+    }
+
+    public String getRegistrationRole() {
+        return registrationRole;
+    }
+
+    public void setRegistrationRole(String registrationRole) {
+        this.registrationRole = registrationRole;
+    }
+
+    /**
+     * Checks if the user of the request can persist queries in the repository
+     */
+    private boolean canRegister() {
+        if (StringUtils.isEmpty(registrationRole)) {
+            return true;
+        }
+        User user = MgnlContext.hasInstance()? MgnlContext.getUser(): null;
+        return user != null && user.hasRole(registrationRole);
+    }
+
+    private static long countQueries(Node root) throws RepositoryException {
+        NodeIterator nodes = root.getNodes();
+        long size = nodes.getSize();
+        if (size == -1) {
+            size = 0;
+            while (nodes.hasNext()) {
+                nodes.skip(1);
+                size++;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,115 @@
+package com.formentor.magnolia.rest.graphql.service.persisted;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Automatic persisted queries.
+ *
+ * The client sends the sha256 of the query in the extensions of the request instead of the query
+ *      { "extensions": { "persistedQuery": { "version": 1, "sha256Hash": "ecf4edb4..." } } }
+ * If the query is not persisted yet the error PERSISTED_QUERY_NOT_FOUND is returned, and the client sends the request
+ * again with the query and the hash, so the query is persisted for the next requests.
+ * The query is persisted by register() once it has been parsed and validated, so requests with invalid queries do
+ * not fill the store.
+ */
+public class PersistedQueries {
+    public static final String EXTENSION_persistedQuery = "persistedQuery";
+    public static final String PERSISTED_QUERY_version = "version";
+    public static final String PERSISTED_QUERY_sha256Hash = "sha256Hash";
+    private static final int VERSION = 1;
+    // Hashes are used as keys of the stores, i.e. names of nodes, so just sha256 in hexadecimal are accepted
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final PersistedQueryStore store;
+
+    public PersistedQueries(PersistedQueryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * sha256 of the query in hexadecimal, as sent by the clients
+     * @param query
+     * @return
+     */
+    public static String hash(String query) {
+        return Hashing.sha256().hashString(query, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Text of the query of the request
+     *
+     * @param query      query of the request, may be null if the request sends just the hash
+     * @param extensions extensions of the request
+     * @return the query of the request, or the query persisted for the hash
+     * @throws PersistedQueryException if the hash is unknown or does not match the query
+     */
+    public String resolve(String query, Map<String, Object> extensions) throws PersistedQueryException {
+        String hash = getHash(extensions);
+        if (hash == null) {
+            return query;
+        }
+
+        if (query == null || query.isEmpty()) {
+            String persisted = store.get(hash);
+            if (persisted == null) {
+                throw new PersistedQueryException("PersistedQueryNotFound", PersistedQueryException.CODE_NOT_FOUND);
+            }
+            return persisted;
+        }
+
+        // Just the queries whose hash is verified are persisted, otherwise a client could replace the query of a hash
+        if (!hash(query).equals(hash)) {
+            throw new PersistedQueryException("provided sha does not match query", PersistedQueryException.CODE_HASH_MISMATCH);
+        }
+
+        return query;
+    }
+
+    /**
+     * Persists the query sent along with its hash, must be called once the query has been parsed and validated
+     *
+     * @param query      query of the request, resolved by resolve()
+     * @param extensions extensions of the request
+     */
+    public void register(String query, Map<String, Object> extensions) {
+        String hash;
+        try {
+            hash = getHash(extensions);
+        } catch (PersistedQueryException e) {
+            return;
+        }
+        if (hash == null || query == null || query.isEmpty() || !hash(query).equals(hash)) {
+            return;
+        }
+        // The query is persisted already when the request sent just the hash
+        if (store.get(hash) == null) {
+            store.put(hash, query);
+        }
+    }
+
+    /**
+     * Hash of the extension "persistedQuery" of the request
+     *
+     * @return null if the request does not use persisted queries
+     * @throws PersistedQueryException if the version or the hash are not supported
+     */
+    @SuppressWarnings("unchecked")
+    private static String getHash(Map<String, Object> extensions) throws PersistedQueryException {
+        Object persistedQuery = (extensions == null)? null: extensions.get(EXTENSION_persistedQuery);
+        if (!(persistedQuery instanceof Map)) {
+            return null;
+        }
+        Map<String, Object> parameters = (Map<String, Object>) persistedQuery;
+        Object version = parameters.get(PERSISTED_QUERY_version);
+        Object hash = parameters.get(PERSISTED_QUERY_sha256Hash);
+        if (!(version instanceof Number) || ((Number) version).intValue() != VERSION || !(hash instanceof String)
+                || !SHA256.matcher((String) hash).matches()) {
+            throw new PersistedQueryException("PersistedQueryNotSupported", PersistedQueryException.CODE_NOT_SUPPORTED);
+        }
+        return (String) hash;
+    }
+}
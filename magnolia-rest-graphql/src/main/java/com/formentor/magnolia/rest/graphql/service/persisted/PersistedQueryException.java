@@ -0,0 +1,22 @@
+package com.formentor.magnolia.rest.graphql.service.persisted;
+
+/**
+ * Errors of the protocol of persisted queries, the code is returned in the extensions of the error so the client
+ * knows it has to send the full query.
+ */
+public class PersistedQueryException extends Exception {
+    public static final String CODE_NOT_FOUND = "PERSISTED_QUERY_NOT_FOUND";
+    public static final String CODE_HASH_MISMATCH = "PERSISTED_QUERY_HASH_MISMATCH";
+    public static final String CODE_NOT_SUPPORTED = "PERSISTED_QUERY_NOT_SUPPORTED";
+
+    private final String code;
+
+    public PersistedQueryException(String message, String code) {
+        super(message);
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+}
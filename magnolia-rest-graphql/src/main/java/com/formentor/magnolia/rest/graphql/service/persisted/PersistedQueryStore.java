@@ -0,0 +1,26 @@
+package com.formentor.magnolia.rest.graphql.service.persisted;
+
+/**
+ * Store of the texts of the persisted queries by their sha256 hash.
+ *
+ * The implementation is configured in <tt>config:/modules/magnolia-rest-graphql/config/persistedQueryStore</tt>.
+ * Implementations must be thread-safe.
+ */
+public interface PersistedQueryStore {
+
+    /**
+     * Text of the query
+     *
+     * @param hash sha256 of the query, in hexadecimal
+     * @return null if the query is not persisted
+     */
+    String get(String hash);
+
+    /**
+     * Persists the text of the query
+     *
+     * @param hash  sha256 of the query, in hexadecimal
+     * @param query text of the query
+     */
+    void put(String hash, String query);
+}
@@ -0,0 +1,159 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the JCR-SQL2 query of the fields tagged with @definition or @delivery.
+ *
+ * It selects the same nodes as the QueryBuilder of the delivery endpoints (rootPath and nodeTypes) and also accepts
+ * conditions on properties, full-text search and ordering, so the filtering is done by the index of the repository.
+ *
+ *      SELECT * FROM [nt:base] AS t WHERE ISDESCENDANTNODE(t, '/magnolia-travels') AND (t.[jcr:primaryType] = 'mgnl:content')
+ *          AND t.[duration] >= 7 ORDER BY t.[name] ASC
+ */
+public class NodeQueryBuilder {
+    private static final String SELECTOR = "t";
+    // Names of properties accepted in conditions, they are written between brackets in the statement
+    private static final Pattern PROPERTY_NAME = Pattern.compile("[\\w:.\\-]+");
+
+    public enum Operator {
+        EQ("="), NE("<>"), GT(">"), GTE(">="), LT("<"), LTE("<="), LIKE("LIKE");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private String selectorType = "nt:base";
+    private String rootPath;
+    private List<String> nodeTypes = new ArrayList<>();
+    private final List<String> conditions = new ArrayList<>();
+    private final List<String> orderings = new ArrayList<>();
+
+    public static NodeQueryBuilder create() {
+        return new NodeQueryBuilder();
+    }
+
+    public NodeQueryBuilder rootPath(String rootPath) {
+        this.rootPath = rootPath;
+        return this;
+    }
+
+    /**
+     * Selects the nodes of the node type, its subtypes and mixins included, instead of all the nodes
+     * @param nodeType
+     * @return
+     */
+    public NodeQueryBuilder from(String nodeType) {
+        if (nodeType == null || !PROPERTY_NAME.matcher(nodeType).matches()) {
+            throw new IllegalArgumentException("Invalid node type " + nodeType);
+        }
+        this.selectorType = nodeType;
+        return this;
+    }
+
+    public NodeQueryBuilder nodeTypes(List<String> nodeTypes) {
+        this.nodeTypes = (nodeTypes == null)? new ArrayList<>(): nodeTypes;
+        return this;
+    }
+
+    /**
+     * Adds the condition "property operator value"
+     *
+     * @param property name of the property
+     * @param operator comparison operator
+     * @param value    String, Boolean or Number
+     * @return
+     */
+    public NodeQueryBuilder condition(String property, Operator operator, Object value) {
+        conditions.add(property(property) + " " + operator.symbol + " " + literal(value));
+        return this;
+    }
+
+    /**
+     * Adds a full-text search on all the properties of the node
+     * @param text
+     * @return
+     */
+    public NodeQueryBuilder contains(String text) {
+        conditions.add("CONTAINS(" + SELECTOR + ".*, " + quote(text) + ")");
+        return this;
+    }
+
+    public NodeQueryBuilder orderBy(String property, boolean ascending) {
+        orderings.add(property(property) + (ascending? " ASC": " DESC"));
+        return this;
+    }
+
+    /**
+     * JCR-SQL2 statement of the query
+     * @return
+     */
+    public String buildStatement() {
+        List<String> where = new ArrayList<>();
+        if (StringUtils.isNotEmpty(rootPath) && !"/".equals(rootPath)) {
+            where.add("ISDESCENDANTNODE(" + SELECTOR + ", " + quote(rootPath) + ")");
+        }
+        if (!nodeTypes.isEmpty()) {
+            where.add(nodeTypes.stream()
+                    .map(nodeType -> SELECTOR + ".[jcr:primaryType] = " + quote(nodeType))
+                    .collect(Collectors.joining(" OR ", "(", ")")));
+        }
+        where.addAll(conditions);
+
+        StringBuilder statement = new StringBuilder("SELECT * FROM [").append(selectorType).append("] AS ").append(SELECTOR);
+        if (!where.isEmpty()) {
+            statement.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        if (!orderings.isEmpty()) {
+            statement.append(" ORDER BY ").append(String.join(", ", orderings));
+        }
+
+        return statement.toString();
+    }
+
+    /**
+     * Builds the query
+     *
+     * @param session session of the workspace
+     * @return
+     * @throws RepositoryException
+     */
+    public Query build(Session session) throws RepositoryException {
+        return session.getWorkspace().getQueryManager().createQuery(buildStatement(), Query.JCR_SQL2);
+    }
+
+    private static String property(String name) {
+        if (name == null || !PROPERTY_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid property name " + name);
+        }
+        return SELECTOR + ".[" + name + "]";
+    }
+
+    private static String literal(Object value) {
+        if (value instanceof Boolean) {
+            return "CAST(" + quote(value.toString()) + " AS BOOLEAN)";
+        }
+        if (value instanceof Long || value instanceof Integer) {
+            return "CAST(" + quote(value.toString()) + " AS LONG)";
+        }
+        if (value instanceof Number) {
+            return "CAST(" + quote(value.toString()) + " AS DOUBLE)";
+        }
+        return quote(String.valueOf(value));
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
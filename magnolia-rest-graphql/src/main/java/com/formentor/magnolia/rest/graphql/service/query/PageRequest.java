@@ -0,0 +1,136 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import com.formentor.magnolia.rest.graphql.type.Connection;
+import com.formentor.magnolia.rest.graphql.type.Edge;
+import com.formentor.magnolia.rest.graphql.type.PageInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Translates the arguments first/after/last/before of a connection field into the offset and limit of the JCR query.
+ *
+ * Cursors are opaque for the client and contain the position of the item in the results of the query.
+ */
+public class PageRequest {
+    private static final String CURSOR_PREFIX = "offset:";
+    public static final long NO_LIMIT = -1;
+
+    private final long offset;
+    private final long limit;
+    // When the end of the page is not bounded by "before", one more item is read to know if there is a next page
+    private final boolean probeNextPage;
+    // When the end of the page is bounded by "before", there is a next page: the item of the cursor "before"
+    private final boolean boundedByBefore;
+
+    private PageRequest(long offset, long limit, boolean probeNextPage, boolean boundedByBefore) {
+        this.offset = offset;
+        this.limit = limit;
+        this.probeNextPage = probeNextPage;
+        this.boundedByBefore = boundedByBefore;
+    }
+
+    /**
+     * Builds the PageRequest for the arguments of a connection field
+     *
+     * @param first      max number of items after the cursor "after"
+     * @param after      cursor of the item before the page
+     * @param last       max number of items before the cursor "before"
+     * @param before     cursor of the item after the page
+     * @param totalCount number of results of the query, only used for "last" without "before"
+     * @return
+     */
+    public static PageRequest of(Integer first, String after, Integer last, String before, LongSupplier totalCount) {
+        if (first != null && first < 0) {
+            throw new IllegalArgumentException("Argument \"first\" must be a non negative integer");
+        }
+        if (last != null && last < 0) {
+            throw new IllegalArgumentException("Argument \"last\" must be a non negative integer");
+        }
+
+        long start = (after == null)? 0: decodeCursor(after) + 1;
+        long end = (before == null)? NO_LIMIT: decodeCursor(before);
+
+        if (first != null) {
+            end = (end == NO_LIMIT)? start + first: Math.min(end, start + first);
+        }
+        if (last != null) {
+            if (end == NO_LIMIT) {
+                end = totalCount.getAsLong();
+            }
+            start = Math.max(start, end - last);
+        }
+
+        if (end == NO_LIMIT) {
+            return new PageRequest(start, NO_LIMIT, false, false);
+        }
+        boolean boundedByBefore = (before != null);
+        long limit = Math.max(0, end - start);
+
+        return new PageRequest(start, boundedByBefore? limit: limit + 1, !boundedByBefore, boundedByBefore);
+    }
+
+    /**
+     * Offset of the first item of the page in the results of the query
+     * @return
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Max number of items read from the query or NO_LIMIT
+     * @return
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Builds the connection for the items read from the query
+     *
+     * @param items items read with the offset and limit of this PageRequest
+     * @return
+     */
+    public <T> Connection<T> toConnection(List<T> items) {
+        List<T> page = items;
+        boolean hasNextPage = boundedByBefore;
+        if (probeNextPage && items.size() == limit) {
+            hasNextPage = true;
+            page = items.subList(0, items.size() - 1);
+        }
+
+        List<Edge<T>> edges = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            edges.add(new Edge<>(encodeCursor(offset + i), page.get(i)));
+        }
+
+        String startCursor = edges.isEmpty()? null: edges.get(0).getCursor();
+        String endCursor = edges.isEmpty()? null: edges.get(edges.size() - 1).getCursor();
+
+        return new Connection<>(edges, new PageInfo(hasNextPage, offset > 0, startCursor, endCursor));
+    }
+
+    private static String encodeCursor(long position) {
+        return Base64.getEncoder().encodeToString((CURSOR_PREFIX + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        long position;
+        try {
+            String value = new String(Base64.getDecoder().decode(cursor), StandardCharsets.UTF_8);
+            position = value.startsWith(CURSOR_PREFIX)? Long.parseLong(value.substring(CURSOR_PREFIX.length())): -1;
+        } catch (IllegalArgumentException e) {
+            // Not base64 or not a number
+            position = -1;
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+
+        return position;
+    }
+}
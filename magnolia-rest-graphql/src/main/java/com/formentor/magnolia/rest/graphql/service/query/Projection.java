@@ -0,0 +1,50 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
+
+import java.util.List;
+
+/**
+ * What the query selects from the nodes of a field tagged with @definition or @delivery.
+ *
+ * It is computed once per field from the selection set, so the nodes are decorated to read just what is selected.
+ */
+public class Projection {
+    private static final String PROPERTIES_FIELD = "properties";
+    public static final String PROPERTIES_names = "names";
+
+    // System properties (jcr:*, mgnl:*) are only visible through Node.properties
+    private final boolean systemProperties;
+
+    private Projection(boolean systemProperties) {
+        this.systemProperties = systemProperties;
+    }
+
+    /**
+     * Builds the projection for the selection set of the field
+     * @param selectionSet
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static Projection of(DataFetchingFieldSelectionSet selectionSet) {
+        boolean systemProperties = false;
+        for (SelectedField field: selectionSet.getFields()) {
+            if (!PROPERTIES_FIELD.equals(field.getName())) {
+                continue;
+            }
+            List<String> names = (List<String>) field.getArguments().get(PROPERTIES_names);
+            // All the properties or some property with namespace
+            if (names == null || names.stream().anyMatch(name -> name.contains(":") || name.contains("*"))) {
+                systemProperties = true;
+                break;
+            }
+        }
+
+        return new Projection(systemProperties);
+    }
+
+    public boolean includesSystemProperties() {
+        return systemProperties;
+    }
+}
@@ -0,0 +1,167 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import com.formentor.magnolia.rest.graphql.service.query.NodeQueryBuilder.Operator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates the arguments "where" and "orderBy" of the fields tagged with @definition or @delivery into the
+ * conditions and orderings of the JCR query.
+ *
+ * Arguments of fields of a type defined in the schema, i.e. Tour:
+ *      where: { duration_gte: 7, isFeatured: true, name_like: "%Kyoto%", _contains: "temple" }
+ *      orderBy: [{ field: duration, direction: DESC }]
+ * Arguments of fields of type Node, used by the delivery endpoints:
+ *      where: { conditions: [{ property: "location", eq: "Kyoto" }], _contains: "temple" }
+ *      orderBy: [{ property: "name", direction: ASC }]
+ *
+ * The property and operator of each field of the where of a type are recorded by FilterTypes when it generates the
+ * input type, so a property named "price_not" is not read as "price" with the operator NE.
+ */
+public class QueryFilters {
+    public static final String ARG_where   = "where";
+    public static final String ARG_orderBy = "orderBy";
+
+    // Full-text search on all the properties
+    public static final String WHERE_contains = "_contains";
+    // Conditions of the where of Node
+    public static final String WHERE_conditions = "conditions";
+    public static final String CONDITION_property = "property";
+    // Fields of orderBy
+    public static final String ORDER_field     = "field";
+    public static final String ORDER_property  = "property";
+    public static final String ORDER_direction = "direction";
+    public static final String ORDER_DESC      = "DESC";
+
+    /**
+     * Filters of the where types not generated by FilterTypes, every field is a property compared with EQ
+     */
+    public static final QueryFilters DEFAULT = new QueryFilters(Collections.emptyMap());
+
+    /**
+     * Suffixes of the fields of the where input type and their operator, the field without suffix is EQ
+     */
+    public static final Map<String, Operator> SUFFIXES = new LinkedHashMap<>();
+    static {
+        SUFFIXES.put("_not", Operator.NE);
+        SUFFIXES.put("_gte", Operator.GTE);
+        SUFFIXES.put("_gt", Operator.GT);
+        SUFFIXES.put("_lte", Operator.LTE);
+        SUFFIXES.put("_lt", Operator.LT);
+        SUFFIXES.put("_like", Operator.LIKE);
+    }
+
+    /**
+     * Operators of the conditions of Node, named as the fields of PropertyCondition
+     */
+    private static final Map<String, Operator> CONDITION_OPERATORS = new LinkedHashMap<>();
+    static {
+        CONDITION_OPERATORS.put("eq", Operator.EQ);
+        CONDITION_OPERATORS.put("ne", Operator.NE);
+        CONDITION_OPERATORS.put("gt", Operator.GT);
+        CONDITION_OPERATORS.put("gte", Operator.GTE);
+        CONDITION_OPERATORS.put("lt", Operator.LT);
+        CONDITION_OPERATORS.put("lte", Operator.LTE);
+        CONDITION_OPERATORS.put("like", Operator.LIKE);
+    }
+
+    // Field of the where input type -> property and operator
+    private final Map<String, WhereField> whereFields;
+
+    /**
+     * @param whereFields property and operator of the fields of the where input type
+     */
+    public QueryFilters(Map<String, WhereField> whereFields) {
+        this.whereFields = whereFields;
+    }
+
+    /**
+     * Adds the conditions and orderings of the arguments of the field to the query
+     *
+     * @param arguments arguments of the field
+     * @param builder   query of the field
+     */
+    @SuppressWarnings("unchecked")
+    public void apply(Map<String, Object> arguments, NodeQueryBuilder builder) {
+        Map<String, Object> where = (Map<String, Object>) arguments.get(ARG_where);
+        if (where != null) {
+            applyWhere(where, builder);
+        }
+        List<Map<String, Object>> orderBy = (List<Map<String, Object>>) arguments.get(ARG_orderBy);
+        if (orderBy != null) {
+            applyOrderBy(orderBy, builder);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyWhere(Map<String, Object> where, NodeQueryBuilder builder) {
+        for (Map.Entry<String, Object> entry: where.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+
+            if (WHERE_contains.equals(key)) {
+                builder.contains((String) value);
+            } else if (WHERE_conditions.equals(key)) {
+                for (Map<String, Object> condition: (List<Map<String, Object>>) value) {
+                    applyCondition(condition, builder);
+                }
+            } else {
+                applyField(key, value, builder);
+            }
+        }
+    }
+
+    private void applyField(String key, Object value, NodeQueryBuilder builder) {
+        WhereField whereField = whereFields.get(key);
+        if (whereField == null) {
+            builder.condition(key, Operator.EQ, value);
+        } else {
+            builder.condition(whereField.getProperty(), whereField.getOperator(), value);
+        }
+    }
+
+    private static void applyCondition(Map<String, Object> condition, NodeQueryBuilder builder) {
+        String property = (String) condition.get(CONDITION_property);
+        for (Map.Entry<String, Operator> operator: CONDITION_OPERATORS.entrySet()) {
+            Object value = condition.get(operator.getKey());
+            if (value != null) {
+                builder.condition(property, operator.getValue(), value);
+            }
+        }
+    }
+
+    private static void applyOrderBy(List<Map<String, Object>> orderBy, NodeQueryBuilder builder) {
+        for (Map<String, Object> order: orderBy) {
+            Object property = order.containsKey(ORDER_field)? order.get(ORDER_field): order.get(ORDER_property);
+            boolean ascending = !ORDER_DESC.equals(String.valueOf(order.get(ORDER_direction)));
+            builder.orderBy(String.valueOf(property), ascending);
+        }
+    }
+
+    /**
+     * Property and operator of a field of the where input type, i.e. duration_gte is duration GTE
+     */
+    public static final class WhereField {
+        private final String property;
+        private final Operator operator;
+
+        public WhereField(String property, Operator operator) {
+            this.property = property;
+            this.operator = operator;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+    }
+}
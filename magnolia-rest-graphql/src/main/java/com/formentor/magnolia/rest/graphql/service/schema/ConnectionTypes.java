@@ -0,0 +1,139 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.language.FieldDefinition;
+import graphql.language.InputValueDefinition;
+import graphql.language.ListType;
+import graphql.language.NonNullType;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.Type;
+import graphql.language.TypeDefinition;
+import graphql.language.TypeName;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the Relay connection of the list fields of Query.
+ *
+ * For a field
+ *      tours_ql : [Tour] @definition(workspace: "tours")
+ * adds the field and types
+ *      tours_ql_connection(first: Int, after: String, last: Int, before: String) : TourConnection @definition(workspace: "tours")
+ *      type TourConnection { edges: [TourEdge], pageInfo: PageInfo! }
+ *      type TourEdge { cursor: String!, node: Tour }
+ *
+ * The type PageInfo is declared in "schema.graphqls".
+ */
+public class ConnectionTypes {
+    public static final String CONNECTION_FIELD_SUFFIX = "_connection";
+    public static final String ARG_first  = "first";
+    public static final String ARG_after  = "after";
+    public static final String ARG_last   = "last";
+    public static final String ARG_before = "before";
+
+    private static final String QUERY = "Query";
+    private static final String CONNECTION_TYPE_SUFFIX = "Connection";
+    private static final String EDGE_TYPE_SUFFIX = "Edge";
+    private static final String PAGE_INFO_TYPE = "PageInfo";
+
+    // Fields of Query that get a connection
+    private final Predicate<FieldDefinition> isListField;
+
+    public ConnectionTypes(Predicate<FieldDefinition> isListField) {
+        this.isListField = isListField;
+    }
+
+    /**
+     * Checks if the field is a connection generated by this class
+     * @param field
+     * @return
+     */
+    public static boolean isConnectionField(FieldDefinition field) {
+        return field.getName().endsWith(CONNECTION_FIELD_SUFFIX)
+                && field.getType() instanceof TypeName
+                && ((TypeName) field.getType()).getName().endsWith(CONNECTION_TYPE_SUFFIX);
+    }
+
+    /**
+     * Adds the connection fields and types to the registry
+     * @param registry
+     */
+    public void addConnections(TypeDefinitionRegistry registry) {
+        Optional<TypeDefinition> typeDefinitionQuery = registry.getType(QUERY);
+        if (!typeDefinitionQuery.isPresent() || !(typeDefinitionQuery.get() instanceof ObjectTypeDefinition)) {
+            return;
+        }
+        ObjectTypeDefinition typeQuery = (ObjectTypeDefinition) typeDefinitionQuery.get();
+
+        final List<FieldDefinition> fields = new ArrayList<>(typeQuery.getFieldDefinitions());
+        Set<String> fieldNames = fields.stream().map(FieldDefinition::getName).collect(Collectors.toSet());
+        boolean changed = false;
+        for (FieldDefinition field: typeQuery.getFieldDefinitions()) {
+            Optional<String> itemType = FieldTypes.getItemTypeName(field);
+            String connectionFieldName = field.getName() + CONNECTION_FIELD_SUFFIX;
+            if (!itemType.isPresent() || !isListField.test(field) || fieldNames.contains(connectionFieldName)) {
+                continue;
+            }
+
+            addConnectionType(itemType.get(), registry);
+            List<InputValueDefinition> arguments = new ArrayList<>(field.getInputValueDefinitions());
+            arguments.addAll(pagingArguments());
+            fields.add(FieldDefinition.newFieldDefinition()
+                    .name(connectionFieldName)
+                    .type(new TypeName(itemType.get() + CONNECTION_TYPE_SUFFIX))
+                    .inputValueDefinitions(arguments)
+                    .directives(field.getDirectives())
+                    .build());
+            changed = true;
+        }
+
+        if (changed) {
+            registry.remove(typeQuery);
+            registry.add(typeQuery.transform(builder -> builder.fieldDefinitions(fields)));
+        }
+    }
+
+    private void addConnectionType(String itemType, TypeDefinitionRegistry registry) {
+        String connectionType = itemType + CONNECTION_TYPE_SUFFIX;
+        String edgeType = itemType + EDGE_TYPE_SUFFIX;
+        // Types are shared by all the fields of the same item type, i.e. the delivery endpoints
+        if (registry.getType(connectionType).isPresent()) {
+            return;
+        }
+
+        registry.add(ObjectTypeDefinition.newObjectTypeDefinition()
+                .name(edgeType)
+                .fieldDefinitions(Arrays.asList(
+                        field("cursor", new NonNullType(new TypeName("String"))),
+                        field("node", new TypeName(itemType))))
+                .build());
+        registry.add(ObjectTypeDefinition.newObjectTypeDefinition()
+                .name(connectionType)
+                .fieldDefinitions(Arrays.asList(
+                        field("edges", new ListType(new TypeName(edgeType))),
+                        field("pageInfo", new NonNullType(new TypeName(PAGE_INFO_TYPE)))))
+                .build());
+    }
+
+    private List<InputValueDefinition> pagingArguments() {
+        return Arrays.asList(
+                argument(ARG_first, "Int"),
+                argument(ARG_after, "String"),
+                argument(ARG_last, "Int"),
+                argument(ARG_before, "String"));
+    }
+
+    private static FieldDefinition field(String name, Type type) {
+        return FieldDefinition.newFieldDefinition().name(name).type(type).build();
+    }
+
+    private static InputValueDefinition argument(String name, String type) {
+        return InputValueDefinition.newInputValueDefinition().name(name).type(new TypeName(type)).build();
+    }
+}
@@ -0,0 +1,196 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import com.google.common.collect.ImmutableSet;
+import graphql.language.FieldDefinition;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.TypeDefinition;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import info.magnolia.jcr.util.ContentMap;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.ValueFormatException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Builds the resolvers of the scalar fields of the types of the fields of Query tagged with @definition.
+ *
+ * The items of these fields are NodeMap, and by default their fields are resolved by PropertyDataFetcher through
+ * Map.get and the conversions of ContentMap. The resolvers are built once per schema, for the type of the items
+ * and the types reachable from its fields, and read the property of the JCR node converted to the scalar declared
+ * in the SDL.
+ * Fields that are not single-valued properties of the node, i.e. "lastModified" or multi-valued properties, are read
+ * from the map as before.
+ */
+public class ContentFieldResolvers {
+    private static final String QUERY = "Query";
+    // Types resolved by their own classes
+    private static final Set<String> CORE_TYPES = ImmutableSet.of("Node", "Property", "Asset", "Binary", "PageInfo");
+
+    // Fields of Query whose items are NodeMap
+    private final Predicate<FieldDefinition> isDefinitionField;
+
+    public ContentFieldResolvers(Predicate<FieldDefinition> isDefinitionField) {
+        this.isDefinitionField = isDefinitionField;
+    }
+
+    /**
+     * Resolvers of the scalar fields by type
+     *
+     * @param registry
+     * @return type name -> field name -> resolver
+     */
+    public Map<String, Map<String, DataFetcher>> build(TypeDefinitionRegistry registry) {
+        Map<String, Map<String, DataFetcher>> resolvers = new LinkedHashMap<>();
+        Optional<TypeDefinition> typeDefinitionQuery = registry.getType(QUERY);
+        if (!typeDefinitionQuery.isPresent() || !(typeDefinitionQuery.get() instanceof ObjectTypeDefinition)) {
+            return resolvers;
+        }
+
+        Deque<String> pending = new ArrayDeque<>();
+        for (FieldDefinition field: ((ObjectTypeDefinition) typeDefinitionQuery.get()).getFieldDefinitions()) {
+            if (isDefinitionField.test(field)) {
+                FieldTypes.getItemTypeName(field).ifPresent(pending::add);
+            }
+        }
+
+        Set<String> visited = new HashSet<>();
+        while (!pending.isEmpty()) {
+            String typeName = pending.poll();
+            if (CORE_TYPES.contains(typeName) || !visited.add(typeName)) {
+                continue;
+            }
+            Optional<TypeDefinition> typeDefinition = registry.getType(typeName);
+            if (!typeDefinition.isPresent() || !(typeDefinition.get() instanceof ObjectTypeDefinition)) {
+                continue;
+            }
+
+            Map<String, DataFetcher> fieldResolvers = new LinkedHashMap<>();
+            for (FieldDefinition field: ((ObjectTypeDefinition) typeDefinition.get()).getFieldDefinitions()) {
+                String fieldType = FieldTypes.getTypeName(field);
+                Optional<Scalar> scalar = Scalar.of(fieldType);
+                if (!scalar.isPresent()) {
+                    // Children and child nodes of the type, i.e. children: [Tour]
+                    pending.add(fieldType);
+                } else if (field.getInputValueDefinitions().isEmpty() && !FieldTypes.getItemTypeName(field).isPresent()) {
+                    fieldResolvers.put(field.getName(), new PropertyResolver(field.getName(), scalar.get()));
+                }
+            }
+            if (!fieldResolvers.isEmpty()) {
+                resolvers.put(typeName, fieldResolvers);
+            }
+        }
+
+        return resolvers;
+    }
+
+    /**
+     * Scalars of the SDL and how they are read from a property
+     */
+    private enum Scalar {
+        STRING {
+            @Override
+            Object read(Property property) throws RepositoryException {
+                return property.getString();
+            }
+        },
+        INT {
+            @Override
+            Object read(Property property) throws RepositoryException {
+                long value = property.getLong();
+                return (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)? null: (int) value;
+            }
+        },
+        LONG {
+            @Override
+            Object read(Property property) throws RepositoryException {
+                return property.getLong();
+            }
+        },
+        FLOAT {
+            @Override
+            Object read(Property property) throws RepositoryException {
+                return property.getDouble();
+            }
+        },
+        BOOLEAN {
+            @Override
+            Object read(Property property) throws RepositoryException {
+                return property.getBoolean();
+            }
+        };
+
+        abstract Object read(Property property) throws RepositoryException;
+
+        static Optional<Scalar> of(String typeName) {
+            switch (typeName) {
+                case "String":
+                case "ID":
+                    return Optional.of(STRING);
+                case "Int":
+                    return Optional.of(INT);
+                case "Long":
+                    return Optional.of(LONG);
+                case "Float":
+                    return Optional.of(FLOAT);
+                case "Boolean":
+                    return Optional.of(BOOLEAN);
+                default:
+                    return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Reads a scalar field from the property of the node with the same name
+     */
+    @Slf4j
+    private static final class PropertyResolver implements DataFetcher<Object> {
+        private final String name;
+        private final Scalar scalar;
+
+        private PropertyResolver(String name, Scalar scalar) {
+            this.name = name;
+            this.scalar = scalar;
+        }
+
+        @Override
+        public Object get(DataFetchingEnvironment environment) {
+            Object source = environment.getSource();
+            if (!(source instanceof ContentMap)) {
+                return (source instanceof Map)? ((Map<?, ?>) source).get(name): null;
+            }
+            ContentMap contentMap = (ContentMap) source;
+            Node node = contentMap.getJCRNode();
+            try {
+                if (!node.hasProperty(name)) {
+                    // Fields of NodeMap that are not properties, i.e. "lastModified"
+                    return contentMap.get(name);
+                }
+                Property property = node.getProperty(name);
+                if (property.isMultiple() || property.getType() == PropertyType.BINARY) {
+                    return contentMap.get(name);
+                }
+                return scalar.read(property);
+            } catch (ValueFormatException e) {
+                // Not convertible to the scalar of the field
+                return null;
+            } catch (RepositoryException e) {
+                log.error("Errors reading property {} of node {}", name, node, e);
+                return null;
+            }
+        }
+    }
+}
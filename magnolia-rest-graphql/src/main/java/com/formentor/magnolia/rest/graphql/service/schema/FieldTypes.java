@@ -0,0 +1,54 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.language.FieldDefinition;
+import graphql.language.ListType;
+import graphql.language.NonNullType;
+import graphql.language.Type;
+import graphql.language.TypeName;
+
+import java.util.Optional;
+
+/**
+ * Helpers on the types of the field definitions
+ */
+final class FieldTypes {
+
+    private FieldTypes() {
+    }
+
+    /**
+     * Name of the type of the items of a list field, [Tour] or [Tour!] returns Tour
+     *
+     * @param field
+     * @return empty if the field is not a list
+     */
+    static Optional<String> getItemTypeName(FieldDefinition field) {
+        Type type = field.getType();
+        if (type instanceof NonNullType) {
+            type = ((NonNullType) type).getType();
+        }
+        if (!(type instanceof ListType)) {
+            return Optional.empty();
+        }
+        Type itemType = ((ListType) type).getType();
+        if (itemType instanceof NonNullType) {
+            itemType = ((NonNullType) itemType).getType();
+        }
+
+        return (itemType instanceof TypeName)? Optional.of(((TypeName) itemType).getName()): Optional.empty();
+    }
+
+    /**
+     * Name of the type of a field without lists nor non-null, [Tour!]! or Tour returns Tour
+     *
+     * @param field
+     * @return
+     */
+    static String getTypeName(FieldDefinition field) {
+        Type type = field.getType();
+        while (!(type instanceof TypeName)) {
+            type = (type instanceof NonNullType)? ((NonNullType) type).getType(): ((ListType) type).getType();
+        }
+        return ((TypeName) type).getName();
+    }
+}
@@ -0,0 +1,187 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import com.formentor.magnolia.rest.graphql.service.query.NodeQueryBuilder.Operator;
+import com.formentor.magnolia.rest.graphql.service.query.QueryFilters;
+import com.formentor.magnolia.rest.graphql.service.query.QueryFilters.WhereField;
+import graphql.language.FieldDefinition;
+import graphql.language.InputValueDefinition;
+import graphql.language.ListType;
+import graphql.language.NonNullType;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.Type;
+import graphql.language.TypeDefinition;
+import graphql.language.TypeName;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Generates the arguments "where" and "orderBy" of the list fields of Query.
+ *
+ * For a field
+ *      tours_ql : [Tour] @definition(workspace: "tours")
+ * adds the arguments
+ *      tours_ql(where: TourWhere, orderBy: [TourOrderBy]) : [Tour] @definition(workspace: "tours")
+ * and the input types with the scalar fields of Tour
+ *      input TourWhere { duration: Int, duration_not: Int, duration_gt: Int, ..., name_like: String, _contains: String }
+ *      enum TourOrderField { duration, name }
+ *      input TourOrderBy { field: TourOrderField!, direction: OrderDirection }
+ *
+ * Fields of type Node use the types NodeWhere and NodeOrderBy declared in "schema.graphqls".
+ * The property and operator of every field of the generated where types are recorded in the QueryFilters of the type,
+ * the first field wins when two properties generate the same name, i.e. "price" and "price_not".
+ * Must be applied before ConnectionTypes so the connections get the same arguments.
+ */
+public class FilterTypes {
+    private static final String QUERY = "Query";
+    private static final String NODE_TYPE = "Node";
+    private static final String WHERE_TYPE_SUFFIX = "Where";
+    private static final String ORDER_BY_TYPE_SUFFIX = "OrderBy";
+    private static final String ORDER_FIELD_TYPE_SUFFIX = "OrderField";
+
+    private static final List<String> SCALARS = Arrays.asList("String", "ID", "Int", "Float", "Boolean");
+    private static final List<String> COMPARABLE_SCALARS = Arrays.asList("String", "ID", "Int", "Float");
+
+    // Fields of Query that get the arguments
+    private final Predicate<FieldDefinition> isListField;
+
+    public FilterTypes(Predicate<FieldDefinition> isListField) {
+        this.isListField = isListField;
+    }
+
+    /**
+     * Adds the arguments "where" and "orderBy" and their input types to the registry
+     * @param registry
+     * @return QueryFilters of the where input types generated, by name of the type
+     */
+    public Map<String, QueryFilters> addFilters(TypeDefinitionRegistry registry) {
+        Map<String, QueryFilters> filters = new LinkedHashMap<>();
+        Optional<TypeDefinition> typeDefinitionQuery = registry.getType(QUERY);
+        if (!typeDefinitionQuery.isPresent() || !(typeDefinitionQuery.get() instanceof ObjectTypeDefinition)) {
+            return filters;
+        }
+        ObjectTypeDefinition typeQuery = (ObjectTypeDefinition) typeDefinitionQuery.get();
+
+        final List<FieldDefinition> fields = new ArrayList<>();
+        boolean changed = false;
+        for (FieldDefinition field: typeQuery.getFieldDefinitions()) {
+            Optional<String> itemType = FieldTypes.getItemTypeName(field);
+            if (!itemType.isPresent() || !isListField.test(field) || hasFilterArguments(field)
+                    || !addFilterTypes(itemType.get(), registry, filters)) {
+                fields.add(field);
+                continue;
+            }
+
+            List<InputValueDefinition> arguments = new ArrayList<>(field.getInputValueDefinitions());
+            arguments.add(argument(QueryFilters.ARG_where, new TypeName(itemType.get() + WHERE_TYPE_SUFFIX)));
+            arguments.add(argument(QueryFilters.ARG_orderBy, new ListType(new TypeName(itemType.get() + ORDER_BY_TYPE_SUFFIX))));
+            fields.add(field.transform(builder -> builder.inputValueDefinitions(arguments)));
+            changed = true;
+        }
+
+        if (changed) {
+            registry.remove(typeQuery);
+            registry.add(typeQuery.transform(builder -> builder.fieldDefinitions(fields)));
+        }
+
+        return filters;
+    }
+
+    /**
+     * Name of the type of the argument "where" of the field
+     *
+     * @param field
+     * @return empty if the field has no argument "where"
+     */
+    public static Optional<String> getWhereTypeName(FieldDefinition field) {
+        return field.getInputValueDefinitions().stream()
+                .filter(argument -> argument.getName().equals(QueryFilters.ARG_where))
+                .map(argument -> argument.getType())
+                .filter(type -> type instanceof TypeName)
+                .map(type -> ((TypeName) type).getName())
+                .findFirst();
+    }
+
+    private boolean hasFilterArguments(FieldDefinition field) {
+        return field.getInputValueDefinitions().stream()
+                .anyMatch(argument -> argument.getName().equals(QueryFilters.ARG_where) || argument.getName().equals(QueryFilters.ARG_orderBy));
+    }
+
+    /**
+     * Adds the input types of the item type if they do not exist yet
+     *
+     * @return false if the item type has no scalar fields to filter by
+     */
+    private boolean addFilterTypes(String itemType, TypeDefinitionRegistry registry, Map<String, QueryFilters> filters) {
+        if (NODE_TYPE.equals(itemType) || registry.getType(itemType + WHERE_TYPE_SUFFIX).isPresent()) {
+            return true;
+        }
+        Optional<TypeDefinition> typeDefinition = registry.getType(itemType);
+        if (!typeDefinition.isPresent() || !(typeDefinition.get() instanceof ObjectTypeDefinition)) {
+            return false;
+        }
+
+        StringBuilder where = new StringBuilder("input ").append(itemType).append(WHERE_TYPE_SUFFIX).append(" {");
+        Map<String, WhereField> whereFields = new LinkedHashMap<>();
+        List<String> orderFields = new ArrayList<>();
+        for (FieldDefinition field: ((ObjectTypeDefinition) typeDefinition.get()).getFieldDefinitions()) {
+            Type type = field.getType();
+            if (type instanceof NonNullType) {
+                type = ((NonNullType) type).getType();
+            }
+            if (!(type instanceof TypeName) || !SCALARS.contains(((TypeName) type).getName()) || !field.getInputValueDefinitions().isEmpty()) {
+                continue;
+            }
+            String scalar = ((TypeName) type).getName();
+            String name = field.getName();
+
+            addWhereField(where, whereFields, name, scalar, new WhereField(name, Operator.EQ));
+            for (Map.Entry<String, Operator> suffix: QueryFilters.SUFFIXES.entrySet()) {
+                boolean comparable = COMPARABLE_SCALARS.contains(scalar)
+                        && (suffix.getValue() != Operator.LIKE || "String".equals(scalar));
+                if (suffix.getValue() == Operator.NE || comparable) {
+                    addWhereField(where, whereFields, name + suffix.getKey(), scalar, new WhereField(name, suffix.getValue()));
+                }
+            }
+            orderFields.add(name);
+        }
+        if (orderFields.isEmpty()) {
+            return false;
+        }
+        where.append(' ').append(QueryFilters.WHERE_contains).append(": String }");
+
+        String sdl = where
+                + " enum " + itemType + ORDER_FIELD_TYPE_SUFFIX + " { " + String.join(" ", orderFields) + " }"
+                + " input " + itemType + ORDER_BY_TYPE_SUFFIX + " { " + QueryFilters.ORDER_field + ": " + itemType + ORDER_FIELD_TYPE_SUFFIX + "!"
+                + " " + QueryFilters.ORDER_direction + ": OrderDirection }";
+        for (TypeDefinition definition: new SchemaParser().parse(sdl).types().values()) {
+            registry.add(definition);
+        }
+        filters.put(itemType + WHERE_TYPE_SUFFIX, new QueryFilters(Collections.unmodifiableMap(whereFields)));
+
+        return true;
+    }
+
+    /**
+     * Appends the field to the where input type, unless a field with the same name has been generated before
+     */
+    private static void addWhereField(StringBuilder where, Map<String, WhereField> whereFields, String name, String scalar, WhereField whereField) {
+        if (whereFields.containsKey(name)) {
+            return;
+        }
+        whereFields.put(name, whereField);
+        where.append(' ').append(name).append(": ").append(scalar);
+    }
+
+    private static InputValueDefinition argument(String name, Type type) {
+        return InputValueDefinition.newInputValueDefinition().name(name).type(type).build();
+    }
+}
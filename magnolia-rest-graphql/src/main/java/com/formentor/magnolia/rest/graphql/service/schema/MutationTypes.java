@@ -0,0 +1,151 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import com.formentor.magnolia.rest.graphql.type.NodeMap;
+import graphql.language.FieldDefinition;
+import graphql.language.NonNullType;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.Type;
+import graphql.language.TypeDefinition;
+import graphql.language.TypeName;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the mutations of the list fields of Query tagged with @definition.
+ *
+ * The input types have the scalar fields of the type of the items, so the fields of type Node get no mutations.
+ *
+ * For a field
+ *      tours_ql : [Tour] @definition(workspace: "tours")
+ * adds the fields and types
+ *      type Mutation {
+ *          tours_ql_create(path: String!, data: TourInput!) : Tour @definition(workspace: "tours")
+ *          tours_ql_update(path: String!, data: TourInput!, lastModified: String) : Tour @definition(workspace: "tours")
+ *          tours_ql_delete(path: String!, lastModified: String) : Boolean @definition(workspace: "tours")
+ *          tours_ql_bulk(changes: [TourMutation!]!) : BulkMutationResult @definition(workspace: "tours")
+ *      }
+ *      input TourInput { duration: Int, name: String, ... }
+ *      input TourMutation { operation: MutationOperation!, path: String!, data: TourInput, lastModified: String }
+ *
+ * The enum MutationOperation and the type BulkMutationResult are declared in "schema.graphqls".
+ */
+public class MutationTypes {
+    public static final String CREATE_FIELD_SUFFIX = "_create";
+    public static final String UPDATE_FIELD_SUFFIX = "_update";
+    public static final String DELETE_FIELD_SUFFIX = "_delete";
+    public static final String BULK_FIELD_SUFFIX = "_bulk";
+
+    private static final String QUERY = "Query";
+    private static final String MUTATION = "Mutation";
+    private static final String NODE_TYPE = "Node";
+    private static final String INPUT_TYPE_SUFFIX = "Input";
+    private static final String MUTATION_TYPE_SUFFIX = "Mutation";
+
+    private static final List<String> SCALARS = Arrays.asList("String", "ID", "Int", "Float", "Boolean");
+
+    // Fields of Query that get mutations
+    private final Predicate<FieldDefinition> isListField;
+
+    public MutationTypes(Predicate<FieldDefinition> isListField) {
+        this.isListField = isListField;
+    }
+
+    /**
+     * Adds the mutation fields and their input types to the registry
+     * @param registry
+     */
+    public void addMutations(TypeDefinitionRegistry registry) {
+        Optional<TypeDefinition> typeDefinitionQuery = registry.getType(QUERY);
+        Optional<TypeDefinition> typeDefinitionMutation = registry.getType(MUTATION);
+        if (!typeDefinitionQuery.isPresent() || !(typeDefinitionQuery.get() instanceof ObjectTypeDefinition)
+                || !typeDefinitionMutation.isPresent() || !(typeDefinitionMutation.get() instanceof ObjectTypeDefinition)) {
+            return;
+        }
+        ObjectTypeDefinition typeQuery = (ObjectTypeDefinition) typeDefinitionQuery.get();
+        ObjectTypeDefinition typeMutation = (ObjectTypeDefinition) typeDefinitionMutation.get();
+
+        final List<FieldDefinition> fields = new ArrayList<>(typeMutation.getFieldDefinitions());
+        Set<String> fieldNames = fields.stream().map(FieldDefinition::getName).collect(Collectors.toSet());
+        boolean changed = false;
+        for (FieldDefinition field: typeQuery.getFieldDefinitions()) {
+            Optional<String> itemType = FieldTypes.getItemTypeName(field);
+            if (!itemType.isPresent() || !isListField.test(field) || fieldNames.contains(field.getName() + BULK_FIELD_SUFFIX)
+                    || !addInputTypes(itemType.get(), registry)) {
+                continue;
+            }
+
+            String name = field.getName();
+            String type = itemType.get();
+            String sdl = "type " + MUTATION + " {"
+                    + " " + name + CREATE_FIELD_SUFFIX + "(path: String!, data: " + type + INPUT_TYPE_SUFFIX + "!): " + type
+                    + " " + name + UPDATE_FIELD_SUFFIX + "(path: String!, data: " + type + INPUT_TYPE_SUFFIX + "!, lastModified: String): " + type
+                    + " " + name + DELETE_FIELD_SUFFIX + "(path: String!, lastModified: String): Boolean"
+                    + " " + name + BULK_FIELD_SUFFIX + "(changes: [" + type + MUTATION_TYPE_SUFFIX + "!]!): BulkMutationResult"
+                    + " }";
+            ObjectTypeDefinition generated = (ObjectTypeDefinition) new SchemaParser().parse(sdl).getType(MUTATION).get();
+            for (FieldDefinition mutation: generated.getFieldDefinitions()) {
+                // The directive tells the workspace, rootPath and nodeTypes of the nodes changed
+                fields.add(mutation.transform(builder -> builder.directives(field.getDirectives())));
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            registry.remove(typeMutation);
+            registry.add(typeMutation.transform(builder -> builder.fieldDefinitions(fields)));
+        }
+    }
+
+    /**
+     * Adds the input types of the item type if they do not exist yet
+     *
+     * @return false if the item type has no scalar fields to write
+     */
+    private boolean addInputTypes(String itemType, TypeDefinitionRegistry registry) {
+        // Fields of the generic type Node are not properties
+        if (NODE_TYPE.equals(itemType)) {
+            return false;
+        }
+        if (registry.getType(itemType + INPUT_TYPE_SUFFIX).isPresent()) {
+            return true;
+        }
+        Optional<TypeDefinition> typeDefinition = registry.getType(itemType);
+        if (!typeDefinition.isPresent() || !(typeDefinition.get() instanceof ObjectTypeDefinition)) {
+            return false;
+        }
+
+        List<String> inputFields = new ArrayList<>();
+        for (FieldDefinition field: ((ObjectTypeDefinition) typeDefinition.get()).getFieldDefinitions()) {
+            Type type = field.getType();
+            if (type instanceof NonNullType) {
+                type = ((NonNullType) type).getType();
+            }
+            // lastModified is maintained by the repository
+            if (!(type instanceof TypeName) || !SCALARS.contains(((TypeName) type).getName()) || !field.getInputValueDefinitions().isEmpty()
+                    || NodeMap.LAST_MODIFIED_FIELD.equals(field.getName())) {
+                continue;
+            }
+            inputFields.add(field.getName() + ": " + ((TypeName) type).getName());
+        }
+        if (inputFields.isEmpty()) {
+            return false;
+        }
+
+        String sdl = "input " + itemType + INPUT_TYPE_SUFFIX + " { " + String.join(" ", inputFields) + " }"
+                + " input " + itemType + MUTATION_TYPE_SUFFIX + " { operation: MutationOperation! path: String! data: " + itemType + INPUT_TYPE_SUFFIX
+                + " lastModified: String }";
+        for (TypeDefinition definition: new SchemaParser().parse(sdl).types().values()) {
+            registry.add(definition);
+        }
+
+        return true;
+    }
+}
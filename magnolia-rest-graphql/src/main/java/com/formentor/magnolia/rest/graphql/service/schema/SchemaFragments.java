@@ -0,0 +1,180 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.language.FieldDefinition;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.TypeDefinition;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Keeps the sdl of the GraphQL schema split in fragments.
+ *
+ * The core fragment is "schema.graphqls" and the rest of fragments are the sdl of each GraphQL definition and
+ * delivery endpoint, keyed by its referenceId.
+ * Every fragment is parsed once when it is added, so adding or removing a fragment does not parse the others.
+ * The fragments of the last schema built are kept, so the changes since then that break the schema can be rolled back.
+ *
+ * It is not thread safe, GraphQLProvider modifies the fragments holding its schema lock.
+ */
+public class SchemaFragments {
+
+    private final TypeDefinitionRegistry core;
+    private final Map<String, TypeDefinitionRegistry> fragments = new LinkedHashMap<>();
+    // Fragments of the last schema built
+    private final Map<String, TypeDefinitionRegistry> accepted = new LinkedHashMap<>();
+    // Ids of the fragments added, replaced or removed since the last schema built
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    public SchemaFragments(String coreSdl) {
+        this.core = new SchemaParser().parse(coreSdl);
+    }
+
+    /**
+     * Adds or replaces the fragment with the given id
+     *
+     * @param id  referenceId of the definition
+     * @param sdl sdl of the definition
+     * @throws graphql.schema.idl.errors.SchemaProblem if the sdl is not valid
+     */
+    public void put(String id, String sdl) {
+        TypeDefinitionRegistry fragment = new SchemaParser().parse(sdl);
+        fragments.put(id, fragment);
+        pending.add(id);
+    }
+
+    /**
+     * Removes the fragment with the given id
+     *
+     * @param id referenceId of the definition
+     * @return true if the fragment existed
+     */
+    public boolean remove(String id) {
+        if (fragments.remove(id) == null) {
+            return false;
+        }
+        pending.add(id);
+        return true;
+    }
+
+    public boolean contains(String id) {
+        return fragments.containsKey(id);
+    }
+
+    /**
+     * Ids of the fragments changed since the schema was built for the last time
+     * @return
+     */
+    public List<String> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * Records that the schema has been built with the current fragments
+     */
+    public void commit() {
+        accepted.clear();
+        accepted.putAll(fragments);
+        pending.clear();
+    }
+
+    /**
+     * Restores the fragment of the last schema built, or removes it if it was not there
+     *
+     * @param id referenceId of the definition
+     */
+    public void rollback(String id) {
+        TypeDefinitionRegistry previous = accepted.get(id);
+        if (previous == null) {
+            fragments.remove(id);
+        } else {
+            fragments.put(id, previous);
+        }
+        pending.remove(id);
+    }
+
+    /**
+     * Merges the core and all the fragments in a new TypeDefinitionRegistry
+     *
+     * The registries of the fragments are not modified, so they can be merged again on next change.
+     * @return
+     */
+    public TypeDefinitionRegistry merge() {
+        return merge(Collections.emptySet());
+    }
+
+    /**
+     * Merges the core and the fragments as if the changes of some of them were rolled back, to try a schema
+     * without them
+     *
+     * @param rolledBack ids of the fragments merged as they were in the last schema built
+     * @return
+     */
+    public TypeDefinitionRegistry merge(Collection<String> rolledBack) {
+        TypeDefinitionRegistry merged = new TypeDefinitionRegistry();
+        merged.merge(core);
+        for (Map.Entry<String, TypeDefinitionRegistry> fragment: fragments.entrySet()) {
+            if (!rolledBack.contains(fragment.getKey())) {
+                mergeTypeRegistry(fragment.getValue(), merged);
+            }
+        }
+        for (String id: rolledBack) {
+            TypeDefinitionRegistry previous = accepted.get(id);
+            if (previous != null) {
+                mergeTypeRegistry(previous, merged);
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Merge TypeDefinitionRegistry "from" in "to"
+     *
+     * For existing Types adds the fields to the existing Type.
+     * For non existing Types, adds it
+     * @param from
+     * @param to
+     */
+    private void mergeTypeRegistry(TypeDefinitionRegistry from, TypeDefinitionRegistry to) {
+        for (ObjectTypeDefinition type: from.getTypes(ObjectTypeDefinition.class)) {
+            mergeTypeInto(type, to);
+        }
+    }
+
+    /**
+     * Merge ObjectTypeDefinition inside TypeDefinitionRegistry
+     *
+     * If Type exists in TypeRegistry the adds the fields to a copy of the existing Type.
+     * Otherwise add the Type to the TypeRegistry.
+     *
+     * @param newType
+     * @param registry
+     */
+    private void mergeTypeInto(ObjectTypeDefinition newType, TypeDefinitionRegistry registry) {
+        Optional<TypeDefinition> candidate = registry.getType(newType.getName());
+        // 1. If exists, add field definitions, else add the type
+        if (candidate.isPresent() && candidate.get() instanceof ObjectTypeDefinition) {
+            ObjectTypeDefinition existingType = (ObjectTypeDefinition) candidate.get();
+            // The list of fields is copied because it is shared with the fragment the type comes from
+            List<FieldDefinition> fieldDefinitions = new ArrayList<>(existingType.getFieldDefinitions());
+            fieldDefinitions.addAll(newType.getFieldDefinitions());
+
+            ObjectTypeDefinition newObjectTypeDefinition = existingType.transform(builder -> builder.fieldDefinitions(fieldDefinitions));
+            registry.remove(existingType);
+            registry.add(newObjectTypeDefinition);
+        } else {
+            // 2. If does not exist, add it
+            registry.add(newType);
+        }
+    }
+}
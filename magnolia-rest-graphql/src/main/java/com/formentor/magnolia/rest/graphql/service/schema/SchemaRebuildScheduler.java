@@ -0,0 +1,77 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Debounced rebuild of the schema.
+ *
+ * Every request of a rebuild restarts the delay, so a burst of changes, i.e. the GraphQL definitions and delivery endpoints of
+ * a module being deployed, is applied with one rebuild when the changes stop. A burst that does not stop is rebuilt at most
+ * MAX_DELAY_FACTOR times the delay after its first change.
+ * The rebuild runs in one daemon thread.
+ */
+@Slf4j
+public class SchemaRebuildScheduler {
+    private static final String THREAD_NAME = "graphql-schema-rebuild";
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    private final ScheduledExecutorService executor;
+    private final Runnable rebuild;
+    private final LongSupplier delayMillis;
+    // Rebuild waiting for its delay and time of the first change it applies
+    private ScheduledFuture<?> pending;
+    private long firstRequestNanos;
+
+    /**
+     * @param rebuild     rebuilds the schema
+     * @param delayMillis time without changes before the schema is rebuilt
+     */
+    public SchemaRebuildScheduler(Runnable rebuild, LongSupplier delayMillis) {
+        this.rebuild = rebuild;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests a rebuild of the schema, the pending rebuild is delayed
+     */
+    public synchronized void schedule() {
+        long delay = Math.max(0, delayMillis.getAsLong());
+        long now = System.nanoTime();
+        if (pending != null && !pending.isDone()) {
+            if (now - firstRequestNanos >= TimeUnit.MILLISECONDS.toNanos(delay * MAX_DELAY_FACTOR)) {
+                // The burst goes on, the pending rebuild is not delayed any more
+                return;
+            }
+            pending.cancel(false);
+        } else {
+            firstRequestNanos = now;
+        }
+        pending = executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the thread, the pending rebuild is discarded
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            rebuild.run();
+        } catch (Exception e) {
+            log.error("ERRORS rebuilding the GraphQL schema", e);
+        }
+    }
+}
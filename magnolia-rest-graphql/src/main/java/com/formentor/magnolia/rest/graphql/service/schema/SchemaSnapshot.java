@@ -0,0 +1,35 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.GraphQL;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+/**
+ * Immutable view of the GraphQL schema published by GraphQLProvider.
+ *
+ * A request pins the snapshot when it starts and uses it until it finishes, so a schema swapped in the middle
+ * of the execution does not affect it.
+ * The TypeDefinitionRegistry is built for the snapshot and must not be modified once published.
+ */
+public final class SchemaSnapshot {
+    private final long version;
+    private final TypeDefinitionRegistry typeRegistry;
+    private final GraphQL graphQL;
+
+    public SchemaSnapshot(long version, TypeDefinitionRegistry typeRegistry, GraphQL graphQL) {
+        this.version = version;
+        this.typeRegistry = typeRegistry;
+        this.graphQL = graphQL;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public TypeDefinitionRegistry getTypeRegistry() {
+        return typeRegistry;
+    }
+
+    public GraphQL getGraphQL() {
+        return graphQL;
+    }
+}
@@ -0,0 +1,102 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.language.FieldDefinition;
+import graphql.language.NonNullType;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.Type;
+import graphql.language.TypeDefinition;
+import graphql.language.TypeName;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the subscriptions to the changes of the list fields of Query.
+ *
+ * For a field
+ *      tours_ql : [Tour] @definition(workspace: "tours")
+ * adds the field and type
+ *      type Subscription { tours_ql : TourChange @definition(workspace: "tours") }
+ *      type TourChange { type: ChangeType!, path: String!, identifier: String, node: Tour }
+ *
+ * The enum ChangeType and the type Subscription are declared in "schema.graphqls".
+ */
+public class SubscriptionTypes {
+    private static final String QUERY = "Query";
+    private static final String SUBSCRIPTION = "Subscription";
+    private static final String CHANGE_TYPE_SUFFIX = "Change";
+    private static final String CHANGE_TYPE_ENUM = "ChangeType";
+
+    // Fields of Query that get a subscription
+    private final Predicate<FieldDefinition> isListField;
+
+    public SubscriptionTypes(Predicate<FieldDefinition> isListField) {
+        this.isListField = isListField;
+    }
+
+    /**
+     * Adds the subscription fields and the types of their changes to the registry
+     * @param registry
+     */
+    public void addSubscriptions(TypeDefinitionRegistry registry) {
+        Optional<TypeDefinition> typeDefinitionQuery = registry.getType(QUERY);
+        Optional<TypeDefinition> typeDefinitionSubscription = registry.getType(SUBSCRIPTION);
+        if (!typeDefinitionQuery.isPresent() || !(typeDefinitionQuery.get() instanceof ObjectTypeDefinition)
+                || !typeDefinitionSubscription.isPresent() || !(typeDefinitionSubscription.get() instanceof ObjectTypeDefinition)) {
+            return;
+        }
+        ObjectTypeDefinition typeQuery = (ObjectTypeDefinition) typeDefinitionQuery.get();
+        ObjectTypeDefinition typeSubscription = (ObjectTypeDefinition) typeDefinitionSubscription.get();
+
+        final List<FieldDefinition> fields = new ArrayList<>(typeSubscription.getFieldDefinitions());
+        Set<String> fieldNames = fields.stream().map(FieldDefinition::getName).collect(Collectors.toSet());
+        boolean changed = false;
+        for (FieldDefinition field: typeQuery.getFieldDefinitions()) {
+            Optional<String> itemType = FieldTypes.getItemTypeName(field);
+            if (!itemType.isPresent() || !isListField.test(field) || fieldNames.contains(field.getName())) {
+                continue;
+            }
+
+            addChangeType(itemType.get(), registry);
+            // The arguments of the query do not apply to the changes
+            fields.add(FieldDefinition.newFieldDefinition()
+                    .name(field.getName())
+                    .type(new TypeName(itemType.get() + CHANGE_TYPE_SUFFIX))
+                    .directives(field.getDirectives())
+                    .build());
+            changed = true;
+        }
+
+        if (changed) {
+            registry.remove(typeSubscription);
+            registry.add(typeSubscription.transform(builder -> builder.fieldDefinitions(fields)));
+        }
+    }
+
+    private void addChangeType(String itemType, TypeDefinitionRegistry registry) {
+        String changeType = itemType + CHANGE_TYPE_SUFFIX;
+        // Types are shared by all the fields of the same item type, i.e. the delivery endpoints
+        if (registry.getType(changeType).isPresent()) {
+            return;
+        }
+
+        registry.add(ObjectTypeDefinition.newObjectTypeDefinition()
+                .name(changeType)
+                .fieldDefinitions(Arrays.asList(
+                        field("type", new NonNullType(new TypeName(CHANGE_TYPE_ENUM))),
+                        field("path", new NonNullType(new TypeName("String"))),
+                        field("identifier", new TypeName("String")),
+                        field("node", new TypeName(itemType))))
+                .build());
+    }
+
+    private static FieldDefinition field(String name, Type type) {
+        return FieldDefinition.newFieldDefinition().name(name).type(type).build();
+    }
+}
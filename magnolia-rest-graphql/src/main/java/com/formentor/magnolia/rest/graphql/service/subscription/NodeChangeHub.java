@@ -0,0 +1,174 @@
+package com.formentor.magnolia.rest.graphql.service.subscription;
+
+import com.formentor.magnolia.rest.graphql.type.NodeChange;
+import info.magnolia.cms.util.ObservationUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Observes the changes of the workspaces with subscriptions and fans them out to the subscribers.
+ *
+ * There is one JCR observation listener per workspace, shared by all its subscribers, registered with the first
+ * subscriber and unregistered when the last one leaves. The events of a batch are coalesced into one change per node,
+ * so saving several properties of a node is pushed as a single change.
+ */
+@Slf4j
+public class NodeChangeHub {
+    private static final String ROOT_PATH = "/";
+
+    // Max number of subscribers of all the workspaces, 0 is unlimited
+    private final int maxSubscribers;
+    // Guarded by this
+    private final Map<String, Set<Consumer<List<NodeChange>>>> subscribers = new HashMap<>();
+    private final Map<String, EventListener> listeners = new HashMap<>();
+    private int size;
+
+    public NodeChangeHub(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Adds a subscriber of the changes of the workspace
+     *
+     * @param workspace
+     * @param subscriber receives the changes of each batch of events, it must not block
+     * @return false if there are too many subscribers
+     */
+    public synchronized boolean add(String workspace, Consumer<List<NodeChange>> subscriber) {
+        if (maxSubscribers > 0 && size >= maxSubscribers) {
+            return false;
+        }
+        if (!listeners.containsKey(workspace)) {
+            EventListener listener = events -> publish(workspace, events);
+            ObservationUtil.registerChangeListener(workspace, ROOT_PATH, listener);
+            listeners.put(workspace, listener);
+        }
+        if (subscribers.computeIfAbsent(workspace, key -> new CopyOnWriteArraySet<>()).add(subscriber)) {
+            size++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes a subscriber, the listener of the workspace is unregistered if it was the last one
+     *
+     * @param workspace
+     * @param subscriber
+     */
+    public synchronized void remove(String workspace, Consumer<List<NodeChange>> subscriber) {
+        Set<Consumer<List<NodeChange>>> workspaceSubscribers = subscribers.get(workspace);
+        if (workspaceSubscribers == null || !workspaceSubscribers.remove(subscriber)) {
+            return;
+        }
+        size--;
+        if (workspaceSubscribers.isEmpty()) {
+            subscribers.remove(workspace);
+            EventListener listener = listeners.remove(workspace);
+            if (listener != null) {
+                ObservationUtil.unregisterChangeListener(workspace, listener);
+            }
+        }
+    }
+
+    /**
+     * Unregisters the observation listeners, the subscribers do not receive more changes
+     */
+    public synchronized void close() {
+        for (Map.Entry<String, EventListener> entry: listeners.entrySet()) {
+            ObservationUtil.unregisterChangeListener(entry.getKey(), entry.getValue());
+        }
+        listeners.clear();
+        subscribers.clear();
+        size = 0;
+    }
+
+    /**
+     * Statistics of the subscribers: total and by workspace
+     * @return
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> workspaces = new LinkedHashMap<>();
+        subscribers.forEach((workspace, workspaceSubscribers) -> workspaces.put(workspace, workspaceSubscribers.size()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", size);
+        result.put("workspaces", workspaces);
+        return result;
+    }
+
+    private void publish(String workspace, EventIterator events) {
+        List<NodeChange> changes = toChanges(workspace, events);
+        Set<Consumer<List<NodeChange>>> workspaceSubscribers;
+        synchronized (this) {
+            workspaceSubscribers = subscribers.get(workspace);
+        }
+        if (changes.isEmpty() || workspaceSubscribers == null) {
+            return;
+        }
+        for (Consumer<List<NodeChange>> subscriber: workspaceSubscribers) {
+            try {
+                subscriber.accept(changes);
+            } catch (RuntimeException e) {
+                log.warn("Errors pushing changes of workspace {}", workspace, e);
+            }
+        }
+    }
+
+    /**
+     * One change per node of the batch: changes of properties are changes of their node, a node added and changed
+     * in the same batch is added and a node removed is removed whatever happened before
+     */
+    private static List<NodeChange> toChanges(String workspace, EventIterator events) {
+        Map<String, NodeChange> changes = new LinkedHashMap<>();
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                NodeChange.Type type;
+                String path = event.getPath();
+                switch (event.getType()) {
+                    case Event.NODE_ADDED:
+                        type = NodeChange.Type.ADDED;
+                        break;
+                    case Event.NODE_REMOVED:
+                        type = NodeChange.Type.REMOVED;
+                        break;
+                    case Event.NODE_MOVED:
+                        type = NodeChange.Type.CHANGED;
+                        break;
+                    case Event.PROPERTY_ADDED:
+                    case Event.PROPERTY_CHANGED:
+                    case Event.PROPERTY_REMOVED:
+                        type = NodeChange.Type.CHANGED;
+                        path = StringUtils.defaultIfEmpty(StringUtils.substringBeforeLast(path, "/"), ROOT_PATH);
+                        break;
+                    default:
+                        continue;
+                }
+
+                NodeChange previous = changes.get(path);
+                if (previous == null || type == NodeChange.Type.REMOVED || previous.getType() == NodeChange.Type.REMOVED) {
+                    // The identifier of the events of properties is the one of their node
+                    changes.put(path, new NodeChange(type, workspace, path, event.getIdentifier()));
+                }
+            } catch (RepositoryException e) {
+                log.debug("Errors reading event of workspace {}", workspace, e);
+            }
+        }
+
+        return new ArrayList<>(changes.values());
+    }
+}
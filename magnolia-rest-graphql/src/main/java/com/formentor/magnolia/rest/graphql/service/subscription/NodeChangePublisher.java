@@ -0,0 +1,244 @@
+package com.formentor.magnolia.rest.graphql.service.subscription;
+
+import com.formentor.magnolia.rest.graphql.type.NodeChange;
+import info.magnolia.context.Context;
+import info.magnolia.context.MgnlContext;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Publisher of the changes of the nodes below a rootPath, source of the subscription of a field.
+ *
+ * Changes are pushed to the subscriber as it requests them. The changes not requested yet are buffered up to
+ * bufferSize, when the buffer is full the oldest change is dropped, so a slow subscriber does not hold the memory or
+ * the observation thread.
+ *
+ * The filter and the subscriber run with the MgnlContext of the thread that subscribed, so the nodes are read with
+ * the session and permissions of the subscriber.
+ * The observation thread just buffers the changes. They are pushed, and resolved by graphql-java, by the executor of
+ * deliveries bound by the thread that subscribed, i.e. the thread of the request streaming the events, or when the
+ * subscriber requests more changes.
+ */
+@Slf4j
+public class NodeChangePublisher implements Publisher<NodeChange> {
+    private final NodeChangeHub hub;
+    private final String workspace;
+    private final String rootPath;
+    private final Predicate<NodeChange> filter;
+    private final Function<javax.jcr.Node, Object> wrapper;
+    private final int bufferSize;
+
+    // Executor of the deliveries of the subscriptions made by the thread
+    private static final ThreadLocal<Executor> DELIVERY = new ThreadLocal<>();
+
+    /**
+     * @param hub        Source of the changes
+     * @param workspace  Workspace of the contents
+     * @param rootPath   Path of the root node, null for all the workspace
+     * @param filter     Changes pushed to the subscriber
+     * @param wrapper    Wraps the JCR node into the type of the items, NodeMap or Node
+     * @param bufferSize Max number of changes buffered
+     */
+    public NodeChangePublisher(NodeChangeHub hub, String workspace, String rootPath, Predicate<NodeChange> filter, Function<javax.jcr.Node, Object> wrapper, int bufferSize) {
+        this.hub = hub;
+        this.workspace = workspace;
+        this.rootPath = (rootPath == null || rootPath.equals("/"))? "": rootPath;
+        this.filter = filter;
+        this.wrapper = wrapper;
+        this.bufferSize = Math.max(1, bufferSize);
+    }
+
+    /**
+     * Pushes the changes of the subscriptions made by the current thread with the executor, until unbindDelivery()
+     *
+     * The thread that streams the changes runs the tasks of the executor, so the changes are resolved with its
+     * MgnlContext and sessions, never in the observation thread.
+     * @param executor
+     */
+    public static void bindDelivery(Executor executor) {
+        DELIVERY.set(executor);
+    }
+
+    public static void unbindDelivery() {
+        DELIVERY.remove();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super NodeChange> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ChangeSubscription subscription = new ChangeSubscription(subscriber, MgnlContext.hasInstance()? MgnlContext.getInstance(): null, DELIVERY.get());
+        subscriber.onSubscribe(subscription);
+        try {
+            if (!hub.add(workspace, subscription)) {
+                subscription.fail(new IllegalStateException("Too many subscriptions"));
+            } else if (subscription.cancelled) {
+                // Cancelled while it was being added
+                hub.remove(workspace, subscription);
+            }
+        } catch (RuntimeException e) {
+            subscription.fail(e);
+        }
+    }
+
+    private boolean isBelowRoot(String path) {
+        return rootPath.isEmpty() || path.equals(rootPath) || path.startsWith(rootPath + "/");
+    }
+
+    private final class ChangeSubscription implements Subscription, Consumer<List<NodeChange>> {
+        private final Subscriber<? super NodeChange> subscriber;
+        private final Context context;
+        // Runs the deliveries of the changes buffered by the observation thread, null to deliver just on request()
+        private final Executor delivery;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Guarded by itself
+        private final Deque<NodeChange> buffer = new ArrayDeque<>();
+        private final AtomicLong demand = new AtomicLong();
+        // Serializes the signals to the subscriber, whatever thread pushes or requests
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private long dropped;
+
+        private ChangeSubscription(Subscriber<? super NodeChange> subscriber, Context context, Executor delivery) {
+            this.subscriber = subscriber;
+            this.context = context;
+            this.delivery = delivery;
+        }
+
+        @Override
+        public void accept(List<NodeChange> changes) {
+            if (cancelled) {
+                return;
+            }
+            synchronized (buffer) {
+                for (NodeChange change: changes) {
+                    if (!isBelowRoot(change.getPath())) {
+                        continue;
+                    }
+                    if (buffer.size() >= bufferSize) {
+                        buffer.pollFirst();
+                        if (++dropped % bufferSize == 1) {
+                            log.debug("Subscriber of workspace {} is slow, {} changes dropped", workspace, dropped);
+                        }
+                    }
+                    buffer.addLast(change);
+                }
+            }
+            // The observation thread does not resolve the changes
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Requested " + n + " changes, it must be positive"));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> (current + added < 0)? Long.MAX_VALUE: current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                hub.remove(workspace, this);
+            }
+        }
+
+        /**
+         * Drains the buffer in the executor of deliveries, once for all the changes buffered meanwhile
+         */
+        private void scheduleDrain() {
+            if (delivery != null && scheduled.compareAndSet(false, true)) {
+                try {
+                    delivery.execute(() -> {
+                        scheduled.set(false);
+                        drain();
+                    });
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                    log.warn("Changes of workspace {} can not be delivered", workspace, e);
+                }
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            error = throwable;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!cancelled && error != null) {
+                    cancel();
+                    subscriber.onError(error);
+                }
+                while (!cancelled && demand.get() > 0) {
+                    NodeChange change;
+                    synchronized (buffer) {
+                        change = buffer.pollFirst();
+                    }
+                    if (change == null) {
+                        break;
+                    }
+                    if (emit(change) && demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                }
+                if (cancelled) {
+                    synchronized (buffer) {
+                        buffer.clear();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Pushes the change if it passes the filter
+         * @return true if it was pushed
+         */
+        private boolean emit(NodeChange change) {
+            Context previous = MgnlContext.hasInstance()? MgnlContext.getInstance(): null;
+            try {
+                if (context != null) {
+                    MgnlContext.setInstance(context);
+                }
+                if (!filter.test(change)) {
+                    return false;
+                }
+                subscriber.onNext(change.withWrapper(wrapper));
+                return true;
+            } catch (RuntimeException e) {
+                // The subscriber failed, it does not receive more changes
+                log.warn("Errors pushing change {} to subscriber", change, e);
+                cancel();
+                return false;
+            } finally {
+                // The context belongs to the subscriber, it is not released here
+                if (context != null) {
+                    MgnlContext.setInstance(previous);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import info.magnolia.context.MgnlContext;
+
+import javax.jcr.RepositoryException;
+
+public class Asset {
+    // Prefix of the urls served by the DAM
+    private static final String DAM_PREFIX = "/dam";
+
+    private final javax.jcr.Node wrappedNode;
+
+    public Asset(javax.jcr.Node node) {
+        this.wrappedNode = node;
+    }
+
+    public String getUrl() throws RepositoryException {
+        return MgnlContext.getContextPath() + DAM_PREFIX + wrappedNode.getPath();
+    }
+
+    public javax.jcr.Node getJCRNode() {
+        return wrappedNode;
+    }
+}
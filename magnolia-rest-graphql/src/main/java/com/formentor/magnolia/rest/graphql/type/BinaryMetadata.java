@@ -0,0 +1,53 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import com.google.common.net.UrlEscapers;
+import info.magnolia.context.MgnlContext;
+import org.apache.jackrabbit.JcrConstants;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Metadata of the value of a binary property, the value is not read.
+ *
+ * The mime type is the property "jcr:mimeType" of the node of the binary, as in nt:resource.
+ */
+public class BinaryMetadata {
+    // Prefix of the urls served by GraphQLEndpoint.binary
+    public static final String BINARY_PREFIX = "/.rest/magnolia-rest-graphql/graphql/binary";
+
+    private final javax.jcr.Property property;
+
+    public BinaryMetadata(javax.jcr.Property property) {
+        this.property = property;
+    }
+
+    /**
+     * Size in bytes, -1 if unknown
+     * @return
+     * @throws RepositoryException
+     */
+    public long getSize() throws RepositoryException {
+        return property.getLength();
+    }
+
+    public String getMimeType() throws RepositoryException {
+        Node node = property.getParent();
+        return node.hasProperty(JcrConstants.JCR_MIMETYPE)? node.getProperty(JcrConstants.JCR_MIMETYPE).getString(): null;
+    }
+
+    /**
+     * Url where the value is streamed from, /binary/{workspace}/{path of the property}
+     * @return
+     * @throws RepositoryException
+     */
+    public String getUrl() throws RepositoryException {
+        String workspace = property.getSession().getWorkspace().getName();
+        String path = Stream.of(property.getPath().substring(1).split("/"))
+                .map(UrlEscapers.urlPathSegmentEscaper()::escape)
+                .collect(Collectors.joining("/"));
+        return MgnlContext.getContextPath() + BINARY_PREFIX + "/" + UrlEscapers.urlPathSegmentEscaper().escape(workspace) + "/" + path;
+    }
+}
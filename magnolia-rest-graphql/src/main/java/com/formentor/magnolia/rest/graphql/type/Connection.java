@@ -0,0 +1,24 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import java.util.List;
+
+/**
+ * Page of results of a "connection" field, as defined by the Relay cursor connections specification
+ */
+public class Connection<T> {
+    private final List<Edge<T>> edges;
+    private final PageInfo pageInfo;
+
+    public Connection(List<Edge<T>> edges, PageInfo pageInfo) {
+        this.edges = edges;
+        this.pageInfo = pageInfo;
+    }
+
+    public List<Edge<T>> getEdges() {
+        return edges;
+    }
+
+    public PageInfo getPageInfo() {
+        return pageInfo;
+    }
+}
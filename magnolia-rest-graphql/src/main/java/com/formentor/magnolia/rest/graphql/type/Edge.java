@@ -0,0 +1,19 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+public class Edge<T> {
+    private final String cursor;
+    private final T node;
+
+    public Edge(String cursor, T node) {
+        this.cursor = cursor;
+        this.node = node;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public T getNode() {
+        return node;
+    }
+}
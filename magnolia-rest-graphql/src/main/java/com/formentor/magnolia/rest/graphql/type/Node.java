@@ -1,23 +1,33 @@
 package com.formentor.magnolia.rest.graphql.type;
 
 import info.magnolia.jcr.util.ContentMap;
-import info.magnolia.rest.delivery.jcr.filter.NodeTypesPredicate;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.jcr.PropertyIterator;
 import javax.jcr.RepositoryException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class Node {
     private final javax.jcr.Node wrappedNode;
     // The children nodes will be filtered with NodeTypes defined at the fieldDefinition.
-    private final List<String> nodeTypes;
+    private final NodeTypeFilter childFilter;
+    // Subtree read with a single query that serves the children, null to read them from the node
+    private final Subtree subtree;
 
     public Node(javax.jcr.Node node, List<String> nodeTypes) {
+        this(node, NodeTypeFilter.of(nodeTypes));
+    }
+
+    public Node(javax.jcr.Node node, NodeTypeFilter childFilter) {
+        this(node, childFilter, null);
+    }
+
+    public Node(javax.jcr.Node node, NodeTypeFilter childFilter, Subtree subtree) {
         this.wrappedNode = node;
-        this.nodeTypes = nodeTypes;
+        this.childFilter = childFilter;
+        this.subtree = subtree;
     }
 
     public String getName() throws RepositoryException {
@@ -32,20 +42,28 @@ public class Node {
         return wrappedNode.getPrimaryNodeType().getName();
     }
 
+    /**
+     * Children of the node filtered by the node types of the field while they are read
+     *
+     * The children of the nodes of a subtree are taken from it, the ones below the depth of the subtree are read from
+     * the node.
+     * @return
+     * @throws RepositoryException
+     */
     public List<Node> getChildren() throws RepositoryException {
-        List<Node> children = new ArrayList<>();
-        wrappedNode.getNodes().forEachRemaining(node -> children.add(new Node((javax.jcr.Node)node, nodeTypes)));
-        // Filter the children by nodeType
-        if (!nodeTypes.isEmpty()) {
-            return children.stream()
-                    .filter(node -> {
-                        NodeTypesPredicate nodeTypesPredicate = new NodeTypesPredicate(nodeTypes, false);
-                        return nodeTypesPredicate.evaluateTyped(node.getJCRNode());
-                    })
-                    .collect(Collectors.toList());
+        if (subtree != null && subtree.contains(wrappedNode.getPath())) {
+            List<javax.jcr.Node> nodes = subtree.getChildren(wrappedNode);
+            List<Node> children = new ArrayList<>(nodes.size());
+            for (javax.jcr.Node child: nodes) {
+                children.add(new Node(child, childFilter, subtree));
+            }
+            return children;
         }
+        return childFilter.children(wrappedNode, child -> new Node(child, childFilter, subtree));
+    }
 
-        return children;
+    public NodeTypeFilter getChildFilter() {
+        return childFilter;
     }
 
     public javax.jcr.Node getJCRNode() {
@@ -53,8 +71,22 @@ public class Node {
     }
 
     public List<Property> getProperties() throws RepositoryException {
+        return getProperties(null);
+    }
+
+    /**
+     * Properties of the node
+     *
+     * @param names name patterns of the properties, as in javax.jcr.Node.getProperties(String[]), null for all the properties
+     * @return
+     * @throws RepositoryException
+     */
+    public List<Property> getProperties(List<String> names) throws RepositoryException {
+        PropertyIterator iterator = (names == null)
+                ? wrappedNode.getProperties()
+                : wrappedNode.getProperties(names.toArray(new String[0]));
         List<Property> properties = new ArrayList<>();
-        wrappedNode.getProperties().forEachRemaining(property -> properties.add(new Property((javax.jcr.Property)property)));
+        iterator.forEachRemaining(property -> properties.add(new Property((javax.jcr.Property)property)));
         return properties;
     }
 
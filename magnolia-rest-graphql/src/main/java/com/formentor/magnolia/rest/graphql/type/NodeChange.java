@@ -0,0 +1,100 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import info.magnolia.context.MgnlContext;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.RepositoryException;
+import java.util.function.Function;
+
+/**
+ * Change of a node pushed to the subscriptions of the fields tagged with @definition or @delivery.
+ *
+ * The node is read when the field "node" is requested, with the session of the subscriber, and wrapped into the
+ * type of the items of the field.
+ */
+public class NodeChange {
+    public enum Type {
+        ADDED,
+        CHANGED,
+        REMOVED
+    }
+
+    private final Type type;
+    private final String workspace;
+    private final String path;
+    private final String identifier;
+    // Wraps the JCR node into the type of the items, NodeMap or Node
+    private final Function<javax.jcr.Node, Object> wrapper;
+
+    public NodeChange(Type type, String workspace, String path, String identifier) {
+        this(type, workspace, path, identifier, null);
+    }
+
+    private NodeChange(Type type, String workspace, String path, String identifier, Function<javax.jcr.Node, Object> wrapper) {
+        this.type = type;
+        this.workspace = workspace;
+        this.path = path;
+        this.identifier = identifier;
+        this.wrapper = wrapper;
+    }
+
+    /**
+     * Same change whose node is wrapped with the wrapper
+     * @param wrapper
+     * @return
+     */
+    public NodeChange withWrapper(Function<javax.jcr.Node, Object> wrapper) {
+        return new NodeChange(type, workspace, path, identifier, wrapper);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Node changed, null if it was removed or the subscriber can not read it
+     * @return
+     * @throws RepositoryException
+     */
+    public Object getNode() throws RepositoryException {
+        javax.jcr.Node node = getJCRNode();
+        if (node == null) {
+            return null;
+        }
+        return (wrapper == null)? new Node(node, NodeTypeFilter.ALL): wrapper.apply(node);
+    }
+
+    /**
+     * JCR node changed read with the session of the current context, null if it was removed
+     * @return
+     * @throws RepositoryException
+     */
+    public javax.jcr.Node getJCRNode() throws RepositoryException {
+        if (type == Type.REMOVED || identifier == null) {
+            return null;
+        }
+        try {
+            return MgnlContext.getJCRSession(workspace).getNodeByIdentifier(identifier);
+        } catch (ItemNotFoundException e) {
+            // Removed meanwhile or not readable by the subscriber
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + workspace + ":" + path;
+    }
+}
@@ -1,27 +1,35 @@
 package com.formentor.magnolia.rest.graphql.type;
 
 import info.magnolia.jcr.util.ContentMap;
-import info.magnolia.rest.delivery.jcr.filter.NodeTypesPredicate;
+import info.magnolia.jcr.util.NodeTypes;
+import info.magnolia.jcr.util.NodeUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jackrabbit.util.ISO8601;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
-import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class NodeMap extends ContentMap {
     // The get() of CHILDREN_FIELD will return the children nodes
     static private final String CHILDREN_FIELD = "children";
+    // The get() of LAST_MODIFIED_FIELD will return mgnl:lastModified as ISO 8601, used for the optimistic checks of mutations
+    static public final String LAST_MODIFIED_FIELD = "lastModified";
 
     // The children nodes will be filtered with NodeTypes defined at the fieldDefinition.
-    private final List<String> nodeTypes;
+    private final NodeTypeFilter childFilter;
 
     public NodeMap(Node content, List<String> nodeTypes) {
+        this(content, NodeTypeFilter.of(nodeTypes));
+    }
+
+    public NodeMap(Node content, NodeTypeFilter childFilter) {
         super(content);
-        this.nodeTypes = nodeTypes;
+        this.childFilter = childFilter;
     }
+
     @Override
     public Object get(Object key) {
         String keyStr;
@@ -41,27 +49,37 @@ public class NodeMap extends ContentMap {
                 log.error("Errors getting children of node {}", node, e);
             }
         }
+        // Special case for field "lastModified", unless the node has a property with that name
+        if (LAST_MODIFIED_FIELD.equals(keyStr) && !super.containsKey(keyStr)) {
+            return getLastModified(getJCRNode());
+        }
         return super.get(key);
     }
 
+    /**
+     * mgnl:lastModified of the node as ISO 8601, read from the node without decorators because system properties
+     * may be filtered out
+     */
+    public static String getLastModified(Node node) {
+        try {
+            Calendar lastModified = NodeTypes.LastModified.getLastModified(NodeUtil.unwrap(node));
+            return (lastModified == null)? null: ISO8601.format(lastModified);
+        } catch (RepositoryException e) {
+            log.error("Errors getting last modification of node {}", node, e);
+            return null;
+        }
+    }
+
     @Override
     public boolean containsValue(Object value) {
         return super.containsValue(value);
     }
 
+    /**
+     * Children of the node filtered by the node types of the field while they are read, just the accepted ones are
+     * wrapped
+     */
     private List<NodeMap> getChildren(Node node) throws RepositoryException {
-        List<NodeMap> children = new ArrayList<>();
-        node.getNodes().forEachRemaining(child -> children.add(new NodeMap((Node)child, nodeTypes)));
-        // Filter the children by nodeType
-        if (!nodeTypes.isEmpty()) {
-            return children.stream()
-                    .filter(nodeMap -> {
-                        NodeTypesPredicate nodeTypesPredicate = new NodeTypesPredicate(nodeTypes, false);
-                        return nodeTypesPredicate.evaluateTyped(nodeMap.getJCRNode());
-                    })
-                    .collect(Collectors.toList());
-        }
-
-        return children;
+        return childFilter.children(node, child -> new NodeMap(child, childFilter));
     }
 }
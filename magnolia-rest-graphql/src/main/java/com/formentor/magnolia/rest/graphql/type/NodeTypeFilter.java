@@ -0,0 +1,102 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.nodetype.NodeType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Filter of the nodes by the node types of a field tagged with @definition or @delivery.
+ *
+ * A node is accepted if it is of one of the node types, its subtypes included, like the not strict NodeTypesPredicate
+ * of the delivery endpoints. The filter is built once with the fetcher of the field and shared by all the nodes it
+ * returns and their children, the result of every node type is cached by its name so checking a node costs a lookup.
+ */
+@Slf4j
+public final class NodeTypeFilter implements Predicate<Node> {
+    /**
+     * Filter of the fields without node types, accepts all the nodes
+     */
+    public static final NodeTypeFilter ALL = new NodeTypeFilter(Collections.emptyList());
+
+    private final List<String> nodeTypes;
+    // Node type name -> accepted, the node types are few so the map stays small
+    private final Map<String, Boolean> accepted = new ConcurrentHashMap<>();
+
+    private NodeTypeFilter(List<String> nodeTypes) {
+        this.nodeTypes = nodeTypes;
+    }
+
+    /**
+     * Filter of the node types
+     *
+     * @param nodeTypes node types of the field, null or empty to accept all the nodes
+     * @return
+     */
+    public static NodeTypeFilter of(List<String> nodeTypes) {
+        return (nodeTypes == null || nodeTypes.isEmpty())? ALL: new NodeTypeFilter(Collections.unmodifiableList(new ArrayList<>(nodeTypes)));
+    }
+
+    public List<String> getNodeTypes() {
+        return nodeTypes;
+    }
+
+    @Override
+    public boolean test(Node node) {
+        if (nodeTypes.isEmpty()) {
+            return true;
+        }
+        try {
+            if (accepts(node.getPrimaryNodeType())) {
+                return true;
+            }
+            for (NodeType mixin: node.getMixinNodeTypes()) {
+                if (accepts(mixin)) {
+                    return true;
+                }
+            }
+        } catch (RepositoryException e) {
+            log.debug("Node types of node {} can not be read", node, e);
+        }
+        return false;
+    }
+
+    /**
+     * Children of the node accepted by the filter, just the accepted ones are wrapped
+     *
+     * @param node    parent node
+     * @param wrapper wraps the JCR node into the type of the field
+     * @return
+     * @throws RepositoryException
+     */
+    public <T> List<T> children(Node node, Function<Node, T> wrapper) throws RepositoryException {
+        NodeIterator iterator = node.getNodes();
+        long size = iterator.getSize();
+        List<T> children = new ArrayList<>((size > 0 && size < Integer.MAX_VALUE)? (int) size: 10);
+        while (iterator.hasNext()) {
+            Node child = iterator.nextNode();
+            if (test(child)) {
+                children.add(wrapper.apply(child));
+            }
+        }
+        return children;
+    }
+
+    private boolean accepts(NodeType type) {
+        Boolean result = accepted.get(type.getName());
+        if (result == null) {
+            result = nodeTypes.stream().anyMatch(type::isNodeType);
+            accepted.put(type.getName(), result);
+        }
+        return result;
+    }
+}
@@ -1,9 +1,23 @@
 package com.formentor.magnolia.rest.graphql.type;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jackrabbit.util.ISO8601;
 
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.ValueFormatException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+/**
+ * Property of a node with typed accessors.
+ *
+ * Every accessor converts the values of the property to its type as JCR does, null if they can not be converted.
+ * The values of binary properties are never read by the accessors, "binary" has their metadata and the url where
+ * they are streamed from.
+ */
 @Slf4j
 public class Property {
     private final javax.jcr.Property property;
@@ -16,14 +30,127 @@ public class Property {
         return property.getName();
     }
 
+    /**
+     * Name of the type of the property, i.e. "String", "Long" or "Binary"
+     * @return
+     * @throws RepositoryException
+     */
+    public String getType() throws RepositoryException {
+        return PropertyType.nameFromValue(property.getType());
+    }
+
+    public boolean isMultiple() throws RepositoryException {
+        return property.isMultiple();
+    }
+
+    /**
+     * Value as a string, null for binary and multi-valued properties
+     * @return
+     */
     public String getString() {
+        return value(Value::getString);
+    }
+
+    public Long getLong() {
+        return value(Value::getLong);
+    }
+
+    public Double getDouble() {
+        return value(Value::getDouble);
+    }
+
+    public Boolean getBoolean() {
+        return value(Value::getBoolean);
+    }
+
+    /**
+     * Value as a date in ISO 8601
+     * @return
+     */
+    public String getDate() {
+        return value(value -> ISO8601.format(value.getDate()));
+    }
+
+    /**
+     * Values as strings, a list with the value if the property is not multi-valued
+     * @return
+     */
+    public List<String> getStrings() {
+        return values(Value::getString);
+    }
+
+    public List<Long> getLongs() {
+        return values(Value::getLong);
+    }
+
+    public List<Double> getDoubles() {
+        return values(Value::getDouble);
+    }
+
+    public List<Boolean> getBooleans() {
+        return values(Value::getBoolean);
+    }
+
+    public List<String> getDates() {
+        return values(value -> ISO8601.format(value.getDate()));
+    }
+
+    /**
+     * Metadata of the value of a binary property, null for other types
+     * @return
+     * @throws RepositoryException
+     */
+    public BinaryMetadata getBinary() throws RepositoryException {
+        if (property.getType() != PropertyType.BINARY || property.isMultiple()) {
+            return null;
+        }
+        return new BinaryMetadata(property);
+    }
+
+    public javax.jcr.Property getJCRProperty() {
+        return property;
+    }
+
+    private <T> T value(ValueReader<T> reader) {
         try {
-            return property.getString();
-        } catch (Exception e) {
-            log.error("Errors getting string from property {}", property, e);
+            if (property.isMultiple() || property.getType() == PropertyType.BINARY) {
+                return null;
+            }
+            return reader.read(property.getValue());
+        } catch (ValueFormatException e) {
+            // Not convertible to the type requested
+            return null;
+        } catch (RepositoryException e) {
+            log.error("Errors getting value of property {}", property, e);
             return null;
         }
+    }
 
+    private <T> List<T> values(ValueReader<T> reader) {
+        try {
+            if (property.getType() == PropertyType.BINARY) {
+                return null;
+            }
+            if (!property.isMultiple()) {
+                return Collections.singletonList(reader.read(property.getValue()));
+            }
+            Value[] values = property.getValues();
+            List<T> result = new ArrayList<>(values.length);
+            for (Value value: values) {
+                result.add(reader.read(value));
+            }
+            return result;
+        } catch (ValueFormatException e) {
+            // Not convertible to the type requested
+            return null;
+        } catch (RepositoryException e) {
+            log.error("Errors getting values of property {}", property, e);
+            return null;
+        }
     }
 
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read(Value value) throws RepositoryException;
+    }
 }
@@ -0,0 +1,150 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nodes below a root node up to a depth, read with a single query and kept by the path of their parent, so the
+ * children of every node of the subtree are served without reading the repository.
+ *
+ * The results of the query come in the order of the index, so the children of a parent are sorted in the order of the
+ * child nodes of the parent in the repository when they are requested for the first time.
+ */
+public class Subtree {
+    private final String rootPath;
+    private final int rootDepth;
+    private final int maxDepth;
+    // Parent path -> children
+    private final Map<String, List<Node>> children = new HashMap<>();
+    // Parent paths whose children are sorted already
+    private final Set<String> sorted = new HashSet<>();
+    private int size;
+
+    /**
+     * @param rootPath path of the root node
+     * @param maxDepth levels below the root node kept, 1 for the children of the root
+     */
+    public Subtree(String rootPath, int maxDepth) {
+        this.rootPath = rootPath;
+        this.rootDepth = depth(rootPath);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Adds the node to the children of its parent
+     *
+     * @param node
+     * @return false if the node is not below the root or it is deeper than the max depth
+     * @throws RepositoryException
+     */
+    public boolean add(Node node) throws RepositoryException {
+        String path = node.getPath();
+        int level = level(path);
+        if (level < 1 || level > maxDepth) {
+            return false;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        String parentPath = (lastSlash == 0)? "/": path.substring(0, lastSlash);
+        children.computeIfAbsent(parentPath, key -> new ArrayList<>()).add(node);
+        size++;
+        return true;
+    }
+
+    /**
+     * Checks if the children of the node with the path are in the subtree
+     * @param path
+     * @return
+     */
+    public boolean contains(String path) {
+        int level = level(path);
+        return level >= 0 && level < maxDepth;
+    }
+
+    /**
+     * Children of the node in the order of the repository, empty if it has none or they are not in the subtree
+     * @param parent
+     * @return
+     * @throws RepositoryException
+     */
+    public List<Node> getChildren(Node parent) throws RepositoryException {
+        String path = parent.getPath();
+        List<Node> nodes = children.get(path);
+        if (nodes == null) {
+            return Collections.emptyList();
+        }
+        if (nodes.size() > 1 && sorted.add(path)) {
+            sortBySiblingOrder(parent, nodes);
+        }
+        return nodes;
+    }
+
+    /**
+     * Number of nodes of the subtree
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the nodes by the position of their names among the child nodes of the parent
+     */
+    private static void sortBySiblingOrder(Node parent, List<Node> nodes) throws RepositoryException {
+        Map<String, Integer> positions = new HashMap<>();
+        for (Node node: nodes) {
+            positions.put(node.getName(), Integer.MAX_VALUE);
+        }
+        int found = 0;
+        int position = 0;
+        NodeIterator siblings = parent.getNodes();
+        // The iteration stops once the position of every node is known
+        while (siblings.hasNext() && found < positions.size()) {
+            String name = siblings.nextNode().getName();
+            Integer current = positions.get(name);
+            if (current != null && current == Integer.MAX_VALUE) {
+                positions.put(name, position);
+                found++;
+            }
+            position++;
+        }
+
+        Map<Node, Integer> keys = new IdentityHashMap<>();
+        for (Node node: nodes) {
+            keys.put(node, positions.get(node.getName()));
+        }
+        nodes.sort(Comparator.comparing(keys::get));
+    }
+
+    /**
+     * Level of the path below the root, -1 if it is not below the root
+     */
+    private int level(String path) {
+        if (!path.equals(rootPath) && !"/".equals(rootPath) && !path.startsWith(rootPath + "/")) {
+            return -1;
+        }
+        return depth(path) - rootDepth;
+    }
+
+    private static int depth(String path) {
+        if ("/".equals(path)) {
+            return 0;
+        }
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+}
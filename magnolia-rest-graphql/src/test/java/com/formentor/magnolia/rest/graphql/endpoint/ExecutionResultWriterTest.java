@@ -0,0 +1,117 @@
+package com.formentor.magnolia.rest.graphql.endpoint;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQL;
+import graphql.GraphqlErrorBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ExecutionResultWriterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutionResultWriter writer = new ExecutionResultWriter(objectMapper.getFactory());
+
+    @Test
+    public void resultIsWrittenAsTheSpecification() throws Exception {
+        Map<String, Object> tour = new LinkedHashMap<>();
+        tour.put("name", "Kyoto");
+        tour.put("duration", 7);
+        tour.put("price", 9.5);
+        tour.put("isFeatured", true);
+        tour.put("tags", Arrays.asList("asia", "culture"));
+        tour.put("author", null);
+        ExecutionResult result = ExecutionResultImpl.newExecutionResult()
+                .data(Collections.singletonMap("tours_ql", Collections.singletonList(tour)))
+                .addError(GraphqlErrorBuilder.newError().message("Failed").build())
+                .addExtension("metrics", Collections.singletonMap("fields", 6))
+                .build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(result, output);
+
+        assertEquals(objectMapper.valueToTree(result.toSpecification()), objectMapper.readTree(output.toByteArray()));
+    }
+
+    @Test
+    public void deferredResultsAreNotWritten() throws Exception {
+        ExecutionResult result = ExecutionResultImpl.newExecutionResult()
+                .data(Collections.singletonMap("name", "Kyoto"))
+                .addExtension(GraphQL.DEFERRED_RESULTS, new Object())
+                .build();
+
+        JsonNode json = write(result);
+
+        assertFalse(json.has("extensions"));
+        assertFalse(json.has("errors"));
+        assertEquals("Kyoto", json.path("data").path("name").asText());
+    }
+
+    @Test
+    public void batchIsWrittenAsAnArray() throws Exception {
+        ExecutionResult first = ExecutionResultImpl.newExecutionResult().data(Collections.singletonMap("name", "Kyoto")).build();
+        ExecutionResult second = ExecutionResultImpl.newExecutionResult().addError(GraphqlErrorBuilder.newError().message("Failed").build()).build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(Arrays.asList(first, second), output);
+        JsonNode json = objectMapper.readTree(output.toByteArray());
+
+        assertEquals(2, json.size());
+        assertEquals(objectMapper.valueToTree(first.toSpecification()), json.get(0));
+        assertEquals(objectMapper.valueToTree(second.toSpecification()), json.get(1));
+    }
+
+    @Test
+    public void partsAreWrittenWithoutClosingTheStream() throws Exception {
+        ExecutionResult deferred = ExecutionResultImpl.newExecutionResult().data(Collections.singletonMap("author", "Jane")).build();
+        ClosingAwareOutputStream output = new ClosingAwareOutputStream();
+
+        writer.writePart(deferred, Arrays.asList("tours_ql", 0), false, output);
+
+        assertFalse(output.closed);
+        JsonNode json = objectMapper.readTree(output.toByteArray());
+        assertEquals("Jane", json.path("data").path("author").asText());
+        assertEquals("tours_ql", json.path("path").get(0).asText());
+        assertEquals(0, json.path("path").get(1).asInt());
+        assertFalse(json.path("hasNext").asBoolean());
+
+        // The last part may have just hasNext
+        ClosingAwareOutputStream last = new ClosingAwareOutputStream();
+        writer.writePart(null, null, false, last);
+        assertEquals(Collections.singletonList("hasNext"), fieldNames(objectMapper.readTree(last.toByteArray())));
+    }
+
+    private JsonNode write(ExecutionResult result) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(result, output);
+        return objectMapper.readTree(output.toByteArray());
+    }
+
+    private static List<String> fieldNames(JsonNode json) {
+        List<String> names = new ArrayList<>();
+        json.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static final class ClosingAwareOutputStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
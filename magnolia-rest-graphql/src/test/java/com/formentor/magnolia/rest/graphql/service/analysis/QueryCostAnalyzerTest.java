@@ -0,0 +1,96 @@
+package com.formentor.magnolia.rest.graphql.service.analysis;
+
+import com.formentor.magnolia.rest.graphql.QueryLimits;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryCostAnalyzerTest {
+    private static final String SCHEMA = "type Query { tours_ql: [Tour], tours_connection(first: Int, last: Int): TourConnection, node(path: String): Node }"
+            + " type Tour { name: String, duration: Int }"
+            + " type TourConnection { edges: [TourEdge] }"
+            + " type TourEdge { cursor: String, node: Tour }"
+            + " type Node { name: String, children: [Node], descendants(depth: Int): [Node] }";
+
+    private GraphQLSchema schema;
+    private QueryLimits limits;
+
+    @Before
+    public void setUp() {
+        schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), RuntimeWiring.newRuntimeWiring().build());
+        limits = new QueryLimits();
+    }
+
+    @Test
+    public void fieldsOfListsAreMultipliedByTheDefaultSize() {
+        QueryCost cost = analyze("{ tours_ql { name duration } }");
+
+        assertEquals(1 + 20 * 2, cost.getComplexity());
+        assertEquals(2, cost.getDepth());
+        assertEquals(0, cost.getAliases());
+    }
+
+    @Test
+    public void sizeOfFieldsOfQueryIsConfigured() {
+        limits.getListSizes().put("tours_ql", 50);
+
+        assertEquals(1 + 50, analyze("{ tours_ql { name } }").getComplexity());
+    }
+
+    @Test
+    public void nestedListsAreMultiplied() {
+        QueryCost cost = analyze("{ node(path: \"/\") { children { name children { name } } } }");
+
+        assertEquals(1 + 1 + 20 * (1 + 1 + 20), cost.getComplexity());
+        assertEquals(4, cost.getDepth());
+    }
+
+    @Test
+    public void connectionsAreMultipliedByThePageSize() {
+        assertEquals(1 + 5 * (1 + 1 + 1 + 1), analyze("{ tours_connection(first: 5) { edges { cursor node { name } } } }").getComplexity());
+    }
+
+    @Test
+    public void descendantsAreWeightedByDepth() {
+        assertEquals(1 + 1 + 20 * 3, analyze("{ node(path: \"/a\") { descendants { name } } }").getComplexity());
+        assertEquals(1 + 1 + 20 * 5, analyze("{ node(path: \"/a\") { descendants(depth: 5) { name } } }").getComplexity());
+        // The depth is bounded as the fetcher does
+        assertEquals(1 + 1 + 20 * 10, analyze("{ node(path: \"/a\") { descendants(depth: 50) { name } } }").getComplexity());
+    }
+
+    @Test
+    public void aliasesAreCounted() {
+        assertEquals(3, analyze("{ a: tours_ql { n: name } b: tours_ql { name } }").getAliases());
+    }
+
+    @Test
+    public void variablesAreUsedAsArguments() {
+        Document document = new Parser().parseDocument("query Tours($first: Int) { tours_connection(first: $first) { edges { node { name } } } }");
+        QueryCost cost = new QueryCostAnalyzer(limits).analyze(schema, document, "Tours", Collections.singletonMap("first", 2));
+
+        assertEquals(1 + 2 * (1 + 1 + 1), cost.getComplexity());
+    }
+
+    @Test
+    public void complexitySaturatesInsteadOfOverflowing() {
+        limits.setDefaultListSize(Integer.MAX_VALUE);
+
+        QueryCost cost = analyze("{ node { children { children { children { children { name } } } } } }");
+
+        assertEquals(Long.MAX_VALUE, cost.getComplexity());
+    }
+
+    private QueryCost analyze(String query) {
+        Document document = new Parser().parseDocument(query);
+        return new QueryCostAnalyzer(limits).analyze(schema, document, null, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,134 @@
+package com.formentor.magnolia.rest.graphql.service.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FetcherExecutorTest {
+
+    private FetcherExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new FetcherExecutor(4, 10, false);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void fetchersOutOfScopeRunInTheCallingThread() {
+        Thread caller = Thread.currentThread();
+
+        CompletableFuture<Thread> result = executor.supply("tours", Thread::currentThread);
+
+        assertTrue(result.isDone());
+        assertSame(caller, result.join());
+    }
+
+    @Test
+    public void fetchersOfAScopeRunWhenTheResultIsAwaited() {
+        try (FetcherExecutor.Scope scope = executor.open()) {
+            CompletableFuture<String> result = executor.supply("tours", () -> "Kyoto");
+            assertFalse(result.isDone());
+
+            scope.await(result);
+
+            assertEquals("Kyoto", result.join());
+        }
+    }
+
+    @Test
+    public void workspacesRunInParallelAndFuturesAreCompletedByTheCaller() throws Exception {
+        Thread caller = Thread.currentThread();
+        // Both fetchers wait for each other, so they only finish if they run at the same time
+        CountDownLatch started = new CountDownLatch(2);
+        List<Thread> completedBy = new CopyOnWriteArrayList<>();
+
+        try (FetcherExecutor.Scope scope = executor.open()) {
+            CompletableFuture<Thread> tours = executor.supply("tours", () -> awaitOthers(started));
+            CompletableFuture<Thread> website = executor.supply("website", () -> awaitOthers(started));
+            tours.thenRun(() -> completedBy.add(Thread.currentThread()));
+            website.thenRun(() -> completedBy.add(Thread.currentThread()));
+
+            scope.await(CompletableFuture.allOf(tours, website));
+
+            assertNotEquals(tours.join(), website.join());
+            assertNotEquals(caller, tours.join());
+        }
+        assertEquals(2, completedBy.size());
+        completedBy.forEach(thread -> assertSame(caller, thread));
+    }
+
+    @Test
+    public void fetchersOfAWorkspaceRunOneAfterAnother() {
+        List<String> calls = new CopyOnWriteArrayList<>();
+
+        try (FetcherExecutor.Scope scope = executor.open()) {
+            CompletableFuture<Thread> first = executor.supply("tours", () -> {
+                calls.add("first");
+                return Thread.currentThread();
+            });
+            CompletableFuture<Thread> second = executor.supply("tours", () -> {
+                calls.add("second");
+                return Thread.currentThread();
+            });
+            executor.supply("website", () -> null);
+
+            scope.await(CompletableFuture.allOf(first, second));
+
+            assertSame(first.join(), second.join());
+        }
+        assertEquals(2, calls.size());
+        assertEquals("first", calls.get(0));
+    }
+
+    @Test
+    public void errorsOfFetchersCompleteTheirFutures() {
+        try (FetcherExecutor.Scope scope = executor.open()) {
+            CompletableFuture<String> failed = executor.supply("tours", () -> {
+                throw new IllegalStateException("denied");
+            });
+            CompletableFuture<String> other = executor.supply("tours", () -> "Kyoto");
+
+            scope.await(CompletableFuture.allOf(failed, other));
+
+            assertTrue(failed.isCompletedExceptionally());
+            assertEquals("Kyoto", other.join());
+        }
+    }
+
+    @Test
+    public void closingTheScopeCancelsTheFetchersNotStarted() {
+        CompletableFuture<String> result;
+        try (FetcherExecutor.Scope scope = executor.open()) {
+            result = executor.supply("tours", () -> "Kyoto");
+        }
+
+        assertTrue(result.isCancelled());
+        // Out of the scope again
+        assertTrue(executor.supply("tours", () -> "Kyoto").isDone());
+    }
+
+    private static Thread awaitOthers(CountDownLatch started) throws InterruptedException {
+        started.countDown();
+        if (!started.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Fetchers did not run in parallel");
+        }
+        return Thread.currentThread();
+    }
+}
@@ -0,0 +1,112 @@
+package com.formentor.magnolia.rest.graphql.service.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryResultCacheTest {
+    private static final List<String> IDENTIFIERS = Arrays.asList("id-1", "id-2");
+
+    private QueryResultCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new QueryResultCache(100, 60);
+    }
+
+    @Test
+    public void resultsAreCachedByKey() {
+        QueryResultCache.Key key = new QueryResultCache.Key("tours", "/travels", "tours_ql");
+        long generation = generation("tours", "/travels");
+
+        cache.put(key, IDENTIFIERS, generation);
+
+        assertEquals(IDENTIFIERS, cache.get(key));
+        assertEquals(IDENTIFIERS, cache.get(new QueryResultCache.Key("tours", "/travels", "tours_ql")));
+        assertNull(cache.get(new QueryResultCache.Key("tours", "/travels", "tours_ql(first: 5)")));
+    }
+
+    @Test
+    public void resultsOfQueriesStartedBeforeAnInvalidationAreDiscarded() {
+        QueryResultCache.Key key = new QueryResultCache.Key("tours", "/travels", "tours_ql");
+        long generation = generation("tours", "/travels");
+
+        // Changed while the query was executed
+        cache.invalidate("tours", "/travels");
+        cache.put(key, IDENTIFIERS, generation);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void resultsOfScopesNeverPreparedAreNotCached() {
+        QueryResultCache.Key key = new QueryResultCache.Key("tours", "/travels", "tours_ql");
+
+        cache.put(key, IDENTIFIERS, 0);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void invalidationRemovesJustTheEntriesOfTheScope() {
+        QueryResultCache.Key travels = new QueryResultCache.Key("tours", "/travels", "tours_ql");
+        QueryResultCache.Key website = new QueryResultCache.Key("website", "/travels", "pages");
+        cache.put(travels, IDENTIFIERS, generation("tours", "/travels"));
+        cache.put(website, IDENTIFIERS, generation("website", "/travels"));
+
+        cache.invalidate("tours", "/travels");
+
+        assertNull(cache.get(travels));
+        assertEquals(IDENTIFIERS, cache.get(website));
+    }
+
+    @Test
+    public void invalidationOfPathRemovesTheScopesAboveAndBelowIt() {
+        QueryResultCache.Key root = cached("tours", null);
+        QueryResultCache.Key travels = cached("tours", "/travels");
+        QueryResultCache.Key kyoto = cached("tours", "/travels/asia/kyoto");
+        QueryResultCache.Key europe = cached("tours", "/travels/europe");
+        QueryResultCache.Key other = cached("tours", "/travelsother");
+
+        cache.invalidatePath("tours", "/travels/asia");
+
+        assertNull(cache.get(root));
+        assertNull(cache.get(travels));
+        assertNull(cache.get(kyoto));
+        assertEquals(IDENTIFIERS, cache.get(europe));
+        assertEquals(IDENTIFIERS, cache.get(other));
+    }
+
+    @Test
+    public void invalidationOfRootRemovesTheWholeWorkspace() {
+        QueryResultCache.Key travels = new QueryResultCache.Key("tours", "/travels", "tours_ql");
+        QueryResultCache.Key website = new QueryResultCache.Key("website", "/", "pages");
+        cache.put(travels, IDENTIFIERS, generation("tours", "/travels"));
+        cache.put(website, Collections.singletonList("id-3"), generation("website", "/"));
+
+        cache.invalidatePath("tours", null);
+
+        assertNull(cache.get(travels));
+        assertEquals(Collections.singletonList("id-3"), cache.get(website));
+    }
+
+    /**
+     * Generation of a new scope, without registering the observation listener of prepare() that needs a repository
+     */
+    private long generation(String workspace, String rootPath) {
+        cache.invalidate(workspace, rootPath);
+        return 1;
+    }
+
+    private QueryResultCache.Key cached(String workspace, String rootPath) {
+        QueryResultCache.Key key = new QueryResultCache.Key(workspace, rootPath, "tours_ql");
+        cache.put(key, IDENTIFIERS, generation(workspace, rootPath));
+        return key;
+    }
+}
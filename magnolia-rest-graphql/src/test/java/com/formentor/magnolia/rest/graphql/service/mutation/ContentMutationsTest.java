@@ -0,0 +1,185 @@
+package com.formentor.magnolia.rest.graphql.service.mutation;
+
+import com.formentor.magnolia.rest.graphql.type.NodeMap;
+import info.magnolia.jcr.util.NodeTypes;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContentMutationsTest {
+
+    private ContentMutations mutations;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        mutations = new ContentMutations("/travels", Collections.singletonList("mgnl:tour"));
+        session = mock(Session.class);
+    }
+
+    @Test
+    public void deleteSavesTheSession() throws Exception {
+        Node kyoto = node("/travels/kyoto");
+
+        assertTrue(mutations.delete(session, "/travels/kyoto", null));
+
+        verify(kyoto).remove();
+        verify(session).save();
+        verify(session, never()).refresh(false);
+    }
+
+    @Test
+    public void pathsOutsideTheRootPathAreRejected() throws Exception {
+        for (String path: Arrays.asList(null, "/travels", "/travels/", "/other/kyoto", "/travelsother/kyoto", "travels/kyoto",
+                "/travels//kyoto", "/travels/../other", "/travels/asia/..", "/travels/./kyoto")) {
+            assertCode(MutationException.CODE_INVALID_PATH, () -> mutations.delete(session, path, null));
+        }
+        verify(session, never()).nodeExists(anyString());
+    }
+
+    @Test
+    public void rootPathOfTheWorkspaceAcceptsAllThePaths() throws Exception {
+        node("/kyoto");
+
+        assertTrue(new ContentMutations("/", null).delete(session, "/kyoto", null));
+    }
+
+    @Test
+    public void changesOfNodesModifiedAfterTheyWereReadAreRejected() throws Exception {
+        Node kyoto = node("/travels/kyoto");
+        Calendar modified = Calendar.getInstance();
+        Property lastModified = mock(Property.class);
+        when(lastModified.getDate()).thenReturn(modified);
+        when(kyoto.hasProperty(NodeTypes.LastModified.LAST_MODIFIED)).thenReturn(true);
+        when(kyoto.getProperty(NodeTypes.LastModified.LAST_MODIFIED)).thenReturn(lastModified);
+
+        assertCode(MutationException.CODE_CONFLICT, () -> mutations.delete(session, "/travels/kyoto", "2020-01-01T00:00:00.000Z"));
+        verify(kyoto, never()).remove();
+        verify(session, never()).save();
+        verify(session).refresh(false);
+
+        // The lastModified read by the client
+        assertTrue(mutations.delete(session, "/travels/kyoto", NodeMap.getLastModified(kyoto)));
+    }
+
+    @Test
+    public void missingNodesAreNotFound() throws Exception {
+        assertCode(MutationException.CODE_NOT_FOUND, () -> mutations.delete(session, "/travels/kyoto", null));
+        assertCode(MutationException.CODE_NOT_FOUND, () -> mutations.update(session, "/travels/kyoto", Collections.emptyMap(), null));
+        // The parent of a new node must exist
+        assertCode(MutationException.CODE_NOT_FOUND, () -> mutations.create(session, "/travels/asia/kyoto", Collections.emptyMap()));
+        verify(session, times(3)).refresh(false);
+    }
+
+    @Test
+    public void existingNodesAreNotCreated() throws Exception {
+        Node travels = node("/travels");
+        node("/travels/kyoto");
+
+        assertCode(MutationException.CODE_ALREADY_EXISTS, () -> mutations.create(session, "/travels/kyoto", Collections.emptyMap()));
+        verify(travels, never()).addNode("kyoto", "mgnl:tour");
+        verify(session, never()).save();
+    }
+
+    @Test
+    public void changesSavedByAnotherSessionAreConflicts() throws Exception {
+        node("/travels/kyoto");
+        doThrow(new InvalidItemStateException("modified")).when(session).save();
+
+        assertCode(MutationException.CODE_CONFLICT, () -> mutations.delete(session, "/travels/kyoto", null));
+        verify(session).refresh(false);
+    }
+
+    @Test
+    public void bulkChangesAreSavedOnce() throws Exception {
+        Node kyoto = node("/travels/kyoto");
+        Node lima = node("/travels/lima");
+
+        Map<String, Object> result = mutations.apply(session, Arrays.asList(
+                change(ContentMutations.OPERATION_DELETE, "/travels/kyoto"),
+                change(ContentMutations.OPERATION_DELETE, "/travels/lima")), 10);
+
+        assertEquals(0, result.get(ContentMutations.RESULT_created));
+        assertEquals(0, result.get(ContentMutations.RESULT_updated));
+        assertEquals(2, result.get(ContentMutations.RESULT_deleted));
+        verify(kyoto).remove();
+        verify(lima).remove();
+        verify(session, times(1)).save();
+    }
+
+    @Test
+    public void bulkChangesAreRolledBackIfAnyFails() throws Exception {
+        Node kyoto = node("/travels/kyoto");
+
+        assertCode(MutationException.CODE_NOT_ALLOWED, () -> mutations.apply(session, Arrays.asList(
+                change(ContentMutations.OPERATION_DELETE, "/travels/kyoto"),
+                change("MOVE", "/travels/lima")), 10));
+        assertCode(MutationException.CODE_NOT_FOUND, () -> mutations.apply(session, Arrays.asList(
+                change(ContentMutations.OPERATION_DELETE, "/travels/kyoto"),
+                change(ContentMutations.OPERATION_DELETE, "/travels/lima")), 10));
+
+        verify(kyoto, times(2)).remove();
+        verify(session, never()).save();
+        verify(session, times(2)).refresh(false);
+    }
+
+    @Test
+    public void bulkChangesAreLimited() throws Exception {
+        List<Map<String, Object>> changes = Arrays.asList(
+                change(ContentMutations.OPERATION_DELETE, "/travels/kyoto"),
+                change(ContentMutations.OPERATION_DELETE, "/travels/lima"));
+
+        assertCode(MutationException.CODE_TOO_MANY_CHANGES, () -> mutations.apply(session, changes, 1));
+        verify(session, never()).nodeExists("/travels/kyoto");
+    }
+
+    private Node node(String path) throws RepositoryException {
+        Node node = mock(Node.class);
+        when(node.getPath()).thenReturn(path);
+        when(session.nodeExists(path)).thenReturn(true);
+        when(session.getNode(path)).thenReturn(node);
+        return node;
+    }
+
+    private static Map<String, Object> change(String operation, String path) {
+        Map<String, Object> change = new HashMap<>();
+        change.put(ContentMutations.CHANGE_operation, operation);
+        change.put(ContentMutations.ARG_path, path);
+        return change;
+    }
+
+    private static void assertCode(String code, Mutation mutation) throws RepositoryException {
+        try {
+            mutation.run();
+            fail("Expected " + code);
+        } catch (MutationException e) {
+            assertEquals(code, e.getCode());
+        }
+    }
+
+    private interface Mutation {
+        void run() throws MutationException, RepositoryException;
+    }
+}
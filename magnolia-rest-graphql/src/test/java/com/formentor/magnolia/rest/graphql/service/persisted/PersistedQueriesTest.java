@@ -0,0 +1,104 @@
+package com.formentor.magnolia.rest.graphql.service.persisted;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class PersistedQueriesTest {
+    private static final String QUERY = "{ tours_ql { name } }";
+
+    private InMemoryPersistedQueryStore store;
+    private PersistedQueries persistedQueries;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryPersistedQueryStore();
+        persistedQueries = new PersistedQueries(store);
+    }
+
+    @Test
+    public void hashIsSha256InHexadecimal() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", PersistedQueries.hash(""));
+    }
+
+    @Test
+    public void requestsWithoutPersistedQueryAreNotChanged() throws Exception {
+        assertEquals(QUERY, persistedQueries.resolve(QUERY, null));
+        assertEquals(QUERY, persistedQueries.resolve(QUERY, Collections.emptyMap()));
+    }
+
+    @Test
+    public void unknownHashIsNotFound() {
+        assertError(null, extensions(1, PersistedQueries.hash(QUERY)), PersistedQueryException.CODE_NOT_FOUND);
+    }
+
+    @Test
+    public void queryIsPersistedWhenRegistered() throws Exception {
+        Map<String, Object> extensions = extensions(1, PersistedQueries.hash(QUERY));
+
+        assertEquals(QUERY, persistedQueries.resolve(QUERY, extensions));
+        // Not persisted until the query is validated
+        assertNull(store.get(PersistedQueries.hash(QUERY)));
+
+        persistedQueries.register(QUERY, extensions);
+        assertEquals(QUERY, persistedQueries.resolve(null, extensions));
+        assertEquals(QUERY, persistedQueries.resolve("", extensions));
+    }
+
+    @Test
+    public void hashNotMatchingTheQueryIsRejected() {
+        Map<String, Object> extensions = extensions(1, PersistedQueries.hash("{ other }"));
+
+        assertError(QUERY, extensions, PersistedQueryException.CODE_HASH_MISMATCH);
+
+        persistedQueries.register(QUERY, extensions);
+        assertNull(store.get(PersistedQueries.hash("{ other }")));
+    }
+
+    @Test
+    public void registeredQueryIsNotReplaced() {
+        String hash = PersistedQueries.hash(QUERY);
+        store.put(hash, QUERY);
+
+        persistedQueries.register(QUERY + " ", extensions(1, hash));
+
+        assertEquals(QUERY, store.get(hash));
+    }
+
+    @Test
+    public void unsupportedVersionsAndHashesAreRejected() {
+        String hash = PersistedQueries.hash(QUERY);
+
+        assertError(QUERY, extensions(2, hash), PersistedQueryException.CODE_NOT_SUPPORTED);
+        assertError(QUERY, extensions(1, hash.toUpperCase()), PersistedQueryException.CODE_NOT_SUPPORTED);
+        assertError(QUERY, extensions(1, "../" + hash.substring(3)), PersistedQueryException.CODE_NOT_SUPPORTED);
+        assertError(QUERY, extensions(1, null), PersistedQueryException.CODE_NOT_SUPPORTED);
+
+        persistedQueries.register(QUERY, extensions(2, hash));
+        assertNull(store.get(hash));
+    }
+
+    private void assertError(String query, Map<String, Object> extensions, String code) {
+        try {
+            persistedQueries.resolve(query, extensions);
+            fail("Expected error " + code);
+        } catch (PersistedQueryException e) {
+            assertEquals(code, e.getCode());
+        }
+    }
+
+    private static Map<String, Object> extensions(int version, String hash) {
+        Map<String, Object> persistedQuery = new HashMap<>();
+        persistedQuery.put(PersistedQueries.PERSISTED_QUERY_version, version);
+        persistedQuery.put(PersistedQueries.PERSISTED_QUERY_sha256Hash, hash);
+
+        return Collections.singletonMap(PersistedQueries.EXTENSION_persistedQuery, persistedQuery);
+    }
+}
@@ -0,0 +1,77 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import com.formentor.magnolia.rest.graphql.service.query.NodeQueryBuilder.Operator;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class NodeQueryBuilderTest {
+
+    @Test
+    public void buildStatementWithRootPathAndNodeTypes() {
+        String statement = NodeQueryBuilder.create()
+                .rootPath("/magnolia-travels")
+                .nodeTypes(Arrays.asList("mgnl:content", "mgnl:page"))
+                .buildStatement();
+
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE ISDESCENDANTNODE(t, '/magnolia-travels')"
+                + " AND (t.[jcr:primaryType] = 'mgnl:content' OR t.[jcr:primaryType] = 'mgnl:page')", statement);
+    }
+
+    @Test
+    public void buildStatementWithoutConditionsOnRoot() {
+        assertEquals("SELECT * FROM [nt:base] AS t", NodeQueryBuilder.create().rootPath("/").buildStatement());
+        assertEquals("SELECT * FROM [nt:base] AS t", NodeQueryBuilder.create().rootPath("").buildStatement());
+    }
+
+    @Test
+    public void buildStatementWithConditionsAndOrderings() {
+        String statement = NodeQueryBuilder.create()
+                .from("mgnl:content")
+                .condition("duration", Operator.GTE, 7)
+                .condition("price", Operator.LT, 9.5)
+                .condition("isFeatured", Operator.EQ, true)
+                .condition("name", Operator.LIKE, "%Kyoto%")
+                .contains("temple")
+                .orderBy("name", true)
+                .orderBy("duration", false)
+                .buildStatement();
+
+        assertEquals("SELECT * FROM [mgnl:content] AS t WHERE t.[duration] >= CAST('7' AS LONG)"
+                + " AND t.[price] < CAST('9.5' AS DOUBLE)"
+                + " AND t.[isFeatured] = CAST('true' AS BOOLEAN)"
+                + " AND t.[name] LIKE '%Kyoto%'"
+                + " AND CONTAINS(t.*, 'temple')"
+                + " ORDER BY t.[name] ASC, t.[duration] DESC", statement);
+    }
+
+    @Test
+    public void quotesAreEscaped() {
+        String statement = NodeQueryBuilder.create()
+                .rootPath("/it's")
+                .condition("location", Operator.EQ, "') OR 1=1 OR ('")
+                .contains("don't")
+                .buildStatement();
+
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE ISDESCENDANTNODE(t, '/it''s')"
+                + " AND t.[location] = ''') OR 1=1 OR ('''"
+                + " AND CONTAINS(t.*, 'don''t')", statement);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPropertyNameIsRejected() {
+        NodeQueryBuilder.create().condition("name] = 'x' OR t.[name", Operator.EQ, "y");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidOrderingIsRejected() {
+        NodeQueryBuilder.create().orderBy("name DESC, t.[other]", true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidNodeTypeIsRejected() {
+        NodeQueryBuilder.create().from("nt:base] AS t, [nt:base");
+    }
+}
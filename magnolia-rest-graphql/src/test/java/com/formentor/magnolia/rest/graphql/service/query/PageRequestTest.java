@@ -0,0 +1,107 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import com.formentor.magnolia.rest.graphql.type.Connection;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PageRequestTest {
+
+    @Test
+    public void withoutArgumentsReadsAll() {
+        PageRequest page = PageRequest.of(null, null, null, null, () -> 100);
+
+        assertEquals(0, page.getOffset());
+        assertEquals(PageRequest.NO_LIMIT, page.getLimit());
+
+        Connection<String> connection = page.toConnection(Arrays.asList("a", "b"));
+        assertEquals(2, connection.getEdges().size());
+        assertFalse(connection.getPageInfo().isHasNextPage());
+        assertFalse(connection.getPageInfo().isHasPreviousPage());
+    }
+
+    @Test
+    public void firstReadsOneMoreToKnowIfThereIsNextPage() {
+        PageRequest page = PageRequest.of(2, null, null, null, () -> 100);
+
+        assertEquals(0, page.getOffset());
+        assertEquals(3, page.getLimit());
+
+        Connection<String> connection = page.toConnection(Arrays.asList("a", "b", "c"));
+        assertEquals(2, connection.getEdges().size());
+        assertEquals("b", connection.getEdges().get(1).getNode());
+        assertTrue(connection.getPageInfo().isHasNextPage());
+
+        Connection<String> lastPage = page.toConnection(Arrays.asList("a", "b"));
+        assertFalse(lastPage.getPageInfo().isHasNextPage());
+    }
+
+    @Test
+    public void afterStartsNextToTheCursor() {
+        Connection<String> first = PageRequest.of(2, null, null, null, () -> 100).toConnection(Arrays.asList("a", "b", "c"));
+        PageRequest next = PageRequest.of(2, first.getPageInfo().getEndCursor(), null, null, () -> 100);
+
+        assertEquals(2, next.getOffset());
+        assertEquals(3, next.getLimit());
+
+        Connection<String> connection = next.toConnection(Arrays.asList("c", "d", "e"));
+        assertEquals("c", connection.getEdges().get(0).getNode());
+        assertTrue(connection.getPageInfo().isHasPreviousPage());
+    }
+
+    @Test
+    public void beforeBoundsThePage() {
+        Connection<String> items = PageRequest.of(10, null, null, null, () -> 100)
+                .toConnection(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"));
+        String cursorOfG = items.getEdges().get(6).getCursor();
+
+        PageRequest page = PageRequest.of(null, null, 2, cursorOfG, () -> 100);
+        assertEquals(4, page.getOffset());
+        assertEquals(2, page.getLimit());
+
+        Connection<String> connection = page.toConnection(Arrays.asList("e", "f"));
+        assertEquals(2, connection.getEdges().size());
+        assertTrue(connection.getPageInfo().isHasNextPage());
+        assertTrue(connection.getPageInfo().isHasPreviousPage());
+    }
+
+    @Test
+    public void lastWithoutBeforeCountsTheResults() {
+        PageRequest page = PageRequest.of(null, null, 3, null, () -> 10);
+
+        assertEquals(7, page.getOffset());
+    }
+
+    @Test
+    public void emptyPageHasNoCursors() {
+        Connection<String> connection = PageRequest.of(5, null, null, null, () -> 0).toConnection(Collections.emptyList());
+
+        assertNull(connection.getPageInfo().getStartCursor());
+        assertNull(connection.getPageInfo().getEndCursor());
+    }
+
+    @Test
+    public void invalidArgumentsAreRejected() {
+        assertInvalid(-1, null, null, null);
+        assertInvalid(null, null, -1, null);
+        assertInvalid(1, "not a cursor", null, null);
+        assertInvalid(1, "b2Zmc2V0Oi0x", null, null);
+        assertInvalid(null, null, 1, "b2Zmc2V0OmFiYw==");
+    }
+
+    private static void assertInvalid(Integer first, String after, Integer last, String before) {
+        try {
+            PageRequest.of(first, after, last, before, () -> 100);
+            fail("Arguments should be rejected: " + first + ", " + after + ", " + last + ", " + before);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.formentor.magnolia.rest.graphql.service.query;
+
+import com.formentor.magnolia.rest.graphql.service.schema.FilterTypes;
+import graphql.language.FieldDefinition;
+import graphql.language.ObjectTypeDefinition;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryFiltersTest {
+
+    @Test
+    public void whereOfTypeIsMappedToConditions() throws Exception {
+        TypeDefinitionRegistry registry = parse("/schema-tours.graphqls");
+        Map<String, QueryFilters> filters = new FilterTypes(field -> true).addFilters(registry);
+
+        FieldDefinition toursField = getQueryField(registry, "tours_ql");
+        assertEquals("TourWhere", FilterTypes.getWhereTypeName(toursField).get());
+        assertTrue(filters.containsKey("TourWhere"));
+
+        Map<String, Object> where = new LinkedHashMap<>();
+        where.put("duration_gte", 7);
+        where.put("name_like", "%Kyoto%");
+        where.put("isFeatured_not", false);
+        where.put("location", null);
+        where.put(QueryFilters.WHERE_contains, "temple");
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put(QueryFilters.ORDER_field, "duration");
+        order.put(QueryFilters.ORDER_direction, QueryFilters.ORDER_DESC);
+
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE t.[duration] >= CAST('7' AS LONG)"
+                + " AND t.[name] LIKE '%Kyoto%'"
+                + " AND t.[isFeatured] <> CAST('false' AS BOOLEAN)"
+                + " AND CONTAINS(t.*, 'temple')"
+                + " ORDER BY t.[duration] DESC", apply(filters.get("TourWhere"), where, Collections.singletonList(order)));
+    }
+
+    @Test
+    public void propertyWithSuffixIsNotReadAsOperator() {
+        TypeDefinitionRegistry registry = new SchemaParser().parse(
+                "type Query { products : [Product] } type Product { price_like: String, price: Int, price_not: Int }");
+        QueryFilters filters = new FilterTypes(field -> true).addFilters(registry).get("ProductWhere");
+
+        // "price_like" is a property, "price" has no operator LIKE as it is not a String
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE t.[price_like] = 'cheap'",
+                apply(filters, Collections.singletonMap("price_like", "cheap"), null));
+        // "price_not" was generated first for "price", the property "price_not" is not filterable
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE t.[price] <> CAST('10' AS LONG)",
+                apply(filters, Collections.singletonMap("price_not", 10), null));
+    }
+
+    @Test
+    public void defaultFiltersCompareFieldsWithEquals() {
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE t.[price_not] = CAST('10' AS LONG)",
+                apply(QueryFilters.DEFAULT, Collections.singletonMap("price_not", 10), null));
+    }
+
+    @Test
+    public void conditionsOfNode() {
+        Map<String, Object> condition = new LinkedHashMap<>();
+        condition.put(QueryFilters.CONDITION_property, "duration");
+        condition.put("gt", 2);
+        condition.put("lte", 7);
+        Map<String, Object> where = Collections.singletonMap(QueryFilters.WHERE_conditions, Collections.singletonList(condition));
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put(QueryFilters.ORDER_property, "name");
+
+        assertEquals("SELECT * FROM [nt:base] AS t WHERE t.[duration] > CAST('2' AS LONG) AND t.[duration] <= CAST('7' AS LONG)"
+                + " ORDER BY t.[name] ASC", apply(QueryFilters.DEFAULT, where, Arrays.asList(order)));
+    }
+
+    private static String apply(QueryFilters filters, Map<String, Object> where, List<Map<String, Object>> orderBy) {
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put(QueryFilters.ARG_where, where);
+        arguments.put(QueryFilters.ARG_orderBy, orderBy);
+        NodeQueryBuilder builder = NodeQueryBuilder.create();
+        filters.apply(arguments, builder);
+
+        return builder.buildStatement();
+    }
+
+    private static TypeDefinitionRegistry parse(String resource) throws Exception {
+        try (Reader reader = new InputStreamReader(QueryFiltersTest.class.getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+            return new SchemaParser().parse(reader);
+        }
+    }
+
+    private static FieldDefinition getQueryField(TypeDefinitionRegistry registry, String name) {
+        ObjectTypeDefinition query = (ObjectTypeDefinition) registry.getType("Query").get();
+        return query.getFieldDefinitions().stream().filter(field -> field.getName().equals(name)).findFirst().get();
+    }
+}
@@ -0,0 +1,119 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironmentImpl;
+import graphql.schema.idl.SchemaParser;
+import info.magnolia.jcr.util.ContentMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.ValueFormatException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ContentFieldResolversTest {
+    private static final String SCHEMA = "directive @definition(workspace : String!) on FIELD_DEFINITION"
+            + " type Query { tours_ql : [Tour] @definition(workspace: \"tours\"), nodes : [Node] @definition(workspace: \"website\"), other : [Other] }"
+            + " type Tour { name: String, code: ID, duration: Int!, price: Float, isFeatured: Boolean, tags: [String], author: Author,"
+            + "   description(locale: String): String, children: [Tour] }"
+            + " type Author { fullName: String }"
+            + " type Other { name: String }"
+            + " type Node { name: String }";
+
+    private Map<String, Map<String, DataFetcher>> resolvers;
+    private Node node;
+    private ContentMap contentMap;
+
+    @Before
+    public void setUp() {
+        resolvers = new ContentFieldResolvers(field -> field.getDirectives().stream().anyMatch(directive -> directive.getName().equals("definition")))
+                .build(new SchemaParser().parse(SCHEMA));
+        node = mock(Node.class);
+        contentMap = mock(ContentMap.class);
+        when(contentMap.getJCRNode()).thenReturn(node);
+    }
+
+    @Test
+    public void resolversOfScalarFieldsOfReachableTypes() {
+        assertEquals(new HashSet<>(Arrays.asList("Tour", "Author")), resolvers.keySet());
+        assertEquals(new HashSet<>(Arrays.asList("name", "code", "duration", "price", "isFeatured")), resolvers.get("Tour").keySet());
+        assertEquals(Collections.singleton("fullName"), resolvers.get("Author").keySet());
+    }
+
+    @Test
+    public void propertiesAreConvertedToTheScalarOfTheField() throws Exception {
+        Property name = property("name", PropertyType.STRING);
+        when(name.getString()).thenReturn("Kyoto");
+        Property duration = property("duration", PropertyType.LONG);
+        when(duration.getLong()).thenReturn(7L);
+        Property price = property("price", PropertyType.STRING);
+        when(price.getDouble()).thenReturn(9.5);
+        Property isFeatured = property("isFeatured", PropertyType.STRING);
+        when(isFeatured.getBoolean()).thenReturn(true);
+
+        assertEquals("Kyoto", resolve("Tour", "name", contentMap));
+        assertEquals(7, resolve("Tour", "duration", contentMap));
+        assertEquals(9.5, resolve("Tour", "price", contentMap));
+        assertEquals(true, resolve("Tour", "isFeatured", contentMap));
+    }
+
+    @Test
+    public void valuesNotConvertibleAreNull() throws Exception {
+        Property duration = property("duration", PropertyType.LONG);
+        when(duration.getLong()).thenReturn(Integer.MAX_VALUE + 1L);
+        Property price = property("price", PropertyType.STRING);
+        when(price.getDouble()).thenThrow(new ValueFormatException("not a number"));
+
+        assertNull(resolve("Tour", "duration", contentMap));
+        assertNull(resolve("Tour", "price", contentMap));
+    }
+
+    @Test
+    public void fieldsThatAreNotSingleValuedPropertiesAreReadFromTheMap() throws Exception {
+        when(node.hasProperty("name")).thenReturn(false);
+        when(contentMap.get("name")).thenReturn("from map");
+        Property code = property("code", PropertyType.STRING);
+        when(code.isMultiple()).thenReturn(true);
+        when(contentMap.get("code")).thenReturn(new String[]{"a", "b"});
+        property("price", PropertyType.BINARY);
+
+        assertEquals("from map", resolve("Tour", "name", contentMap));
+        assertEquals(2, ((String[]) resolve("Tour", "code", contentMap)).length);
+        assertNull(resolve("Tour", "price", contentMap));
+    }
+
+    @Test
+    public void sourcesThatAreNotContentMapsAreReadAsMaps() {
+        assertEquals("Kyoto", resolve("Tour", "name", Collections.singletonMap("name", "Kyoto")));
+        assertNull(resolve("Tour", "name", "not a map"));
+        assertFalse(resolvers.containsKey("Other"));
+    }
+
+    private Property property(String name, int type) throws RepositoryException {
+        Property property = mock(Property.class);
+        when(property.getType()).thenReturn(type);
+        when(node.hasProperty(name)).thenReturn(true);
+        when(node.getProperty(name)).thenReturn(property);
+        return property;
+    }
+
+    private Object resolve(String typeName, String fieldName, Object source) {
+        try {
+            return resolvers.get(typeName).get(fieldName).get(DataFetchingEnvironmentImpl.newDataFetchingEnvironment().source(source).build());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
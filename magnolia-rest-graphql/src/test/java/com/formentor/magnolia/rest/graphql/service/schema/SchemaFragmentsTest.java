@@ -0,0 +1,103 @@
+package com.formentor.magnolia.rest.graphql.service.schema;
+
+import graphql.language.FieldDefinition;
+import graphql.language.ObjectTypeDefinition;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaFragmentsTest {
+    private static final String CORE = "type Query { node(path: String): Node } type Node { name: String }";
+
+    private SchemaFragments fragments;
+
+    @Before
+    public void setUp() {
+        fragments = new SchemaFragments(CORE);
+    }
+
+    @Test
+    public void fieldsOfFragmentsAreMergedIntoTheCore() {
+        fragments.put("tours", "type Query { tours: [Tour] } type Tour { name: String }");
+        fragments.put("pages", "type Query { pages: [Node] }");
+
+        TypeDefinitionRegistry merged = fragments.merge();
+
+        assertEquals(Arrays.asList("node", "tours", "pages"), queryFields(merged));
+        assertTrue(merged.getType("Tour").isPresent());
+        // The fragments are not modified, so they are merged again
+        assertEquals(Arrays.asList("node", "tours", "pages"), queryFields(fragments.merge()));
+    }
+
+    @Test
+    public void changesArePendingUntilCommitted() {
+        fragments.put("tours", "type Query { tours: [Node] }");
+        fragments.put("pages", "type Query { pages: [Node] }");
+        assertEquals(Arrays.asList("tours", "pages"), fragments.getPending());
+
+        fragments.commit();
+        assertTrue(fragments.getPending().isEmpty());
+
+        assertTrue(fragments.remove("pages"));
+        assertFalse(fragments.remove("unknown"));
+        assertEquals(Collections.singletonList("pages"), fragments.getPending());
+    }
+
+    @Test
+    public void rollbackRestoresTheCommittedFragment() {
+        fragments.put("tours", "type Query { tours: [Node] }");
+        fragments.commit();
+
+        fragments.put("tours", "type Query { tours: [Unknown] }");
+        fragments.put("pages", "type Query { pages: [Node] }");
+        fragments.rollback("tours");
+
+        assertEquals(Collections.singletonList("pages"), fragments.getPending());
+        assertEquals(Arrays.asList("node", "tours", "pages"), queryFields(fragments.merge()));
+        assertEquals("Node", FieldTypes.getItemTypeName(queryField(fragments.merge(), "tours")).get());
+    }
+
+    @Test
+    public void rollbackOfNewFragmentRemovesIt() {
+        fragments.put("tours", "type Query { tours: [Unknown] }");
+        fragments.rollback("tours");
+
+        assertFalse(fragments.contains("tours"));
+        assertTrue(fragments.getPending().isEmpty());
+        assertEquals(Collections.singletonList("node"), queryFields(fragments.merge()));
+    }
+
+    @Test
+    public void mergeWithRolledBackFragmentsUsesTheCommittedOnes() {
+        fragments.put("tours", "type Query { tours: [Node] }");
+        fragments.commit();
+
+        fragments.remove("tours");
+        fragments.put("pages", "type Query { pages: [Node] }");
+
+        assertEquals(Arrays.asList("node", "pages", "tours"), queryFields(fragments.merge(Collections.singletonList("tours"))));
+        assertEquals(Collections.singletonList("node"), queryFields(fragments.merge(Collections.singletonList("pages"))));
+    }
+
+    private static List<String> queryFields(TypeDefinitionRegistry registry) {
+        return ((ObjectTypeDefinition) registry.getType("Query").get()).getFieldDefinitions().stream()
+                .map(FieldDefinition::getName)
+                .collect(Collectors.toList());
+    }
+
+    private static FieldDefinition queryField(TypeDefinitionRegistry registry, String name) {
+        return ((ObjectTypeDefinition) registry.getType("Query").get()).getFieldDefinitions().stream()
+                .filter(field -> field.getName().equals(name))
+                .findFirst()
+                .get();
+    }
+}
@@ -0,0 +1,163 @@
+package com.formentor.magnolia.rest.graphql.service.subscription;
+
+import com.formentor.magnolia.rest.graphql.type.NodeChange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NodeChangePublisherTest {
+    private static final String WORKSPACE = "tours";
+
+    private NodeChangeHub hub;
+    // Listener of the subscription registered in the hub
+    private Consumer<List<NodeChange>> listener;
+
+    @Before
+    public void setUp() {
+        hub = mock(NodeChangeHub.class);
+        when(hub.add(eq(WORKSPACE), any())).thenReturn(true);
+        // Changes are delivered in the thread of the observation, as soon as they are buffered
+        NodeChangePublisher.bindDelivery(Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        NodeChangePublisher.unbindDelivery();
+    }
+
+    @Test
+    public void changesArePushedAsTheyAreRequested() {
+        RecordingSubscriber subscriber = subscribe(change -> true, 10);
+
+        push(change("/travels/kyoto"), change("/travels/lima"), change("/travels/oslo"));
+        assertTrue(subscriber.paths().isEmpty());
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList("/travels/kyoto", "/travels/lima"), subscriber.paths());
+
+        subscriber.subscription.request(5);
+        push(change("/travels/rome"));
+        assertEquals(Arrays.asList("/travels/kyoto", "/travels/lima", "/travels/oslo", "/travels/rome"), subscriber.paths());
+    }
+
+    @Test
+    public void oldestChangesAreDroppedWhenTheBufferIsFull() {
+        RecordingSubscriber subscriber = subscribe(change -> true, 2);
+
+        push(change("/travels/kyoto"), change("/travels/lima"), change("/travels/oslo"));
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(Arrays.asList("/travels/lima", "/travels/oslo"), subscriber.paths());
+    }
+
+    @Test
+    public void changesOutOfTheRootPathOrRejectedByTheFilterAreNotPushed() {
+        RecordingSubscriber subscriber = subscribe(change -> !change.getPath().endsWith("draft"), 10);
+        subscriber.subscription.request(2);
+
+        push(change("/other/kyoto"), change("/travelsother/kyoto"), change("/travels/draft"), change("/travels"), change("/travels/lima"));
+
+        // The changes rejected by the filter do not consume the demand
+        assertEquals(Arrays.asList("/travels", "/travels/lima"), subscriber.paths());
+    }
+
+    @Test
+    public void invalidRequestsFailTheSubscription() {
+        RecordingSubscriber subscriber = subscribe(change -> true, 10);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        verify(hub).remove(eq(WORKSPACE), any());
+    }
+
+    @Test
+    public void subscriptionsOverTheLimitFail() {
+        when(hub.add(eq(WORKSPACE), any())).thenReturn(false);
+
+        RecordingSubscriber subscriber = subscribe(change -> true, 10);
+
+        assertTrue(subscriber.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void cancelledSubscriptionsReceiveNothingMore() {
+        RecordingSubscriber subscriber = subscribe(change -> true, 10);
+        subscriber.subscription.request(10);
+        push(change("/travels/kyoto"));
+
+        subscriber.subscription.cancel();
+        push(change("/travels/lima"));
+
+        assertEquals(Arrays.asList("/travels/kyoto"), subscriber.paths());
+        assertNull(subscriber.error);
+        verify(hub).remove(eq(WORKSPACE), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RecordingSubscriber subscribe(Predicate<NodeChange> filter, int bufferSize) {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new NodeChangePublisher(hub, WORKSPACE, "/travels", filter, node -> node, bufferSize).subscribe(subscriber);
+
+        ArgumentCaptor<Consumer> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(hub).add(eq(WORKSPACE), captor.capture());
+        listener = captor.getValue();
+        return subscriber;
+    }
+
+    private void push(NodeChange... changes) {
+        listener.accept(Arrays.asList(changes));
+    }
+
+    private static NodeChange change(String path) {
+        return new NodeChange(NodeChange.Type.CHANGED, WORKSPACE, path, path);
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<NodeChange> {
+        private final List<NodeChange> changes = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(NodeChange change) {
+            changes.add(change);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private List<String> paths() {
+            return changes.stream().map(NodeChange::getPath).collect(Collectors.toList());
+        }
+    }
+}
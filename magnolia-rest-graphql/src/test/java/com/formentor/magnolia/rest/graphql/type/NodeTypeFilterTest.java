@@ -0,0 +1,106 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import org.apache.jackrabbit.commons.iterator.NodeIteratorAdapter;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.nodetype.NodeType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NodeTypeFilterTest {
+
+    @Test
+    public void withoutNodeTypesAcceptsAll() throws Exception {
+        assertSame(NodeTypeFilter.ALL, NodeTypeFilter.of(null));
+        assertSame(NodeTypeFilter.ALL, NodeTypeFilter.of(Collections.emptyList()));
+        assertTrue(NodeTypeFilter.ALL.test(node("/a", nodeType("mgnl:page"))));
+    }
+
+    @Test
+    public void acceptsNodeTypesAndSubtypes() throws Exception {
+        NodeTypeFilter filter = NodeTypeFilter.of(Arrays.asList("mgnl:content"));
+        NodeType page = nodeType("mgnl:page");
+        NodeType tour = nodeType("mgnl:tour", "mgnl:content");
+
+        assertTrue(filter.test(node("/tour", tour)));
+        assertFalse(filter.test(node("/page", page)));
+    }
+
+    @Test
+    public void acceptsMixins() throws Exception {
+        NodeTypeFilter filter = NodeTypeFilter.of(Arrays.asList("mix:referenceable"));
+        Node node = node("/a", nodeType("mgnl:page"), nodeType("mix:referenceable"));
+
+        assertTrue(filter.test(node));
+    }
+
+    @Test
+    public void resultIsCachedByNodeType() throws Exception {
+        NodeTypeFilter filter = NodeTypeFilter.of(Arrays.asList("mgnl:content"));
+        NodeType tour = nodeType("mgnl:tour", "mgnl:content");
+
+        filter.test(node("/a", tour));
+        filter.test(node("/b", tour));
+
+        verify(tour, times(1)).isNodeType("mgnl:content");
+    }
+
+    @Test
+    public void nodesWithUnreadableTypesAreRejected() throws Exception {
+        Node node = mock(Node.class);
+        when(node.getPrimaryNodeType()).thenThrow(new RepositoryException("denied"));
+
+        assertFalse(NodeTypeFilter.of(Arrays.asList("mgnl:content")).test(node));
+    }
+
+    @Test
+    public void childrenAreFiltered() throws Exception {
+        NodeType folder = nodeType("mgnl:folder");
+        NodeType tour = nodeType("mgnl:tour", "mgnl:content");
+        Node kyoto = node("/travels/kyoto", tour);
+        Node parent = mock(Node.class);
+        NodeIterator iterator = new NodeIteratorAdapter(Arrays.asList(node("/travels/asia", folder), kyoto));
+        when(parent.getNodes()).thenReturn(iterator);
+
+        List<String> children = NodeTypeFilter.of(Arrays.asList("mgnl:content")).children(parent, child -> {
+            try {
+                return child.getPath();
+            } catch (RepositoryException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(Arrays.asList("/travels/kyoto"), children);
+    }
+
+    private static NodeType nodeType(String name, String... superTypes) {
+        NodeType nodeType = mock(NodeType.class);
+        when(nodeType.getName()).thenReturn(name);
+        when(nodeType.isNodeType(name)).thenReturn(true);
+        for (String superType: superTypes) {
+            when(nodeType.isNodeType(superType)).thenReturn(true);
+        }
+        return nodeType;
+    }
+
+    private static Node node(String path, NodeType primaryType, NodeType... mixins) throws RepositoryException {
+        Node node = mock(Node.class);
+        when(node.getPath()).thenReturn(path);
+        when(node.getPrimaryNodeType()).thenReturn(primaryType);
+        when(node.getMixinNodeTypes()).thenReturn(mixins);
+        return node;
+    }
+}
@@ -0,0 +1,111 @@
+package com.formentor.magnolia.rest.graphql.type;
+
+import org.apache.jackrabbit.commons.iterator.NodeIteratorAdapter;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SubtreeTest {
+
+    @Test
+    public void nodesAreKeptByParentUpToTheDepth() throws Exception {
+        Subtree subtree = new Subtree("/travels", 2);
+        Node asia = node("/travels/asia");
+        Node kyoto = node("/travels/asia/kyoto");
+        Node europe = node("/travels/europe");
+        Node travels = parent("/travels", asia, europe);
+
+        assertTrue(subtree.add(asia));
+        assertTrue(subtree.add(kyoto));
+        assertTrue(subtree.add(europe));
+        assertFalse(subtree.add(node("/travels/asia/kyoto/temples")));
+        assertFalse(subtree.add(node("/travels")));
+        assertFalse(subtree.add(node("/travelsother/asia")));
+
+        assertEquals(3, subtree.size());
+        assertEquals(Arrays.asList(asia, europe), subtree.getChildren(travels));
+        assertEquals(Arrays.asList(kyoto), subtree.getChildren(asia));
+        assertTrue(subtree.getChildren(europe).isEmpty());
+    }
+
+    @Test
+    public void childrenAreInTheOrderOfTheRepository() throws Exception {
+        Subtree subtree = new Subtree("/travels", 1);
+        Node asia = node("/travels/asia");
+        Node europe = node("/travels/europe");
+        Node africa = node("/travels/africa");
+        // Reordered by an editor, the query returns the nodes in the order of the index
+        Node travels = parent("/travels", europe, node("/travels/america"), africa, asia);
+
+        subtree.add(asia);
+        subtree.add(africa);
+        subtree.add(europe);
+
+        assertEquals(Arrays.asList(europe, africa, asia), subtree.getChildren(travels));
+        // Sorted just once
+        assertEquals(Arrays.asList(europe, africa, asia), subtree.getChildren(travels));
+        verify(travels, times(1)).getNodes();
+    }
+
+    @Test
+    public void singleChildIsNotSorted() throws Exception {
+        Subtree subtree = new Subtree("/travels", 1);
+        Node asia = node("/travels/asia");
+        Node travels = parent("/travels", asia);
+
+        subtree.add(asia);
+
+        assertEquals(Collections.singletonList(asia), subtree.getChildren(travels));
+        verify(travels, never()).getNodes();
+    }
+
+    @Test
+    public void containsTheLevelsAboveTheDepth() {
+        Subtree subtree = new Subtree("/travels", 2);
+
+        assertTrue(subtree.contains("/travels"));
+        assertTrue(subtree.contains("/travels/asia"));
+        // The children of the last level were not read
+        assertFalse(subtree.contains("/travels/asia/kyoto"));
+        assertFalse(subtree.contains("/other"));
+        assertFalse(subtree.contains("/travelsother"));
+    }
+
+    @Test
+    public void childrenOfTheRootNode() throws Exception {
+        Subtree subtree = new Subtree("/", 1);
+        Node travels = node("/travels");
+        Node root = parent("/", travels);
+
+        assertTrue(subtree.add(travels));
+        assertFalse(subtree.add(node("/travels/asia")));
+        assertEquals(Arrays.asList(travels), subtree.getChildren(root));
+        assertTrue(subtree.contains("/"));
+        assertFalse(subtree.contains("/travels"));
+    }
+
+    private static Node node(String path) throws RepositoryException {
+        Node node = mock(Node.class);
+        when(node.getPath()).thenReturn(path);
+        when(node.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        return node;
+    }
+
+    private static Node parent(String path, Node... children) throws RepositoryException {
+        Node node = node(path);
+        when(node.getNodes()).thenReturn(new NodeIteratorAdapter(Arrays.asList(children)));
+        return node;
+    }
+}